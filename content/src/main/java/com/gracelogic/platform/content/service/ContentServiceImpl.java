@@ -9,6 +9,7 @@ import com.gracelogic.platform.content.model.Element;
 import com.gracelogic.platform.content.model.Section;
 import com.gracelogic.platform.content.model.SectionPattern;
 import com.gracelogic.platform.content.model.SectionPatternField;
+import com.gracelogic.platform.db.GroupingUtils;
 import com.gracelogic.platform.db.dto.EntityListResponse;
 import com.gracelogic.platform.db.exception.ObjectNotFoundException;
 import com.gracelogic.platform.db.service.IdObjectService;
@@ -37,6 +38,12 @@ public class ContentServiceImpl implements ContentService {
         HashMap<UUID, SectionDTO> processedSections = new HashMap<UUID, SectionDTO>();
 
         List<Section> sections = idObjectService.getList(Section.class);
+        Map<UUID, Section> sectionsById = GroupingUtils.indexBy(sections, new GroupingUtils.KeyExtractor<UUID, Section>() {
+            @Override
+            public UUID getKey(Section section) {
+                return section.getId();
+            }
+        });
 
         for (Section section : sections) {
             if (onlyActive && !section.getActive()) {
@@ -68,13 +75,7 @@ public class ContentServiceImpl implements ContentService {
                             }
                         }
                     } else {
-                        Section parent = null;
-                        for (Section s : sections) {
-                            if (s.getId().equals(section.getParent().getId())) {
-                                parent = s;
-                                break;
-                            }
-                        }
+                        Section parent = sectionsById.get(section.getParent().getId());
 
                         SectionDTO parentSection = SectionDTO.prepare(parent);
 
@@ -88,13 +89,7 @@ public class ContentServiceImpl implements ContentService {
             } else {
                 //FIND PARENT
                 if (section.getParent() != null) {
-                    Section parent = null;
-                    for (Section s : sections) {
-                        if (s.getId().equals(section.getParent().getId())) {
-                            parent = s;
-                            break;
-                        }
-                    }
+                    Section parent = sectionsById.get(section.getParent().getId());
 
                     SectionDTO parentSection = SectionDTO.prepare(parent);
                     if (processedSections.containsKey(parentSection.getId())) {
@@ -3,6 +3,7 @@ package com.gracelogic.platform.market.dao;
 import com.gracelogic.platform.db.dao.BaseDao;
 import com.gracelogic.platform.db.service.IdObjectService;
 import com.gracelogic.platform.market.DataConstants;
+import com.gracelogic.platform.market.model.Order;
 import com.gracelogic.platform.market.model.OrderProduct;
 import com.gracelogic.platform.market.model.Product;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -44,6 +45,48 @@ public abstract class AbstractMarketDaoImpl extends BaseDao implements MarketDao
                 buildCheckPurchasingQuery(), params, null, null, null, null);
     }
 
+    public List<OrderProduct> getOwnerEntitlements(UUID ownerId) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("ownerId", ownerId);
+        params.put("paidOrderStateId", DataConstants.OrderStates.PAID.getValue());
+        params.put("cancelledOrderStateId", DataConstants.OrderStates.CANCELED.getValue());
+
+        String cause = "ord.ownerId=:ownerId and prd.referenceObjectId is not null and (" +
+                    "ord.orderState.id=:paidOrderStateId or " +
+                    "(ord.orderState.id!=:cancelledOrderStateId and el.defermentExpiration is not null) " +
+                ") ";
+        return idObjectService.getList(OrderProduct.class, "left join fetch el.order ord left join fetch el.product prd",
+                cause, params, null, null, null, null);
+    }
+
+    /**
+     * Marks single-use discount as used by the order. Executed as one conditional update,
+     * so only one of concurrent claims wins.
+     *
+     * @return true if the discount was claimed by this call
+     */
+    public boolean claimDiscount(UUID discountId, UUID orderId) {
+        String query = "update Discount el set el.used=true, el.usedForOrder=:order, el.changed=:changed " +
+                "where el.id=:discountId and el.reusable=false and el.used=false";
+
+        return getEntityManager().createQuery(query)
+                .setParameter("order", getEntityManager().getReference(Order.class, orderId))
+                .setParameter("changed", new Date())
+                .setParameter("discountId", discountId)
+                .executeUpdate() > 0;
+    }
+
+    public boolean releaseDiscount(UUID discountId, UUID orderId) {
+        String query = "update Discount el set el.used=false, el.usedForOrder=null, el.changed=:changed " +
+                "where el.id=:discountId and el.reusable=false and el.used=true and el.usedForOrder=:order";
+
+        return getEntityManager().createQuery(query)
+                .setParameter("order", getEntityManager().getReference(Order.class, orderId))
+                .setParameter("changed", new Date())
+                .setParameter("discountId", discountId)
+                .executeUpdate() > 0;
+    }
+
     public List<Product> getProductsByReferenceObjectIds(Collection<UUID> referenceObjectIds, boolean onlyPrimary) {
         Map<String, Object> params = new HashMap<>();
         params.put("referenceObjectIds", referenceObjectIds);
@@ -13,5 +13,11 @@ public interface MarketDao {
 
     List<OrderProduct> getPurchasedProducts(UUID userId, Collection<UUID> referenceObjectIds, Date checkOnDate);
 
+    List<OrderProduct> getOwnerEntitlements(UUID ownerId);
+
+    boolean claimDiscount(UUID discountId, UUID orderId);
+
+    boolean releaseDiscount(UUID discountId, UUID orderId);
+
     List<Product> getProductsByReferenceObjectIds(Collection<UUID> referenceObjectIds, boolean onlyPrimary);
 }
@@ -9,6 +9,7 @@ import com.gracelogic.platform.account.model.Account;
 import com.gracelogic.platform.account.model.Currency;
 import com.gracelogic.platform.account.model.ExchangeRate;
 import com.gracelogic.platform.account.service.AccountService;
+import com.gracelogic.platform.db.GroupingUtils;
 import com.gracelogic.platform.db.dto.EntityListResponse;
 import com.gracelogic.platform.db.exception.ObjectNotFoundException;
 import com.gracelogic.platform.db.service.IdObjectService;
@@ -27,9 +28,12 @@ import com.gracelogic.platform.payment.model.Payment;
 import com.gracelogic.platform.payment.model.PaymentSystem;
 import com.gracelogic.platform.payment.service.AccountResolver;
 import com.gracelogic.platform.payment.service.PaymentExecutor;
+import com.gracelogic.platform.payment.service.PaymentExecutorRegistry;
+import com.gracelogic.platform.property.service.PropertyService;
 import com.gracelogic.platform.user.dto.AuthorizedUser;
 import com.gracelogic.platform.user.exception.ForbiddenException;
 import com.gracelogic.platform.user.model.User;
+import net.jodah.expiringmap.ExpiringMap;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -37,9 +41,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class MarketServiceImpl implements MarketService {
@@ -67,6 +74,51 @@ public class MarketServiceImpl implements MarketService {
     @Autowired
     private MarketResolver marketResolver;
 
+    @Autowired
+    private PaymentExecutorRegistry paymentExecutorRegistry;
+
+    @Autowired
+    private PropertyService propertyService;
+
+    /**
+     * Purchased product of the owner. Validity is stored instead of the purchase state itself,
+     * so expiration of lifetime or deferment does not require reloading.
+     */
+    private static class Entitlement {
+        private final Product product;
+        private Date validUntil; //null - unlimited
+
+        Entitlement(Product product, Date validUntil) {
+            this.product = product;
+            this.validUntil = validUntil;
+        }
+
+        void extend(Date until) {
+            if (validUntil != null && (until == null || until.after(validUntil))) {
+                validUntil = until;
+            }
+        }
+
+        boolean isValid(Date checkOnDate) {
+            return validUntil == null || (checkOnDate != null && !validUntil.before(checkOnDate));
+        }
+    }
+
+    private static final int DEFAULT_ENTITLEMENTS_CACHE_TTL = 30;
+
+    /**
+     * Entitlements of the owner grouped by reference object id and then by product id.
+     * Cache is local to the node and is evicted only here, so it lives market:entitlements_cache_ttl seconds
+     * and access checks reload it from the database before denying.
+     */
+    private final ExpiringMap<UUID, Map<UUID, Map<UUID, Entitlement>>> entitlements = ExpiringMap.builder()
+            .maxSize(10000)
+            .variableExpiration()
+            .build();
+
+    //Incremented on every eviction, so entitlements loaded before a concurrent change are not cached
+    private final AtomicLong entitlementsVersion = new AtomicLong();
+
     @Transactional(rollbackFor = Exception.class)
     @Override
     public Order saveOrder(OrderDTO dto, AuthorizedUser authorizedUser, boolean trust) throws InvalidOrderStateException, OrderNotConsistentException, ObjectNotFoundException, ForbiddenException, InvalidDiscountException, NoActualExchangeRateException, ProductSubscriptionException, EmptyOrderException, InvalidCurrencyException, InvalidProductException {
@@ -226,6 +278,7 @@ public class MarketServiceImpl implements MarketService {
             }
             idObjectService.save(orderProduct);
         }
+        evictEntitlements(entity.getOwnerId());
 
         return entity;
     }
@@ -320,14 +373,9 @@ public class MarketServiceImpl implements MarketService {
                 throw new InvalidDiscountException("Discount is not active");
             }
             if (!discount.getReusable()) {
-                if (discount.getUsed()) {
-                    if (discount.getUsedForOrder() != null && !discount.getUsedForOrder().getId().equals(order.getId())) {
-                        throw new InvalidDiscountException("This discount already used");
-                    }
-                } else {
-                    discount.setUsed(true);
-                    discount.setUsedForOrder(order);
-                    idObjectService.save(discount);
+                boolean usedForThisOrder = discount.getUsed() && discount.getUsedForOrder() != null && discount.getUsedForOrder().getId().equals(order.getId());
+                if (!usedForThisOrder && !marketDao.claimDiscount(discount.getId(), order.getId())) {
+                    throw new InvalidDiscountException("This discount already used");
                 }
             }
             if (discount.getOnceForUser()) {
@@ -399,7 +447,7 @@ public class MarketServiceImpl implements MarketService {
             }
             PaymentExecutionResultDTO result = null;
             try {
-                PaymentExecutor paymentExecutor = initializePaymentExecutor(paymentSystem.getPaymentExecutorClass());
+                PaymentExecutor paymentExecutor = paymentExecutorRegistry.getPaymentExecutor(paymentSystem);
                 PaymentExecutionRequestDTO request = new PaymentExecutionRequestDTO();
                 request.setAuthorizedUserId(authorizedUser.getId());
                 request.setPaymentSystemId(paymentSystemId);
@@ -434,11 +482,6 @@ public class MarketServiceImpl implements MarketService {
         return new PaymentExecutionResultDTO(order.getOrderState().getId().equals(DataConstants.OrderStates.PAID.getValue()));
     }
 
-    private PaymentExecutor initializePaymentExecutor(String paymentExecutorClassName) throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
-        Class<?> clazz = Class.forName(paymentExecutorClassName);
-        return (PaymentExecutor) clazz.newInstance();
-    }
-
     @Transactional(rollbackFor = Exception.class)
     @Override
     public void cancelOrder(UUID orderId) throws InvalidOrderStateException, ObjectNotFoundException, InsufficientFundsException, AccountNotFoundException, CurrencyMismatchException {
@@ -467,16 +510,12 @@ public class MarketServiceImpl implements MarketService {
 
         //Return discount
         returnDiscount(order);
+        evictEntitlements(order.getOwnerId());
     }
 
     private void returnDiscount(Order order) {
         if (order.getDiscount() != null) {
-            Discount discount = idObjectService.getObjectById(Discount.class, order.getDiscount().getId());
-            if (!discount.getReusable() && discount.getUsed() && discount.getUsedForOrder().getId().equals(order.getId())) {
-                discount.setUsed(false);
-                discount.setUsedForOrder(null);
-                idObjectService.save(discount);
-            }
+            marketDao.releaseDiscount(order.getDiscount().getId(), order.getId());
         }
     }
 
@@ -562,30 +601,75 @@ public class MarketServiceImpl implements MarketService {
 
         idObjectService.delete(OrderProduct.class, "el.order.id=:orderId", params);
         idObjectService.delete(Order.class, orderId);
+        evictEntitlements(order.getOwnerId());
     }
 
     @Override
     public void checkAtLeastOneProductPurchased(UUID ownerId, Map<UUID, UUID> referenceObjectIdsAndProductTypeIds, Date checkOnDate) throws ProductNotPurchasedException {
+        if (ownerId == null) {
+            throw new ProductNotPurchasedException();
+        }
+        //Cache only grants access, denial is checked by the scoped query since order may have been paid on another node
+        Map<UUID, Map<UUID, Entitlement>> ownerEntitlements = entitlements.get(ownerId);
+        if (ownerEntitlements != null && isAtLeastOneProductPurchased(ownerEntitlements, referenceObjectIdsAndProductTypeIds.keySet(), checkOnDate)) {
+            return;
+        }
         if (!marketDao.existAtLeastOneProductIsPurchased(ownerId, referenceObjectIdsAndProductTypeIds.keySet(), checkOnDate)) {
             throw new ProductNotPurchasedException();
         }
     }
 
+    private static boolean isAtLeastOneProductPurchased(Map<UUID, Map<UUID, Entitlement>> ownerEntitlements, Collection<UUID> referenceObjectIds, Date checkOnDate) {
+        for (UUID referenceObjectId : referenceObjectIds) {
+            Map<UUID, Entitlement> referenceObjectEntitlements = ownerEntitlements.get(referenceObjectId);
+            if (referenceObjectEntitlements != null) {
+                for (Entitlement entitlement : referenceObjectEntitlements.values()) {
+                    if (entitlement.isValid(checkOnDate)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
     @Override
     public Map<UUID, List<PurchasedProductDTO>> getProductsPurchaseState(UUID ownerId, Map<UUID, UUID> referenceObjectIdsAndProductTypeIds, Date checkDate) {
+        Map<UUID, Map<UUID, Entitlement>> ownerEntitlements = ownerId != null ? entitlements.get(ownerId) : null;
+        if (ownerEntitlements != null) {
+            Map<UUID, List<PurchasedProductDTO>> result = getProductsPurchaseState(ownerEntitlements, referenceObjectIdsAndProductTypeIds, checkDate);
+            if (!result.containsValue(Collections.<PurchasedProductDTO>emptyList())) {
+                return result;
+            }
+        }
+        //Nothing is cached or some object is not purchased according to cache, order may have been paid on another node
         Map<UUID, List<PurchasedProductDTO>> result = new HashMap<>();
-
         List<OrderProduct> orderProducts = marketDao.getPurchasedProducts(ownerId, referenceObjectIdsAndProductTypeIds.keySet(), checkDate);
+        for (UUID referenceObjectId : referenceObjectIdsAndProductTypeIds.keySet()) {
+            result.put(referenceObjectId, new LinkedList<>());
+        }
+        for (OrderProduct orderProduct : orderProducts) {
+            Product product = orderProduct.getProduct();
+            List<PurchasedProductDTO> purchasedProducts = product.getReferenceObjectId() != null ? result.get(product.getReferenceObjectId()) : null;
+            if (purchasedProducts != null && product.getProductType().getId().equals(referenceObjectIdsAndProductTypeIds.get(product.getReferenceObjectId()))) {
+                purchasedProducts.add(PurchasedProductDTO.prepare(product, true));
+            }
+        }
+        return result;
+    }
 
+    private static Map<UUID, List<PurchasedProductDTO>> getProductsPurchaseState(Map<UUID, Map<UUID, Entitlement>> ownerEntitlements, Map<UUID, UUID> referenceObjectIdsAndProductTypeIds, Date checkDate) {
+        Map<UUID, List<PurchasedProductDTO>> result = new HashMap<>();
         for (UUID referenceObjectId : referenceObjectIdsAndProductTypeIds.keySet()) {
             UUID productTypeId = referenceObjectIdsAndProductTypeIds.get(referenceObjectId);
 
             List<PurchasedProductDTO> purchasedProducts = new LinkedList<>();
-            for (OrderProduct orderProduct : orderProducts) {
-                if (orderProduct.getProduct().getReferenceObjectId() != null
-                        && orderProduct.getProduct().getReferenceObjectId().equals(referenceObjectId)
-                        && orderProduct.getProduct().getProductType().getId().equals(productTypeId)) {
-                    purchasedProducts.add(PurchasedProductDTO.prepare(orderProduct.getProduct(), true));
+            Map<UUID, Entitlement> referenceObjectEntitlements = ownerEntitlements.get(referenceObjectId);
+            if (referenceObjectEntitlements != null) {
+                for (Entitlement entitlement : referenceObjectEntitlements.values()) {
+                    if (entitlement.product.getProductType().getId().equals(productTypeId) && entitlement.isValid(checkDate)) {
+                        purchasedProducts.add(PurchasedProductDTO.prepare(entitlement.product, true));
+                    }
                 }
             }
             result.put(referenceObjectId, purchasedProducts);
@@ -596,19 +680,19 @@ public class MarketServiceImpl implements MarketService {
 
     public Map<UUID, List<Product>> findProducts(Map<UUID, UUID> referenceObjectIdsAndProductTypeIds, boolean onlyPrimary) {
         Map<UUID, List<Product>> result = new HashMap<>();
-        List<Product> products = marketDao.getProductsByReferenceObjectIds(referenceObjectIdsAndProductTypeIds.keySet(), onlyPrimary);
-
         for (UUID referenceObjectId : referenceObjectIdsAndProductTypeIds.keySet()) {
-            UUID productTypeId = referenceObjectIdsAndProductTypeIds.get(referenceObjectId);
-            List<Product> foundProducts = new LinkedList<>();
-            for (Product product : products) {
-                if (product.getReferenceObjectId() != null
-                        && product.getReferenceObjectId().equals(referenceObjectId)
-                        && product.getProductType().getId().equals(productTypeId)) {
-                    foundProducts.add(product);
-                }
+            result.put(referenceObjectId, new LinkedList<>());
+        }
+
+        List<Product> products = marketDao.getProductsByReferenceObjectIds(referenceObjectIdsAndProductTypeIds.keySet(), onlyPrimary);
+        for (Product product : products) {
+            if (product.getReferenceObjectId() == null) {
+                continue;
+            }
+            UUID productTypeId = referenceObjectIdsAndProductTypeIds.get(product.getReferenceObjectId());
+            if (productTypeId != null && product.getProductType().getId().equals(productTypeId)) {
+                result.get(product.getReferenceObjectId()).add(product);
             }
-            result.put(referenceObjectId, foundProducts);
         }
 
         return result;
@@ -627,35 +711,98 @@ public class MarketServiceImpl implements MarketService {
             referenceObjectIdsAndProductTypeIds.put(dto.getId(), productTypeId);
         }
 
-        Map<UUID, List<PurchasedProductDTO>> purchased = Collections.emptyMap();
-        if (relatedOwnerId != null) {
-            purchased = getProductsPurchaseState(relatedOwnerId, referenceObjectIdsAndProductTypeIds, checkOnDate);
-        }
-
+        Map<UUID, Map<UUID, Entitlement>> ownerEntitlements = relatedOwnerId != null ? getEntitlements(relatedOwnerId) : null;
         Map<UUID, List<Product>> products = findProducts(referenceObjectIdsAndProductTypeIds, onlyPrimary);
 
         for (MarketAwareObjectDTO dto : objects) {
             if (dto.getId() == null) {
                 continue;
             }
-            if (products.containsKey(dto.getId())) {
-                List<Product> foundProducts = products.get(dto.getId());
-                for (Product product : foundProducts) {
-                    Boolean isPurchased = null;
-                    if (purchased.containsKey(dto.getId())) {
-                        isPurchased = false;
-                        List<PurchasedProductDTO> purchasedProducts = purchased.get(dto.getId());
-                        for (PurchasedProductDTO purchasedProduct : purchasedProducts) {
-                            if (purchasedProduct.getId().equals(product.getId())) {
-                                isPurchased = true;
-                                break;
-                            }
-                        }
-                    }
-                    dto.getProducts().add(PurchasedProductDTO.prepare(product, isPurchased));
+            List<Product> foundProducts = products.get(dto.getId());
+            if (foundProducts == null) {
+                continue;
+            }
+            Map<UUID, Entitlement> referenceObjectEntitlements = ownerEntitlements != null ? ownerEntitlements.get(dto.getId()) : null;
+            for (Product product : foundProducts) {
+                Boolean isPurchased = null;
+                if (ownerEntitlements != null) {
+                    Entitlement entitlement = referenceObjectEntitlements != null ? referenceObjectEntitlements.get(product.getId()) : null;
+                    isPurchased = entitlement != null && entitlement.isValid(checkOnDate);
                 }
+                dto.getProducts().add(PurchasedProductDTO.prepare(product, isPurchased));
+            }
+        }
+    }
+
+    private Map<UUID, Map<UUID, Entitlement>> getEntitlements(UUID ownerId) {
+        if (ownerId == null) {
+            return Collections.emptyMap();
+        }
+        Map<UUID, Map<UUID, Entitlement>> ownerEntitlements = entitlements.get(ownerId);
+        return ownerEntitlements != null ? ownerEntitlements : reloadEntitlements(ownerId);
+    }
+
+    /**
+     * Loads all entitlements of the owner outside of the cache lock and caches them unless some entitlements were evicted meanwhile.
+     * Used to warm the cache up only, purchase checks that miss the cache use scoped queries.
+     */
+    private Map<UUID, Map<UUID, Entitlement>> reloadEntitlements(UUID ownerId) {
+        long version = entitlementsVersion.get();
+        Map<UUID, Map<UUID, Entitlement>> ownerEntitlements = loadEntitlements(ownerId);
+
+        Integer ttl = propertyService.getPropertyValueAsInteger("market:entitlements_cache_ttl");
+        if (ttl == null) {
+            ttl = DEFAULT_ENTITLEMENTS_CACHE_TTL;
+        }
+        if (ttl > 0 && entitlementsVersion.get() == version) {
+            entitlements.put(ownerId, ownerEntitlements, ttl, TimeUnit.SECONDS);
+            //Eviction may have happened between the check and the put
+            if (entitlementsVersion.get() != version) {
+                entitlements.remove(ownerId);
             }
         }
+        return ownerEntitlements;
+    }
+
+    private Map<UUID, Map<UUID, Entitlement>> loadEntitlements(UUID ownerId) {
+        Map<UUID, Map<UUID, Entitlement>> result = new HashMap<>();
+        for (OrderProduct orderProduct : marketDao.getOwnerEntitlements(ownerId)) {
+            Product product = orderProduct.getProduct();
+            boolean paid = orderProduct.getOrder().getOrderState().getId().equals(DataConstants.OrderStates.PAID.getValue());
+
+            //Same conditions as in purchase check query: paid order is valid until lifetime expiration, deferment until its expiration
+            Date validUntil = paid ? orderProduct.getLifetimeExpiration() : orderProduct.getDefermentExpiration();
+            Map<UUID, Entitlement> referenceObjectEntitlements = result.computeIfAbsent(product.getReferenceObjectId(), k -> new HashMap<>());
+            Entitlement entitlement = referenceObjectEntitlements.get(product.getId());
+            if (entitlement == null) {
+                entitlement = new Entitlement(product, validUntil);
+                referenceObjectEntitlements.put(product.getId(), entitlement);
+            } else {
+                entitlement.extend(validUntil);
+            }
+            if (paid && orderProduct.getDefermentExpiration() != null) {
+                entitlement.extend(orderProduct.getDefermentExpiration());
+            }
+        }
+        return result;
+    }
+
+    private void evictEntitlements(UUID ownerId) {
+        if (ownerId == null) {
+            return;
+        }
+        entitlementsVersion.incrementAndGet();
+        entitlements.remove(ownerId);
+        //Entitlements may be reloaded by concurrent request before commit
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    entitlementsVersion.incrementAndGet();
+                    entitlements.remove(ownerId);
+                }
+            });
+        }
     }
 
     private Order payOrder(Order order, Long amountToPay, UUID userAccountId) throws InsufficientFundsException, AccountNotFoundException, CurrencyMismatchException {
@@ -679,6 +826,7 @@ public class MarketServiceImpl implements MarketService {
         } else {
             order = idObjectService.save(order);
         }
+        evictEntitlements(order.getOwnerId());
         return order;
     }
 
@@ -707,6 +855,7 @@ public class MarketServiceImpl implements MarketService {
             }
             idObjectService.save(orderProduct);
         }
+        evictEntitlements(order.getOwnerId());
     }
 
     @Override
@@ -778,15 +927,12 @@ public class MarketServiceImpl implements MarketService {
 
         List<Order> items = idObjectService.getList(Order.class, fetches, cause, params, sortField, sortDir, entityListResponse.getStartRecord(), count);
 
-        List<OrderProduct> orderProducts = Collections.emptyList();
+        Map<UUID, List<OrderProduct>> orderProducts = Collections.emptyMap();
         if (withProducts && !items.isEmpty()) {
-            Set<UUID> orderIds = new HashSet<>();
-            for (Order ord : items) {
-                orderIds.add(ord.getId());
-            }
             Map<String, Object> productParams = new HashMap<>();
-            productParams.put("orderIds", orderIds);
-            orderProducts = idObjectService.getList(OrderProduct.class, "left join fetch el.product", "el.order.id in (:orderIds)", productParams, null, null, null, null);
+            productParams.put("orderIds", GroupingUtils.getIds(items));
+            orderProducts = GroupingUtils.groupBy(idObjectService.getList(OrderProduct.class, "left join fetch el.product", "el.order.id in (:orderIds)", productParams, null, null, null, null),
+                    orderProduct -> orderProduct.getOrder().getId());
         }
 
         for (Order e : items) {
@@ -794,15 +940,11 @@ public class MarketServiceImpl implements MarketService {
             if (enrich) {
                 OrderDTO.enrich(el, e);
             }
-            if (withProducts && !orderProducts.isEmpty()) {
-                for (OrderProduct orderProduct : orderProducts) {
-                    if (orderProduct.getOrder().getId().equals(e.getId())) {
-                        ProductDTO productDTO = ProductDTO.prepare(orderProduct.getProduct());
-                        productDTO.setLifetimeExpiration(orderProduct.getLifetimeExpiration());
-                        productDTO.setDefermentExpiration(orderProduct.getDefermentExpiration());
-                        el.getProducts().add(productDTO);
-                    }
-                }
+            for (OrderProduct orderProduct : GroupingUtils.getGroup(orderProducts, e.getId())) {
+                ProductDTO productDTO = ProductDTO.prepare(orderProduct.getProduct());
+                productDTO.setLifetimeExpiration(orderProduct.getLifetimeExpiration());
+                productDTO.setDefermentExpiration(orderProduct.getDefermentExpiration());
+                el.getProducts().add(productDTO);
             }
             entityListResponse.addData(el);
         }
@@ -947,15 +1089,12 @@ public class MarketServiceImpl implements MarketService {
 
         List<Discount> items = idObjectService.getList(Discount.class, fetches, cause, params, sortField, sortDir, entityListResponse.getStartRecord(), count);
 
-        List<DiscountProduct> discountProducts = Collections.emptyList();
+        Map<UUID, List<DiscountProduct>> discountProducts = Collections.emptyMap();
         if (withProducts && !items.isEmpty()) {
-            Set<UUID> discountIds = new HashSet<>();
-            for (Discount dis : items) {
-                discountIds.add(dis.getId());
-            }
             Map<String, Object> productParams = new HashMap<>();
-            productParams.put("discountIds", discountIds);
-            discountProducts = idObjectService.getList(DiscountProduct.class, "left join fetch el.product", "el.discount.id in (:discountIds)", productParams, null, null, null, null);
+            productParams.put("discountIds", GroupingUtils.getIds(items));
+            discountProducts = GroupingUtils.groupBy(idObjectService.getList(DiscountProduct.class, "left join fetch el.product", "el.discount.id in (:discountIds)", productParams, null, null, null, null),
+                    discountProduct -> discountProduct.getDiscount().getId());
         }
 
         for (Discount e : items) {
@@ -963,12 +1102,8 @@ public class MarketServiceImpl implements MarketService {
             if (enrich) {
                 DiscountDTO.enrich(el, e);
             }
-            if (withProducts && !discountProducts.isEmpty()) {
-                for (DiscountProduct discountProduct : discountProducts) {
-                    if (discountProduct.getDiscount().getId().equals(e.getId())) {
-                        el.getProducts().add(ProductDTO.prepare(discountProduct.getProduct()));
-                    }
-                }
+            for (DiscountProduct discountProduct : GroupingUtils.getGroup(discountProducts, e.getId())) {
+                el.getProducts().add(ProductDTO.prepare(discountProduct.getProduct()));
             }
             entityListResponse.addData(el);
         }
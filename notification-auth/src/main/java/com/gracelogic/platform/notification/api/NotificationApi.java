@@ -1,25 +1,34 @@
 package com.gracelogic.platform.notification.api;
 
 import com.gracelogic.platform.db.dto.EntityListResponse;
+import com.gracelogic.platform.db.exception.ObjectNotFoundException;
+import com.gracelogic.platform.localization.service.LocaleHolder;
 import com.gracelogic.platform.notification.Path;
+import com.gracelogic.platform.notification.dto.InternalNotificationEventDTO;
 import com.gracelogic.platform.notification.dto.NotificationDTO;
+import com.gracelogic.platform.notification.service.InternalNotificationBroker;
+import com.gracelogic.platform.notification.service.InternalNotificationListener;
 import com.gracelogic.platform.notification.service.NotificationService;
 import com.gracelogic.platform.user.api.AbstractAuthorizedController;
+import com.gracelogic.platform.web.dto.EmptyResponse;
 import com.gracelogic.platform.web.dto.ErrorResponse;
 import io.swagger.annotations.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.support.ResourceBundleMessageSource;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestMethod;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.util.Date;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Controller
 @RequestMapping(value = Path.API_NOTIFICATION)
@@ -30,9 +39,19 @@ public class NotificationApi extends AbstractAuthorizedController {
     @Qualifier("dbMessageSource")
     private ResourceBundleMessageSource messageSource;
 
+    @Autowired
+    @Qualifier("userMessageSource")
+    private ResourceBundleMessageSource userMessageSource;
+
     @Autowired
     private NotificationService notificationService;
 
+    @Autowired
+    private InternalNotificationBroker internalNotificationBroker;
+
+    private static final long STREAM_TIMEOUT = 60000L;
+    private static final long MAX_POLL_TIMEOUT = 60000L;
+
     @ApiOperation(
             value = "getNotifications",
             notes = "Get list of notifications",
@@ -50,6 +69,8 @@ public class NotificationApi extends AbstractAuthorizedController {
                                            @RequestParam(value = "notificationMethodId", required = false) UUID notificationMethodId,
                                            @RequestParam(value = "notificationStateId", required = false) UUID notificationStateId,
                                            @RequestParam(value = "referenceObjectId", required = false) UUID referenceObjectId,
+                                           @RequestParam(value = "startDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date startDate,
+                                           @RequestParam(value = "endDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Date endDate,
                                            @RequestParam(value = "enrich", required = false, defaultValue = "false") Boolean enrich,
                                            @RequestParam(value = "calculate", required = false, defaultValue = "false") Boolean calculate,
                                            @RequestParam(value = "count", required = false, defaultValue = "10") Integer count,
@@ -58,8 +79,158 @@ public class NotificationApi extends AbstractAuthorizedController {
                                            @RequestParam(value = "sortField", required = false, defaultValue = "el.created") String sortField,
                                            @RequestParam(value = "sortDir", required = false, defaultValue = "desc") String sortDir) {
 
-        EntityListResponse<NotificationDTO> notifications = notificationService.getNotificationsPaged(name, destination, notificationMethodId, notificationStateId, referenceObjectId, enrich, calculate, count, null, start, sortField, sortDir);
+        EntityListResponse<NotificationDTO> notifications = notificationService.getNotificationsPaged(name, destination, notificationMethodId, notificationStateId, referenceObjectId, startDate, endDate, enrich, calculate, count, null, start, sortField, sortDir);
         return new ResponseEntity<EntityListResponse<NotificationDTO>>(notifications, HttpStatus.OK);
     }
-}
 
+    @ApiOperation(
+            value = "getUnreadInternalNotificationsCount",
+            notes = "Get count of unread internal notifications of current user",
+            response = InternalNotificationEventDTO.class
+    )
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 401, message = "Unauthorized", response = ErrorResponse.class),
+            @ApiResponse(code = 500, message = "Internal Server Error", response = ErrorResponse.class)})
+    @RequestMapping(value = "/internal/unread-count", method = RequestMethod.GET)
+    @ResponseBody
+    public ResponseEntity getUnreadInternalNotificationsCount() {
+        if (getUser() == null) {
+            return new ResponseEntity<ErrorResponse>(new ErrorResponse("auth.NOT_AUTHORIZED", userMessageSource.getMessage("auth.NOT_AUTHORIZED", null, LocaleHolder.getLocale())), HttpStatus.UNAUTHORIZED);
+        }
+
+        int unreadCount = notificationService.getUnreadInternalNotificationsCount(getUser().getId());
+        return new ResponseEntity<InternalNotificationEventDTO>(new InternalNotificationEventDTO(null, unreadCount), HttpStatus.OK);
+    }
+
+    @ApiOperation(
+            value = "readInternalNotification",
+            notes = "Mark internal notification of current user as read",
+            response = EmptyResponse.class
+    )
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "Bad request", response = ErrorResponse.class),
+            @ApiResponse(code = 401, message = "Unauthorized", response = ErrorResponse.class),
+            @ApiResponse(code = 500, message = "Internal Server Error", response = ErrorResponse.class)})
+    @RequestMapping(value = "/internal/{id}/read", method = RequestMethod.POST)
+    @ResponseBody
+    public ResponseEntity readInternalNotification(@ApiParam(name = "id", value = "id")
+                                                   @PathVariable(value = "id") UUID id) {
+        if (getUser() == null) {
+            return new ResponseEntity<ErrorResponse>(new ErrorResponse("auth.NOT_AUTHORIZED", userMessageSource.getMessage("auth.NOT_AUTHORIZED", null, LocaleHolder.getLocale())), HttpStatus.UNAUTHORIZED);
+        }
+
+        try {
+            notificationService.markInternalNotificationRead(getUser().getId(), id);
+            return new ResponseEntity<EmptyResponse>(EmptyResponse.getInstance(), HttpStatus.OK);
+        } catch (ObjectNotFoundException e) {
+            return new ResponseEntity<ErrorResponse>(new ErrorResponse("db.NOT_FOUND", messageSource.getMessage("db.NOT_FOUND", null, LocaleHolder.getLocale())), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @ApiOperation(
+            value = "streamInternalNotifications",
+            notes = "Server-sent events stream with internal notifications of current user. " +
+                    "Sends \"unread\" event on connect and \"notification\" event for every new notification"
+    )
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 401, message = "Unauthorized"),
+            @ApiResponse(code = 500, message = "Internal Server Error")})
+    @RequestMapping(value = "/internal/stream", method = RequestMethod.GET, produces = "text/event-stream")
+    public ResponseEntity<SseEmitter> streamInternalNotifications() {
+        if (getUser() == null) {
+            return new ResponseEntity<SseEmitter>(HttpStatus.UNAUTHORIZED);
+        }
+
+        final UUID userId = getUser().getId();
+        final SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT);
+        final InternalNotificationListener listener = new InternalNotificationListener() {
+            @Override
+            public void onNotification(UUID notificationId, int unreadCount) {
+                try {
+                    emitter.send(SseEmitter.event().name("notification").data(
+                            new InternalNotificationEventDTO(notificationId, unreadCount)));
+                } catch (IOException | IllegalStateException e) {
+                    internalNotificationBroker.unsubscribe(userId, this);
+                }
+            }
+        };
+        Runnable unsubscribe = new Runnable() {
+            @Override
+            public void run() {
+                internalNotificationBroker.unsubscribe(userId, listener);
+            }
+        };
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(new Consumer<Throwable>() {
+            @Override
+            public void accept(Throwable throwable) {
+                internalNotificationBroker.unsubscribe(userId, listener);
+            }
+        });
+
+        internalNotificationBroker.subscribe(userId, listener);
+        try {
+            emitter.send(SseEmitter.event().name("unread").data(
+                    new InternalNotificationEventDTO(null, notificationService.getUnreadInternalNotificationsCount(userId))));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return new ResponseEntity<SseEmitter>(emitter, HttpStatus.OK);
+    }
+
+    @ApiOperation(
+            value = "pollInternalNotifications",
+            notes = "Long-poll fallback for clients without server-sent events support. Completes when new internal notification " +
+                    "arrives, when unread count differs from the passed one or after timeout (ms, up to 60000)",
+            response = InternalNotificationEventDTO.class
+    )
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 401, message = "Unauthorized", response = ErrorResponse.class),
+            @ApiResponse(code = 500, message = "Internal Server Error", response = ErrorResponse.class)})
+    @RequestMapping(value = "/internal/poll", method = RequestMethod.GET)
+    @ResponseBody
+    public DeferredResult<ResponseEntity> pollInternalNotifications(@RequestParam(value = "unreadCount", required = false) Integer knownUnreadCount,
+                                                                    @RequestParam(value = "timeout", required = false, defaultValue = "30000") Long timeout) {
+        if (getUser() == null) {
+            DeferredResult<ResponseEntity> result = new DeferredResult<>();
+            result.setResult(new ResponseEntity<ErrorResponse>(new ErrorResponse("auth.NOT_AUTHORIZED", userMessageSource.getMessage("auth.NOT_AUTHORIZED", null, LocaleHolder.getLocale())), HttpStatus.UNAUTHORIZED));
+            return result;
+        }
+
+        //Subscribe before reading unread count, so notification sent in between is not missed
+        final UUID userId = getUser().getId();
+        final DeferredResult<ResponseEntity> result = new DeferredResult<>(Math.max(1L, Math.min(timeout, MAX_POLL_TIMEOUT)));
+        final InternalNotificationListener listener = new InternalNotificationListener() {
+            @Override
+            public void onNotification(UUID notificationId, int unreadCount) {
+                result.setResult(new ResponseEntity<InternalNotificationEventDTO>(
+                        new InternalNotificationEventDTO(notificationId, unreadCount), HttpStatus.OK));
+            }
+        };
+        result.onCompletion(new Runnable() {
+            @Override
+            public void run() {
+                internalNotificationBroker.unsubscribe(userId, listener);
+            }
+        });
+        result.onTimeout(new Runnable() {
+            @Override
+            public void run() {
+                result.setResult(new ResponseEntity<InternalNotificationEventDTO>(
+                        new InternalNotificationEventDTO(null, notificationService.getUnreadInternalNotificationsCount(userId)), HttpStatus.OK));
+            }
+        });
+        internalNotificationBroker.subscribe(userId, listener);
+
+        int unreadCount = notificationService.getUnreadInternalNotificationsCount(userId);
+        if (knownUnreadCount != null && knownUnreadCount != unreadCount) {
+            result.setResult(new ResponseEntity<InternalNotificationEventDTO>(new InternalNotificationEventDTO(null, unreadCount), HttpStatus.OK));
+        }
+        return result;
+    }
+}
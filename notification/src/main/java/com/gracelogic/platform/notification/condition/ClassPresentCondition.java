@@ -0,0 +1,19 @@
+package com.gracelogic.platform.notification.condition;
+
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Matches when the class of an optional platform module is on the classpath.
+ */
+public abstract class ClassPresentCondition implements Condition {
+
+    public abstract String className();
+
+    @Override
+    public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        return ClassUtils.isPresent(className(), context.getClassLoader());
+    }
+}
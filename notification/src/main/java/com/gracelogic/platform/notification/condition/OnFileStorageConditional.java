@@ -0,0 +1,9 @@
+package com.gracelogic.platform.notification.condition;
+
+public class OnFileStorageConditional extends ClassPresentCondition {
+
+    @Override
+    public String className() {
+        return "com.gracelogic.platform.filestorage.service.FileStorageService";
+    }
+}
@@ -0,0 +1,9 @@
+package com.gracelogic.platform.notification.condition;
+
+public class OnTaskConditional extends ClassPresentCondition {
+
+    @Override
+    public String className() {
+        return "com.gracelogic.platform.task.service.TaskExecutor";
+    }
+}
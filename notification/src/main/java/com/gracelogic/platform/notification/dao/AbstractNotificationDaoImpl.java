@@ -0,0 +1,153 @@
+package com.gracelogic.platform.notification.dao;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.gracelogic.platform.db.dao.BaseDao;
+import com.gracelogic.platform.notification.model.Notification;
+import com.gracelogic.platform.notification.service.DataConstants;
+import org.hibernate.Session;
+
+import javax.persistence.Query;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+public abstract class AbstractNotificationDaoImpl extends BaseDao implements NotificationDao {
+    private static final int INSERT_BATCH_SIZE = 1000;
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    protected static final String INSERT_COLUMNS = "id, created_dt, changed_dt, notification_state_id, notification_method_id, " +
+            "source, destination, title, body, fields, priority, error_description, reference_object_id, attempts, next_attempt_dt";
+
+    /**
+     * Inserts notifications with plain JDBC batches, bypassing the persistence context.
+     * Ids must be assigned by the caller.
+     */
+    @Override
+    public void insertNotifications(final List<Notification> notifications) {
+        Session session = getEntityManager().unwrap(Session.class);
+        final String tableName = getTableName(Notification.class);
+
+        session.doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(getInsertQuery(tableName))) {
+                int count = 0;
+                for (Notification notification : notifications) {
+                    int i = 1;
+                    setUuid(ps, i++, notification.getId());
+                    setDate(ps, i++, notification.getCreated());
+                    setDate(ps, i++, notification.getChanged());
+                    setUuid(ps, i++, notification.getNotificationState().getId());
+                    setUuid(ps, i++, notification.getNotificationMethod().getId());
+                    ps.setString(i++, notification.getSource());
+                    ps.setString(i++, notification.getDestination());
+                    ps.setString(i++, notification.getTitle());
+                    ps.setString(i++, notification.getBody());
+                    ps.setString(i++, notification.getFields());
+                    ps.setInt(i++, notification.getPriority());
+                    ps.setString(i++, notification.getErrorDescription());
+                    setUuid(ps, i++, notification.getReferenceObjectId());
+                    ps.setInt(i++, notification.getAttempts());
+                    setDate(ps, i, notification.getNextAttemptDt());
+                    ps.addBatch();
+
+                    if (++count % INSERT_BATCH_SIZE == 0) {
+                        ps.executeBatch();
+                    }
+                }
+                if (count % INSERT_BATCH_SIZE != 0) {
+                    ps.executeBatch();
+                }
+            }
+        });
+    }
+
+    @Override
+    public Date getOldestNotificationDate() {
+        List<?> result = getEntityManager().createNativeQuery("SELECT MIN(created_dt) FROM " + getTableName(Notification.class)).getResultList();
+        return result.isEmpty() ? null : (Date) result.get(0);
+    }
+
+    @Override
+    public Date getNextAttemptDate() {
+        Query query = getEntityManager().createQuery("select min(el.nextAttemptDt) from Notification el where el.notificationState.id = :queued");
+        query.setParameter("queued", DataConstants.NotificationStates.QUEUED.getValue());
+        return (Date) query.getSingleResult();
+    }
+
+    @Override
+    public long exportNotifications(final Date from, final Date to, OutputStream os) throws IOException {
+        Session session = getEntityManager().unwrap(Session.class);
+        final String query = "SELECT " + INSERT_COLUMNS + " FROM " + getTableName(Notification.class) + " WHERE created_dt >= ? AND created_dt < ?";
+        final JsonGenerator generator = jsonFactory.createGenerator(os, JsonEncoding.UTF8);
+        generator.setRootValueSeparator(null);
+
+        try {
+            long count = session.doReturningWork(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(query)) {
+                    ps.setFetchSize(EXPORT_FETCH_SIZE);
+                    setDate(ps, 1, from);
+                    setDate(ps, 2, to);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        ResultSetMetaData metaData = rs.getMetaData();
+                        long rows = 0;
+                        while (rs.next()) {
+                            writeRow(generator, rs, metaData);
+                            rows++;
+                        }
+                        return rows;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.flush();
+            return count;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeRow(JsonGenerator generator, ResultSet rs, ResultSetMetaData metaData) throws SQLException, IOException {
+        generator.writeStartObject();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String column = metaData.getColumnLabel(i).toLowerCase();
+            Object value = rs.getObject(i);
+            if (value == null) {
+                generator.writeNullField(column);
+            } else if (value instanceof Integer) {
+                generator.writeNumberField(column, (Integer) value);
+            } else {
+                generator.writeStringField(column, value.toString());
+            }
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    protected abstract String getInsertQuery(String tableName);
+
+    protected static List<String> toStrings(Collection<UUID> ids) {
+        List<String> result = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            result.add(id.toString());
+        }
+        return result;
+    }
+
+    protected static List<UUID> toUuids(List<?> ids) {
+        List<UUID> result = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            result.add(UUID.fromString(String.valueOf(id)));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,56 @@
+package com.gracelogic.platform.notification.dao;
+
+import com.gracelogic.platform.notification.model.Notification;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+public interface NotificationDao {
+    /**
+     * Atomically claims due QUEUED notifications skipping rows locked by other dispatchers.
+     * Claimed rows get an attempt counted and are hidden from other dispatchers until leaseUntil,
+     * so a notification abandoned by a crashed node is picked up again after the lease expires.
+     * Notifications of excluded methods are left in the queue.
+     */
+    List<UUID> claimNotifications(Date now, Date leaseUntil, int limit, Collection<UUID> excludedMethodIds);
+
+    /**
+     * Returns the earliest next attempt date of QUEUED notifications.
+     */
+    Date getNextAttemptDate();
+
+    void insertNotifications(List<Notification> notifications);
+
+    /**
+     * Returns true when the notification table is range partitioned by created_dt.
+     */
+    boolean isPartitioned();
+
+    /**
+     * Creates partition for [from, to) if it does not exist yet.
+     */
+    void createPartition(Date from, Date to);
+
+    /**
+     * Returns lower bounds of existing monthly partitions, oldest first.
+     */
+    List<Date> getPartitions();
+
+    void dropPartition(Date from);
+
+    Date getOldestNotificationDate();
+
+    /**
+     * Deletes at most limit notifications created before the date, returns number of deleted rows.
+     */
+    int deleteNotifications(Date before, int limit);
+
+    /**
+     * Writes notifications created in [from, to) as json lines, returns number of written rows.
+     */
+    long exportNotifications(Date from, Date to, OutputStream os) throws IOException;
+}
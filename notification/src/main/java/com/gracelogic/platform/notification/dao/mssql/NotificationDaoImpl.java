@@ -0,0 +1,81 @@
+package com.gracelogic.platform.notification.dao.mssql;
+
+import com.gracelogic.platform.db.condition.OnMSSQLServerConditional;
+import com.gracelogic.platform.notification.dao.AbstractNotificationDaoImpl;
+import com.gracelogic.platform.notification.model.Notification;
+import com.gracelogic.platform.notification.service.DataConstants;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.Query;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+@Conditional(OnMSSQLServerConditional.class)
+public class NotificationDaoImpl extends AbstractNotificationDaoImpl {
+    @Override
+    public List<UUID> claimNotifications(Date now, Date leaseUntil, int limit, Collection<UUID> excludedMethodIds) {
+        //READPAST is the SQL Server counterpart of SKIP LOCKED
+        String queryStr =
+                "WITH claimed AS ( " +
+                "  SELECT TOP (:limit) * FROM " + getTableName(Notification.class) + " WITH (ROWLOCK, UPDLOCK, READPAST) " +
+                "  WHERE notification_state_id = :queued AND next_attempt_dt <= :now " +
+                (excludedMethodIds.isEmpty() ? "" : "  AND notification_method_id NOT IN (:excluded) ") +
+                "  ORDER BY priority DESC, next_attempt_dt) " +
+                "UPDATE claimed SET " +
+                "  next_attempt_dt = :leaseUntil, attempts = COALESCE(attempts, 0) + 1, changed_dt = :now " +
+                "OUTPUT CAST(inserted.id AS varchar(36))";
+
+        Query query = getEntityManager().createNativeQuery(queryStr);
+        query.setParameter("leaseUntil", leaseUntil);
+        query.setParameter("now", now);
+        query.setParameter("queued", DataConstants.NotificationStates.QUEUED.getValue().toString());
+        query.setParameter("limit", limit);
+        if (!excludedMethodIds.isEmpty()) {
+            query.setParameter("excluded", toStrings(excludedMethodIds));
+        }
+        return toUuids(query.getResultList());
+    }
+
+    /**
+     * Partitioning is not managed on SQL Server: retention falls back to batched deletes and partition maintenance does nothing.
+     */
+    @Override
+    public boolean isPartitioned() {
+        return false;
+    }
+
+    @Override
+    public void createPartition(Date from, Date to) {
+    }
+
+    @Override
+    public List<Date> getPartitions() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void dropPartition(Date from) {
+    }
+
+    /**
+     * Small batches keep locks below the lock escalation threshold and the transaction log short.
+     */
+    @Override
+    public int deleteNotifications(Date before, int limit) {
+        Query query = getEntityManager().createNativeQuery("DELETE TOP (:limit) FROM " + getTableName(Notification.class) + " WHERE created_dt < :before");
+        query.setParameter("before", before);
+        query.setParameter("limit", limit);
+        return query.executeUpdate();
+    }
+
+    @Override
+    protected String getInsertQuery(String tableName) {
+        return "INSERT INTO " + tableName + " (" + INSERT_COLUMNS + ") " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    }
+}
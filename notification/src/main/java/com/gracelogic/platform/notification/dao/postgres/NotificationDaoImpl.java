@@ -0,0 +1,122 @@
+package com.gracelogic.platform.notification.dao.postgres;
+
+import com.gracelogic.platform.db.condition.OnPostgreSQLConditional;
+import com.gracelogic.platform.notification.dao.AbstractNotificationDaoImpl;
+import com.gracelogic.platform.notification.model.Notification;
+import com.gracelogic.platform.notification.service.DataConstants;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.Query;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+@Repository
+@Conditional(OnPostgreSQLConditional.class)
+public class NotificationDaoImpl extends AbstractNotificationDaoImpl {
+    private static final String PARTITION_INFIX = "_p";
+    private static final String PARTITION_SUFFIX_FORMAT = "yyyyMM";
+
+    @Override
+    public List<UUID> claimNotifications(Date now, Date leaseUntil, int limit, Collection<UUID> excludedMethodIds) {
+        String tableName = getTableName(Notification.class);
+        String queryStr =
+                "UPDATE " + tableName + " SET " +
+                "  next_attempt_dt = :leaseUntil, attempts = COALESCE(attempts, 0) + 1, changed_dt = :now " +
+                "WHERE id IN ( " +
+                "  SELECT id FROM " + tableName + " " +
+                "  WHERE notification_state_id = CAST(:queued AS uuid) AND next_attempt_dt <= :now " +
+                (excludedMethodIds.isEmpty() ? "" : "  AND CAST(notification_method_id AS text) NOT IN (:excluded) ") +
+                "  ORDER BY priority DESC, next_attempt_dt " +
+                "  LIMIT :limit " +
+                "  FOR UPDATE SKIP LOCKED) " +
+                "RETURNING CAST(id AS text)";
+
+        Query query = getEntityManager().createNativeQuery(queryStr);
+        query.setParameter("leaseUntil", leaseUntil);
+        query.setParameter("now", now);
+        query.setParameter("queued", DataConstants.NotificationStates.QUEUED.getValue().toString());
+        query.setParameter("limit", limit);
+        if (!excludedMethodIds.isEmpty()) {
+            query.setParameter("excluded", toStrings(excludedMethodIds));
+        }
+        return toUuids(query.getResultList());
+    }
+
+    @Override
+    public boolean isPartitioned() {
+        Query query = getEntityManager().createNativeQuery("SELECT COUNT(*) FROM pg_partitioned_table WHERE partrelid = to_regclass(:tableName)");
+        query.setParameter("tableName", getTableName(Notification.class));
+        return ((Number) query.getSingleResult()).intValue() > 0;
+    }
+
+    /**
+     * Bounds are formatted into the statement because DDL does not accept bind parameters.
+     */
+    @Override
+    public void createPartition(Date from, Date to) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        getEntityManager().createNativeQuery(String.format(
+                "CREATE TABLE IF NOT EXISTS %s PARTITION OF %s FOR VALUES FROM ('%s') TO ('%s')",
+                getPartitionName(from), getTableName(Notification.class), format.format(from), format.format(to))).executeUpdate();
+    }
+
+    /**
+     * Only partitions named by createPartition are returned, manually attached ones are left alone.
+     */
+    @Override
+    public List<Date> getPartitions() {
+        Query query = getEntityManager().createNativeQuery(
+                "SELECT CAST(c.relname AS text) FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = to_regclass(:tableName)");
+        query.setParameter("tableName", getTableName(Notification.class));
+
+        List<Date> partitions = new ArrayList<>();
+        //relname is not schema qualified
+        String tableName = getTableName(Notification.class);
+        String partitionPrefix = (tableName.substring(tableName.lastIndexOf('.') + 1) + PARTITION_INFIX).toLowerCase();
+        SimpleDateFormat format = new SimpleDateFormat(PARTITION_SUFFIX_FORMAT);
+        format.setLenient(false);
+        for (Object name : query.getResultList()) {
+            String partitionName = String.valueOf(name).toLowerCase();
+            if (partitionName.startsWith(partitionPrefix)) {
+                try {
+                    partitions.add(format.parse(partitionName.substring(partitionPrefix.length())));
+                } catch (ParseException ignored) {
+                }
+            }
+        }
+        Collections.sort(partitions);
+        return partitions;
+    }
+
+    @Override
+    public void dropPartition(Date from) {
+        getEntityManager().createNativeQuery("DROP TABLE IF EXISTS " + getPartitionName(from)).executeUpdate();
+    }
+
+    @Override
+    public int deleteNotifications(Date before, int limit) {
+        String tableName = getTableName(Notification.class);
+        Query query = getEntityManager().createNativeQuery(
+                "DELETE FROM " + tableName + " WHERE id IN ( " +
+                "  SELECT id FROM " + tableName + " WHERE created_dt < :before LIMIT :limit)");
+        query.setParameter("before", before);
+        query.setParameter("limit", limit);
+        return query.executeUpdate();
+    }
+
+    /**
+     * Partitions are named after the parent table and live in its schema.
+     */
+    private String getPartitionName(Date from) {
+        return getTableName(Notification.class) + PARTITION_INFIX + new SimpleDateFormat(PARTITION_SUFFIX_FORMAT).format(from);
+    }
+
+    @Override
+    protected String getInsertQuery(String tableName) {
+        return "INSERT INTO " + tableName + " (" + INSERT_COLUMNS + ") " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, CAST(? AS json), ?, ?, ?, ?, ?)";
+    }
+}
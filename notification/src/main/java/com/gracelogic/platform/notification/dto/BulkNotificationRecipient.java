@@ -0,0 +1,44 @@
+package com.gracelogic.platform.notification.dto;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+public class BulkNotificationRecipient {
+    private String destination;
+    private Map<String, String> params = new HashMap<>();
+    private UUID referenceObjectId;
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    public Map<String, String> getParams() {
+        return params;
+    }
+
+    public void setParams(Map<String, String> params) {
+        this.params = params;
+    }
+
+    public UUID getReferenceObjectId() {
+        return referenceObjectId;
+    }
+
+    public void setReferenceObjectId(UUID referenceObjectId) {
+        this.referenceObjectId = referenceObjectId;
+    }
+
+    public BulkNotificationRecipient(String destination, Map<String, String> params, UUID referenceObjectId) {
+        this.destination = destination;
+        this.params = params;
+        this.referenceObjectId = referenceObjectId;
+    }
+
+    public BulkNotificationRecipient() {
+    }
+}
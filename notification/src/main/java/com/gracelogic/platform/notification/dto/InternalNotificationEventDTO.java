@@ -0,0 +1,32 @@
+package com.gracelogic.platform.notification.dto;
+
+import java.util.UUID;
+
+public class InternalNotificationEventDTO {
+    private UUID notificationId;
+    private Integer unreadCount;
+
+    public UUID getNotificationId() {
+        return notificationId;
+    }
+
+    public void setNotificationId(UUID notificationId) {
+        this.notificationId = notificationId;
+    }
+
+    public Integer getUnreadCount() {
+        return unreadCount;
+    }
+
+    public void setUnreadCount(Integer unreadCount) {
+        this.unreadCount = unreadCount;
+    }
+
+    public InternalNotificationEventDTO(UUID notificationId, Integer unreadCount) {
+        this.notificationId = notificationId;
+        this.unreadCount = unreadCount;
+    }
+
+    public InternalNotificationEventDTO() {
+    }
+}
@@ -0,0 +1,38 @@
+package com.gracelogic.platform.notification.dto;
+
+
+public class NotificationSenderRequest {
+    private String source;
+    private String destination;
+    private Content content;
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    public Content getContent() {
+        return content;
+    }
+
+    public void setContent(Content content) {
+        this.content = content;
+    }
+
+    public NotificationSenderRequest(String source, String destination, Content content) {
+        this.source = source;
+        this.destination = destination;
+        this.content = content;
+    }
+}
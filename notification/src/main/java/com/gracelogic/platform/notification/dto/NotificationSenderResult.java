@@ -4,6 +4,7 @@ package com.gracelogic.platform.notification.dto;
 public class NotificationSenderResult {
     private boolean success;
     private String errorDescription;
+    private Long retryDelay; //ms, set when message was not sent because of rate limit and should be queued again
 
     public boolean isSuccess() {
         return success;
@@ -21,8 +22,22 @@ public class NotificationSenderResult {
         this.errorDescription = errorDescription;
     }
 
+    public Long getRetryDelay() {
+        return retryDelay;
+    }
+
+    public void setRetryDelay(Long retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
     public NotificationSenderResult(boolean success, String errorDescription) {
         this.success = success;
         this.errorDescription = errorDescription;
     }
+
+    public NotificationSenderResult(String errorDescription, long retryDelay) {
+        this.success = false;
+        this.errorDescription = errorDescription;
+        this.retryDelay = retryDelay;
+    }
 }
@@ -1,6 +1,7 @@
 package com.gracelogic.platform.notification.method.email;
 
 import com.gracelogic.platform.notification.dto.Content;
+import com.gracelogic.platform.notification.dto.NotificationSenderRequest;
 import com.gracelogic.platform.notification.dto.NotificationSenderResult;
 import com.gracelogic.platform.notification.service.DataConstants;
 import com.gracelogic.platform.notification.service.NotificationSender;
@@ -10,13 +11,16 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
 import javax.mail.*;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
-import java.util.Properties;
+import java.util.List;
 import java.util.UUID;
 
 @Service("emailNotificationSender")
@@ -26,52 +30,169 @@ public class EmailNotificationSender implements NotificationSender {
     private PropertyService propertyService;
     private static Logger logger = LoggerFactory.getLogger(EmailNotificationSender.class);
 
+    private volatile SmtpTransportPool pool;
+
     @Override
     public NotificationSenderResult send(String source, String destination, Content content) {
-        logger.info("Sending e-mail to: {}", destination);
+        return send(Collections.singletonList(new NotificationSenderRequest(source, destination, content))).get(0);
+    }
 
+    /**
+     * Sends all requests over a single pooled SMTP connection, reconnecting once per message if the connection breaks.
+     * A connection that failed is closed instead of being returned to the pool.
+     */
+    @Override
+    public List<NotificationSenderResult> send(List<NotificationSenderRequest> requests) {
+        List<NotificationSenderResult> results = new ArrayList<>(requests.size());
+        SmtpTransportPool pool;
+        Transport transport;
         try {
-            boolean isSslEnable = propertyService.getPropertyValueAsBoolean("notification:smtp_ssl_enable");
-            boolean isAuth = propertyService.getPropertyValueAsBoolean("notification:smtp_auth");
+            pool = getPool();
+            transport = pool.borrow();
+        } catch (Exception e) {
+            logger.error("send email exception", e);
+            for (int i = 0; i < requests.size(); i++) {
+                results.add(new NotificationSenderResult(false, e.getMessage()));
+            }
+            return results;
+        }
 
+        //Set while the transport may be unusable, such transport is reconnected before the next message and never returned to the pool
+        boolean broken = false;
+        try {
+            for (NotificationSenderRequest request : requests) {
+                logger.info("Sending e-mail to: {}", request.getDestination());
 
-            Properties p = new Properties();
-            p.put("mail.smtp.host", propertyService.getPropertyValue("notification:smtp_host"));
-            p.put("mail.smtp.port", propertyService.getPropertyValue("notification:smtp_port"));
-            p.put("mail.smtp.auth", propertyService.getPropertyValue("notification:smtp_auth"));
-            p.put("mail.smtp.ssl.enable", propertyService.getPropertyValue("notification:smtp_ssl_enable"));
+                javax.mail.Message msg;
+                try {
+                    msg = createMessage(pool.getSession(), request.getSource(), request.getDestination(), request.getContent());
+                } catch (Exception e) {
+                    logger.error("send email exception", e);
+                    results.add(new NotificationSenderResult(false, e.getMessage()));
+                    continue;
+                }
 
-            if (isSslEnable) {
-                p.put("mail.smtp.socketFactory.port", propertyService.getPropertyValue("notification:smtp_socketFactory_port"));
-                p.put("mail.smtp.socketFactory.class", propertyService.getPropertyValue("notification:smtp_socketFactory_class"));
-            }
+                if (broken) {
+                    try {
+                        transport = pool.reconnect(transport);
+                        broken = false;
+                    } catch (Exception reconnectException) {
+                        transport = null;
+                        logger.error("send email exception", reconnectException);
+                        while (results.size() < requests.size()) {
+                            results.add(new NotificationSenderResult(false, reconnectException.getMessage()));
+                        }
+                        return results;
+                    }
+                }
 
-            Authenticator auth = null;
-            if (isAuth) {
-                auth = new Authenticator() {
-                    protected PasswordAuthentication getPasswordAuthentication() {
-                        return new PasswordAuthentication(propertyService.getPropertyValue("notification:smtp_user"), propertyService.getPropertyValue("notification:smtp_password"));
+                broken = true;
+                try {
+                    transport.sendMessage(msg, msg.getAllRecipients());
+                    broken = false;
+                } catch (SendFailedException e) {
+                    broken = false;
+                    logger.error("send email exception", e);
+                    results.add(new NotificationSenderResult(false, e.getMessage()));
+                    continue;
+                } catch (Exception e) {
+                    logger.warn("SMTP connection failed, reconnecting: {}", e.getMessage());
+                    try {
+                        transport = pool.reconnect(transport);
+                    } catch (Exception reconnectException) {
+                        transport = null;
+                        logger.error("send email exception", reconnectException);
+                        while (results.size() < requests.size()) {
+                            results.add(new NotificationSenderResult(false, reconnectException.getMessage()));
+                        }
+                        return results;
                     }
-                };
+                    try {
+                        transport.sendMessage(msg, msg.getAllRecipients());
+                        broken = false;
+                    } catch (SendFailedException retryException) {
+                        broken = false;
+                        logger.error("send email exception", retryException);
+                        results.add(new NotificationSenderResult(false, retryException.getMessage()));
+                        continue;
+                    } catch (Exception retryException) {
+                        logger.error("send email exception", retryException);
+                        results.add(new NotificationSenderResult(false, retryException.getMessage()));
+                        continue;
+                    }
+                }
+                results.add(new NotificationSenderResult(true, null));
             }
-            Session s = Session.getInstance(p, auth);
-            javax.mail.Message msg = new MimeMessage(s);
-            msg.setFrom(new InternetAddress(source));
-            msg.addRecipient(javax.mail.Message.RecipientType.TO, new InternetAddress(destination));
-            msg.setSubject(content.getTitle());
-            msg.setSentDate(new Date());
-            MimeBodyPart bodyPart = new MimeBodyPart();
-            Multipart body = new MimeMultipart();
-            bodyPart.setText(content.getBody(), "utf-8");
-            body.addBodyPart(bodyPart);
-            msg.setContent(body);
-
-            Transport.send(msg);
-        } catch (Exception e) {
-            logger.error("send email exception", e);
-            return new NotificationSenderResult(false, e.getMessage());
+        } finally {
+            if (transport != null) {
+                if (broken) {
+                    pool.invalidate(transport);
+                } else {
+                    pool.release(transport);
+                }
+            }
+        }
+        return results;
+    }
+
+    private static javax.mail.Message createMessage(Session session, String source, String destination, Content content) throws MessagingException {
+        javax.mail.Message msg = new MimeMessage(session);
+        msg.setFrom(new InternetAddress(source));
+        msg.addRecipient(javax.mail.Message.RecipientType.TO, new InternetAddress(destination));
+        msg.setSubject(content.getTitle());
+        msg.setSentDate(new Date());
+        MimeBodyPart bodyPart = new MimeBodyPart();
+        Multipart body = new MimeMultipart();
+        bodyPart.setText(content.getBody(), "utf-8");
+        body.addBodyPart(bodyPart);
+        msg.setContent(body);
+        msg.saveChanges();
+        return msg;
+    }
+
+    /**
+     * Returns pool for the current smtp settings. Session and connections are recreated only when settings change.
+     */
+    private SmtpTransportPool getPool() {
+        SmtpSettings settings = new SmtpSettings(propertyService);
+        SmtpTransportPool current = pool;
+        if (current != null && current.getSettings().equals(settings)) {
+            return current;
+        }
+
+        synchronized (this) {
+            current = pool;
+            if (current == null || !current.getSettings().equals(settings)) {
+                Session session = Session.getInstance(settings.getProperties(), createAuthenticator(settings));
+                SmtpTransportPool previous = current;
+                current = new SmtpTransportPool(session, settings);
+                pool = current;
+                if (previous != null) {
+                    logger.info("SMTP settings changed, reconnecting");
+                    previous.close();
+                }
+            }
+            return current;
+        }
+    }
+
+    private static Authenticator createAuthenticator(final SmtpSettings settings) {
+        if (!settings.isAuth()) {
+            return null;
+        }
+        return new Authenticator() {
+            protected PasswordAuthentication getPasswordAuthentication() {
+                return new PasswordAuthentication(settings.getUser(), settings.getPassword());
+            }
+        };
+    }
+
+    @PreDestroy
+    public void destroy() {
+        SmtpTransportPool current = pool;
+        if (current != null) {
+            current.close();
         }
-        return new NotificationSenderResult(true, null);
     }
 
     @Override
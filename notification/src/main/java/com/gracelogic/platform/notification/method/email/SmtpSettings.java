@@ -0,0 +1,92 @@
+package com.gracelogic.platform.notification.method.email;
+
+import com.gracelogic.platform.property.service.PropertyService;
+
+import java.util.Objects;
+import java.util.Properties;
+
+/**
+ * Snapshot of notification:smtp_* properties. Session and pooled connections are rebuilt only when it changes.
+ * Timeouts are in milliseconds.
+ */
+class SmtpSettings {
+    private static final int DEFAULT_POOL_SIZE = 4;
+    private static final int DEFAULT_CONNECTION_TIMEOUT = 10000;
+    private static final int DEFAULT_TIMEOUT = 30000;
+
+    private final Properties properties = new Properties();
+    private final boolean auth;
+    private final String user;
+    private final String password;
+    private final int poolSize;
+
+    SmtpSettings(PropertyService propertyService) {
+        boolean isSslEnable = Boolean.TRUE.equals(propertyService.getPropertyValueAsBoolean("notification:smtp_ssl_enable"));
+        auth = Boolean.TRUE.equals(propertyService.getPropertyValueAsBoolean("notification:smtp_auth"));
+
+        put("mail.smtp.host", propertyService.getPropertyValue("notification:smtp_host"));
+        put("mail.smtp.port", propertyService.getPropertyValue("notification:smtp_port"));
+        put("mail.smtp.auth", propertyService.getPropertyValue("notification:smtp_auth"));
+        put("mail.smtp.ssl.enable", propertyService.getPropertyValue("notification:smtp_ssl_enable"));
+        if (isSslEnable) {
+            put("mail.smtp.socketFactory.port", propertyService.getPropertyValue("notification:smtp_socketFactory_port"));
+            put("mail.smtp.socketFactory.class", propertyService.getPropertyValue("notification:smtp_socketFactory_class"));
+        }
+        //Without timeouts a hung server holds a pooled connection and its permit forever
+        putTimeout("mail.smtp.connectiontimeout", propertyService.getPropertyValueAsInteger("notification:smtp_connection_timeout"), DEFAULT_CONNECTION_TIMEOUT);
+        putTimeout("mail.smtp.timeout", propertyService.getPropertyValueAsInteger("notification:smtp_timeout"), DEFAULT_TIMEOUT);
+        putTimeout("mail.smtp.writetimeout", propertyService.getPropertyValueAsInteger("notification:smtp_write_timeout"), DEFAULT_TIMEOUT);
+        user = auth ? propertyService.getPropertyValue("notification:smtp_user") : null;
+        password = auth ? propertyService.getPropertyValue("notification:smtp_password") : null;
+
+        Integer poolSizeValue = propertyService.getPropertyValueAsInteger("notification:smtp_pool_size");
+        poolSize = poolSizeValue != null && poolSizeValue > 0 ? poolSizeValue : DEFAULT_POOL_SIZE;
+    }
+
+    private void put(String key, String value) {
+        if (value != null) {
+            properties.put(key, value);
+        }
+    }
+
+    private void putTimeout(String key, Integer value, int defaultValue) {
+        properties.put(key, String.valueOf(value != null && value > 0 ? value : defaultValue));
+    }
+
+    Properties getProperties() {
+        return properties;
+    }
+
+    boolean isAuth() {
+        return auth;
+    }
+
+    String getUser() {
+        return user;
+    }
+
+    String getPassword() {
+        return password;
+    }
+
+    int getPoolSize() {
+        return poolSize;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        SmtpSettings that = (SmtpSettings) o;
+        return auth == that.auth &&
+                poolSize == that.poolSize &&
+                properties.equals(that.properties) &&
+                Objects.equals(user, that.user) &&
+                Objects.equals(password, that.password);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(properties, auth, user, password, poolSize);
+    }
+}
@@ -0,0 +1,125 @@
+package com.gracelogic.platform.notification.method.email;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of connected SMTP transports bound to a single session. Idle transports are validated with NOOP
+ * (SMTPTransport.isConnected) before reuse and replaced with a fresh connection when the server dropped them.
+ */
+class SmtpTransportPool {
+    private static final long BORROW_TIMEOUT = 30000L;
+
+    private static Logger logger = LoggerFactory.getLogger(SmtpTransportPool.class);
+
+    private final Session session;
+    private final SmtpSettings settings;
+    private final Semaphore permits;
+    private final BlockingQueue<Transport> idle;
+    private volatile boolean closed = false;
+
+    SmtpTransportPool(Session session, SmtpSettings settings) {
+        this.session = session;
+        this.settings = settings;
+        this.permits = new Semaphore(settings.getPoolSize(), true);
+        this.idle = new ArrayBlockingQueue<>(settings.getPoolSize());
+    }
+
+    Session getSession() {
+        return session;
+    }
+
+    SmtpSettings getSettings() {
+        return settings;
+    }
+
+    Transport borrow() throws MessagingException {
+        try {
+            if (!permits.tryAcquire(BORROW_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                throw new MessagingException("Timed out waiting for free SMTP connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for free SMTP connection", e);
+        }
+
+        try {
+            Transport transport;
+            while ((transport = idle.poll()) != null) {
+                if (transport.isConnected()) {
+                    return transport;
+                }
+                close(transport);
+            }
+            return connect();
+        } catch (MessagingException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes a broken transport held by the caller and opens a new one in its place without releasing the permit.
+     */
+    Transport reconnect(Transport transport) throws MessagingException {
+        close(transport);
+        try {
+            return connect();
+        } catch (MessagingException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    void release(Transport transport) {
+        try {
+            if (closed || !idle.offer(transport)) {
+                close(transport);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    void invalidate(Transport transport) {
+        try {
+            close(transport);
+        } finally {
+            permits.release();
+        }
+    }
+
+    void close() {
+        closed = true;
+        Transport transport;
+        while ((transport = idle.poll()) != null) {
+            close(transport);
+        }
+    }
+
+    private Transport connect() throws MessagingException {
+        Transport transport = session.getTransport("smtp");
+        if (settings.isAuth()) {
+            transport.connect(settings.getUser(), settings.getPassword());
+        } else {
+            transport.connect();
+        }
+        return transport;
+    }
+
+    private static void close(Transport transport) {
+        try {
+            transport.close();
+        } catch (Exception e) {
+            logger.debug("Failed to close SMTP transport", e);
+        }
+    }
+}
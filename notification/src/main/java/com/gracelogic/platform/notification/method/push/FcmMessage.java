@@ -1,14 +1,21 @@
 package com.gracelogic.platform.notification.method.push;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class FcmMessage {
 	@JsonProperty("to")
+	@JsonInclude(JsonInclude.Include.NON_NULL)
 	private final String to;
 
+	@JsonProperty("registration_ids")
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private final List<String> registrationIds;
+
 	@JsonProperty("priority")
 	private final String priority = "high";
 
@@ -27,13 +34,21 @@ public class FcmMessage {
 	@JsonProperty("time_to_live")
 	private Long timeToLive = 0L;
 	
-	private FcmMessage(String to) {
+	private FcmMessage(String to, List<String> registrationIds) {
 		super();
 		this.to = to;
+		this.registrationIds = registrationIds;
 	}
 
 	public static FcmMessage to(String to) {
-		return new FcmMessage(to);
+		return new FcmMessage(to, null);
+	}
+
+	/**
+	 * Multicast message, FCM accepts up to 1000 registration ids, results are returned in the same order.
+	 */
+	public static FcmMessage toAll(List<String> registrationIds) {
+		return new FcmMessage(null, registrationIds);
 	}
 
 	public FcmMessage data(Map<String, ?> data) {
@@ -62,6 +77,10 @@ public class FcmMessage {
 		return to;
 	}
 
+	public List<String> getRegistrationIds() {
+		return registrationIds;
+	}
+
 	public String getPriority() {
 		return priority;
 	}
@@ -2,22 +2,28 @@ package com.gracelogic.platform.notification.method.push;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.gracelogic.platform.notification.dto.Content;
+import com.gracelogic.platform.notification.dto.NotificationSenderRequest;
 import com.gracelogic.platform.notification.dto.NotificationSenderResult;
 import com.gracelogic.platform.notification.service.HttpUtils;
 import com.gracelogic.platform.notification.service.DataConstants;
 import com.gracelogic.platform.notification.service.NotificationSender;
 import com.gracelogic.platform.property.service.PropertyService;
-import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.util.UUID;
+import java.util.*;
+import java.util.concurrent.*;
 
 @Service("pushNotificationSender")
 public class PushNotificationSender implements NotificationSender {
@@ -25,25 +31,42 @@ public class PushNotificationSender implements NotificationSender {
     private PropertyService propertyService;
 
     private static final String FCM_SERVICE_URL = "https://fcm.googleapis.com/fcm/send";
+    private static final int MAX_BATCH_SIZE = 1000;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int DEFAULT_MAX_IN_FLIGHT = 4;
+    private static final int MAX_CONNECTIONS = 20;
+    private static final int CONNECT_TIMEOUT = 10000;
+    private static final int READ_TIMEOUT = 30000;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
 
     private static Logger logger = LoggerFactory.getLogger(PushNotificationSender.class);
 
+    private CloseableHttpClient httpClient;
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    private void init() {
+        httpClient = HttpUtils.createPooledHttpClient(MAX_CONNECTIONS, CONNECT_TIMEOUT, READ_TIMEOUT);
+        executor = new ThreadPoolExecutor(DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_IN_FLIGHT, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        executor.shutdownNow();
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close push http client", e);
+        }
+    }
+
     @Override
     public NotificationSenderResult send(String source, String destination, Content content) {
-        HttpPost post = new HttpPost(FCM_SERVICE_URL);
-        post.addHeader("Authorization", "key=" + propertyService.getPropertyValue("notification:firebase_auth_key"));
         try {
-            ObjectMapper mapper = new ObjectMapper();
             FcmMessage fcmMessage = createFcmMessage(destination, content);
-            String json = mapper.writeValueAsString(fcmMessage);
-
-            StringEntity entity = new StringEntity(json, "UTF-8");
-            entity.setContentType("application/json");
-            post.setEntity(entity);
-            HttpResponse httpResponse = HttpUtils.createTrustAllSecuredHttpClient().execute(post);
-
-            String responseJson = EntityUtils.toString(httpResponse.getEntity());
-            logger.info("Response received: {}; content: {}", httpResponse.getStatusLine(), responseJson);
+            String responseJson = post(mapper.writeValueAsString(fcmMessage));
 
             FcmResponse response = mapper.readValue(responseJson, FcmResponse.class);
             if (response != null && response.getFailure() > 0) {
@@ -56,7 +79,144 @@ public class PushNotificationSender implements NotificationSender {
         return new NotificationSenderResult(true, null);
     }
 
+    /**
+     * Multicast path: requests with identical payload are grouped and sent with registration_ids in chunks of
+     * notification:push_batch_size tokens, at most notification:push_max_in_flight requests at a time.
+     * Per-token results are mapped back to the request positions.
+     */
+    @Override
+    public List<NotificationSenderResult> send(List<NotificationSenderRequest> requests) {
+        NotificationSenderResult[] results = new NotificationSenderResult[requests.size()];
+
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            try {
+                String payload = mapper.writeValueAsString(createFcmMessage((String) null, requests.get(i).getContent()));
+                List<Integer> group = groups.get(payload);
+                if (group == null) {
+                    group = new ArrayList<>();
+                    groups.put(payload, group);
+                }
+                group.add(i);
+            } catch (IOException e) {
+                results[i] = new NotificationSenderResult(false, e.getMessage());
+            }
+        }
+
+        int batchSize = getBatchSize();
+        adjustMaxInFlight();
+
+        List<Future<?>> futures = new LinkedList<>();
+        for (List<Integer> group : groups.values()) {
+            Content content = requests.get(group.get(0)).getContent();
+            for (int from = 0; from < group.size(); from += batchSize) {
+                final List<Integer> chunk = group.subList(from, Math.min(from + batchSize, group.size()));
+                final List<String> tokens = new ArrayList<>(chunk.size());
+                for (Integer index : chunk) {
+                    tokens.add(requests.get(index).getDestination());
+                }
+                final FcmMessage fcmMessage = createFcmMessage(tokens, content);
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        sendMulticast(fcmMessage, chunk, results);
+                    }
+                }));
+            }
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                logger.error("Failed to send push batch", e.getCause());
+            }
+        }
+
+        List<NotificationSenderResult> resultList = new ArrayList<>(results.length);
+        for (NotificationSenderResult result : results) {
+            resultList.add(result != null ? result : new NotificationSenderResult(false, "Push batch was not completed"));
+        }
+        return resultList;
+    }
+
+    private void sendMulticast(FcmMessage fcmMessage, List<Integer> indexes, NotificationSenderResult[] results) {
+        try {
+            String responseJson = post(mapper.writeValueAsString(fcmMessage));
+            FcmResponse response = mapper.readValue(responseJson, FcmResponse.class);
+            List<FcmResult> fcmResults = response != null ? response.getResults() : Collections.<FcmResult>emptyList();
+            for (int i = 0; i < indexes.size(); i++) {
+                FcmResult fcmResult = i < fcmResults.size() ? fcmResults.get(i) : null;
+                NotificationSenderResult result;
+                if (fcmResult == null) {
+                    result = new NotificationSenderResult(false, "No result for token in response: " + responseJson);
+                } else if (fcmResult.getError() != null) {
+                    result = new NotificationSenderResult(false, fcmResult.getError());
+                } else {
+                    result = new NotificationSenderResult(true, null);
+                }
+                results[indexes.get(i)] = result;
+            }
+        } catch (IOException e) {
+            for (Integer index : indexes) {
+                results[index] = new NotificationSenderResult(false, e.getMessage());
+            }
+        }
+    }
+
+    private String post(String json) throws IOException {
+        HttpPost post = new HttpPost(FCM_SERVICE_URL);
+        post.addHeader("Authorization", "key=" + propertyService.getPropertyValue("notification:firebase_auth_key"));
+        StringEntity entity = new StringEntity(json, "UTF-8");
+        entity.setContentType("application/json");
+        post.setEntity(entity);
+
+        try (CloseableHttpResponse httpResponse = httpClient.execute(post)) {
+            String responseJson = EntityUtils.toString(httpResponse.getEntity());
+            logger.info("Response received: {}; content: {}", httpResponse.getStatusLine(), responseJson);
+            if (httpResponse.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                throw new IOException("FCM request failed: " + httpResponse.getStatusLine());
+            }
+            return responseJson;
+        }
+    }
+
+    private int getBatchSize() {
+        Integer batchSize = propertyService.getPropertyValueAsInteger("notification:push_batch_size");
+        if (batchSize == null || batchSize <= 0) {
+            return DEFAULT_BATCH_SIZE;
+        }
+        return Math.min(batchSize, MAX_BATCH_SIZE);
+    }
+
+    private synchronized void adjustMaxInFlight() {
+        Integer maxInFlight = propertyService.getPropertyValueAsInteger("notification:push_max_in_flight");
+        int size = maxInFlight != null && maxInFlight > 0 ? maxInFlight : DEFAULT_MAX_IN_FLIGHT;
+        if (size > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(size);
+            executor.setCorePoolSize(size);
+        } else if (size < executor.getMaximumPoolSize()) {
+            executor.setCorePoolSize(size);
+            executor.setMaximumPoolSize(size);
+        }
+    }
+
     private FcmMessage createFcmMessage(String destination, Content content) {
+        FcmMessage request = FcmMessage.to(destination);
+        fillFcmMessage(request, content);
+        return request;
+    }
+
+    private FcmMessage createFcmMessage(List<String> destinations, Content content) {
+        FcmMessage request = FcmMessage.toAll(destinations);
+        fillFcmMessage(request, content);
+        return request;
+    }
+
+    private void fillFcmMessage(FcmMessage request, Content content) {
         FcmNotification fcmNotification = new FcmNotification();
         fcmNotification.setTitle(content.getTitle());
         fcmNotification.setBody(content.getBody());
@@ -65,7 +225,6 @@ public class PushNotificationSender implements NotificationSender {
         fcmNotification.setSound(content.getFields().get("sound"));
         fcmNotification.setClickAction(content.getFields().get("clickAction"));
 
-        FcmMessage request = FcmMessage.to(destination);
         request.setNotification(fcmNotification);
 
         if (content.getFields() != null) {
@@ -75,7 +234,6 @@ public class PushNotificationSender implements NotificationSender {
         }
 
         request.setTimeToLive(0L);
-        return request;
     }
 
     @Override
@@ -1,25 +1,35 @@
 package com.gracelogic.platform.notification.method.sms;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.gracelogic.platform.notification.dto.Content;
+import com.gracelogic.platform.notification.dto.NotificationSenderRequest;
 import com.gracelogic.platform.notification.dto.NotificationSenderResult;
 import com.gracelogic.platform.notification.service.DataConstants;
+import com.gracelogic.platform.notification.service.HttpUtils;
 import com.gracelogic.platform.notification.service.NotificationSender;
 import com.gracelogic.platform.property.service.PropertyService;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpEntity;
 import org.apache.http.HttpStatus;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
 import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
 import java.net.URLEncoder;
-import java.util.UUID;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 
 @Service("smsNotificationSender")
 public class SmsNotificationSender implements NotificationSender {
@@ -29,34 +39,169 @@ public class SmsNotificationSender implements NotificationSender {
     private Logger logger = LoggerFactory.getLogger(getClass());
 
     private final String API_URL = "http://sms.ru/sms/send?api_id=%s&to=%s&text=%s%s";
+    private static final String BULK_API_URL = "http://sms.ru/sms/send";
+    private static final int MAX_RECIPIENTS_PER_REQUEST = 100;
+    private static final int MAX_CONNECTIONS = 20;
+    private static final int CONNECT_TIMEOUT = 5000;
+    private static final int READ_TIMEOUT = 15000;
+    private static final long SETTINGS_REFRESH_INTERVAL = 30000L;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private CloseableHttpClient httpClient;
+
+    private volatile String apiKey;
+    private volatile long apiKeyLoaded = 0L;
+
+    @PostConstruct
+    private void init() {
+        httpClient = HttpUtils.createPooledHttpClient(MAX_CONNECTIONS, CONNECT_TIMEOUT, READ_TIMEOUT);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close sms http client", e);
+        }
+    }
 
     public NotificationSenderResult send(String source, String destination, Content content) {
         logger.info("Sending sms to: {}", destination);
 
         try {
-            CloseableHttpClient httpClient = HttpClients.custom().build();
-
             String uri = String.format(
                     API_URL,
-                    propertyService.getPropertyValue("notification:sms_apikey"),
+                    getApiKey(),
                     destination,
                     URLEncoder.encode(content.getBody(), "UTF-8"),
                     !StringUtils.isEmpty(source) ? String.format("&from=%s", source) : ""
             );
 
             HttpGet sendMethod = new HttpGet(uri);
-            CloseableHttpResponse result = httpClient.execute(sendMethod);
+            try (CloseableHttpResponse result = httpClient.execute(sendMethod)) {
+                String response = EntityUtils.toString(result.getEntity());
+                boolean success = result.getStatusLine().getStatusCode() == HttpStatus.SC_OK;
+
+                return new NotificationSenderResult(success, success ? null : response);
+            }
+        } catch (Exception e) {
+            return new NotificationSenderResult(false, e.getMessage());
+        }
+    }
+
+    /**
+     * Sms with the same sender and body are sent with one gateway request for up to 100 recipients,
+     * per-number statuses from the json response are mapped back to the request positions.
+     */
+    @Override
+    public List<NotificationSenderResult> send(List<NotificationSenderRequest> requests) {
+        NotificationSenderResult[] results = new NotificationSenderResult[requests.size()];
+
+        Map<List<String>, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            NotificationSenderRequest request = requests.get(i);
+            List<String> key = Arrays.asList(StringUtils.defaultString(request.getSource()), request.getContent().getBody());
+            List<Integer> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+            }
+            group.add(i);
+        }
+
+        for (Map.Entry<List<String>, List<Integer>> entry : groups.entrySet()) {
+            List<Integer> group = entry.getValue();
+            for (int from = 0; from < group.size(); from += MAX_RECIPIENTS_PER_REQUEST) {
+                List<Integer> chunk = group.subList(from, Math.min(from + MAX_RECIPIENTS_PER_REQUEST, group.size()));
+                if (chunk.size() == 1) {
+                    NotificationSenderRequest request = requests.get(chunk.get(0));
+                    results[chunk.get(0)] = send(request.getSource(), request.getDestination(), request.getContent());
+                } else {
+                    sendBulk(entry.getKey().get(0), entry.getKey().get(1), chunk, requests, results);
+                }
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private void sendBulk(String source, String body, List<Integer> indexes, List<NotificationSenderRequest> requests, NotificationSenderResult[] results) {
+        List<String> destinations = new ArrayList<>(indexes.size());
+        for (Integer index : indexes) {
+            destinations.add(requests.get(index).getDestination());
+        }
+        logger.info("Sending sms to: {}", destinations);
+
+        try {
+            List<NameValuePair> params = new ArrayList<>();
+            params.add(new BasicNameValuePair("api_id", getApiKey()));
+            params.add(new BasicNameValuePair("to", StringUtils.join(destinations, ",")));
+            params.add(new BasicNameValuePair("msg", body));
+            params.add(new BasicNameValuePair("json", "1"));
+            if (!StringUtils.isEmpty(source)) {
+                params.add(new BasicNameValuePair("from", source));
+            }
+            HttpPost sendMethod = new HttpPost(BULK_API_URL);
+            sendMethod.setEntity(new UrlEncodedFormEntity(params, StandardCharsets.UTF_8));
+
+            try (CloseableHttpResponse result = httpClient.execute(sendMethod)) {
+                String response = EntityUtils.toString(result.getEntity());
+                if (result.getStatusLine().getStatusCode() != HttpStatus.SC_OK) {
+                    fail(indexes, response, results);
+                    return;
+                }
 
-            HttpEntity entity = result.getEntity();
-            String response = EntityUtils.toString(entity);
-            EntityUtils.consume(entity);
+                JsonNode root = mapper.readTree(response);
+                JsonNode sms = root.path("sms");
+                if (!"OK".equals(root.path("status").asText()) || sms.isMissingNode()) {
+                    fail(indexes, response, results);
+                    return;
+                }
 
-            boolean success = result.getStatusLine().getStatusCode() == HttpStatus.SC_OK;
+                Map<String, JsonNode> statuses = new HashMap<>();
+                Iterator<Map.Entry<String, JsonNode>> fields = sms.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    statuses.put(normalizePhone(field.getKey()), field.getValue());
+                }
 
-            return new NotificationSenderResult(success, success ? null : response);
+                for (int i = 0; i < indexes.size(); i++) {
+                    JsonNode status = statuses.get(normalizePhone(destinations.get(i)));
+                    if (status == null) {
+                        results[indexes.get(i)] = new NotificationSenderResult(false, "No status for number in response: " + response);
+                    } else if ("OK".equals(status.path("status").asText())) {
+                        results[indexes.get(i)] = new NotificationSenderResult(true, null);
+                    } else {
+                        results[indexes.get(i)] = new NotificationSenderResult(false, status.toString());
+                    }
+                }
+            }
         } catch (Exception e) {
-            return new NotificationSenderResult(false, e.getMessage());
+            fail(indexes, e.getMessage(), results);
+        }
+    }
+
+    private static void fail(List<Integer> indexes, String errorDescription, NotificationSenderResult[] results) {
+        for (Integer index : indexes) {
+            results[index] = new NotificationSenderResult(false, errorDescription);
+        }
+    }
+
+    private static String normalizePhone(String phone) {
+        return phone != null ? phone.replaceAll("\\D", "") : null;
+    }
+
+    /**
+     * Gateway key is re-read at most once per property cache interval instead of on every sms.
+     */
+    private String getApiKey() {
+        long now = System.currentTimeMillis();
+        if (apiKey == null || now - apiKeyLoaded > SETTINGS_REFRESH_INTERVAL) {
+            apiKey = propertyService.getPropertyValue("notification:sms_apikey");
+            apiKeyLoaded = now;
         }
+        return apiKey;
     }
 
     @Override
@@ -3,6 +3,7 @@ package com.gracelogic.platform.notification.method.telegram;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.objects.Update;
@@ -44,6 +45,13 @@ public class TelegramBot extends TelegramLongPollingBot {
         setKeyboards();
     }
 
+    public TelegramBot(String botToken, String botUsername, DefaultBotOptions options) {
+        super(options);
+        this.botToken = botToken;
+        this.botUsername = botUsername;
+        setKeyboards();
+    }
+
     private void setKeyboards() {
         KeyboardRow row = new KeyboardRow();
         row.add("id");
@@ -70,10 +78,14 @@ public class TelegramBot extends TelegramLongPollingBot {
     }
 
     public void sendNotification(String text, String chatId) throws TelegramApiException {
+        execute(createNotificationMessage(text, chatId));
+    }
+
+    public SendMessage createNotificationMessage(String text, String chatId) {
         SendMessage notificationMessage = new SendMessage();
         notificationMessage.setText(text);
         notificationMessage.setChatId(chatId);
         notificationMessage.setReplyMarkup(this.keyboard);
-        execute(notificationMessage);
+        return notificationMessage;
     }
 }
@@ -1,61 +1,267 @@
 package com.gracelogic.platform.notification.method.telegram;
 
 import com.gracelogic.platform.notification.dto.Content;
+import com.gracelogic.platform.notification.dto.NotificationSenderRequest;
 import com.gracelogic.platform.notification.dto.NotificationSenderResult;
 import com.gracelogic.platform.notification.service.DataConstants;
 import com.gracelogic.platform.notification.service.NotificationSender;
+import com.gracelogic.platform.notification.service.TokenBucket;
 import com.gracelogic.platform.property.service.PropertyService;
+import net.jodah.expiringmap.ExpirationPolicy;
+import net.jodah.expiringmap.ExpiringMap;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.ApiContextInitializer;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.ApiContext;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+import org.telegram.telegrambots.meta.generics.BotSession;
+import org.telegram.telegrambots.meta.updateshandlers.SentCallback;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.*;
 
 @Service("telegramNotificationSender")
 public class TelegramNotificationSender implements NotificationSender {
     @Autowired
     private PropertyService propertyService;
 
-    private TelegramBot telegramBot = null;
+    private static final int DEFAULT_RATE_LIMIT = 30;
+    private static final int MAX_THREADS = 8;
+    private static final long SEND_TIMEOUT = 60000L;
 
     private static Logger logger = LoggerFactory.getLogger(TelegramNotificationSender.class);
 
+    private static boolean apiContextInitialized = false;
+
+    private volatile TelegramBot telegramBot = null;
+    private BotSession botSession = null;
+    private String botUsername = null;
+    private String botToken = null;
+
+    private volatile TokenBucket botBucket = new TokenBucket(DEFAULT_RATE_LIMIT, 1000L);
+
+    //Telegram allows about one message per second to the same chat
+    private final ExpiringMap<String, TokenBucket> chatBuckets = ExpiringMap.builder()
+            .maxSize(100000)
+            .expirationPolicy(ExpirationPolicy.ACCESSED)
+            .expiration(1, TimeUnit.MINUTES)
+            .build();
+
+    //Set when Telegram answers 429, messages are queued again until this moment
+    private volatile long pausedUntil = 0L;
 
     @PostConstruct
-    private void init(){
-        String telegramBotUsername = propertyService.getPropertyValue("notification:telegram_bot_username");
-        String telegramBotToken = propertyService.getPropertyValue("notification:telegram_bot_token");
-        if (!StringUtils.isEmpty(telegramBotUsername) && !StringUtils.isEmpty(telegramBotToken)) {
-            ApiContextInitializer.init();
-            TelegramBotsApi telegramBotsApi = new TelegramBotsApi();
-            telegramBot = new TelegramBot(telegramBotUsername, telegramBotToken);
+    private void init() {
+        try {
+            getTelegramBot();
+        } catch (Exception e) {
+            logger.error("Failed to initialize telegram bot", e);
+        }
+    }
 
-            try {
-                telegramBotsApi.registerBot(telegramBot);
-            } catch (TelegramApiException e) {
-                logger.error("Failed to initialize telegram bot", e);
+    @PreDestroy
+    private void destroy() {
+        synchronized (this) {
+            if (botSession != null) {
+                botSession.stop();
             }
         }
     }
 
+    /**
+     * Returns bot for the current username and token properties, the bot is re-registered when they change.
+     */
+    private TelegramBot getTelegramBot() throws TelegramApiException {
+        String username = propertyService.getPropertyValue("notification:telegram_bot_username");
+        String token = propertyService.getPropertyValue("notification:telegram_bot_token");
+        if (StringUtils.isEmpty(username) || StringUtils.isEmpty(token)) {
+            return null;
+        }
+        if (telegramBot != null && StringUtils.equals(username, botUsername) && StringUtils.equals(token, botToken)) {
+            return telegramBot;
+        }
+
+        synchronized (this) {
+            if (telegramBot != null && StringUtils.equals(username, botUsername) && StringUtils.equals(token, botToken)) {
+                return telegramBot;
+            }
+
+            if (botSession != null) {
+                logger.info("Telegram bot settings changed, reinitializing");
+                botSession.stop();
+                botSession = null;
+                telegramBot = null;
+            }
+
+            synchronized (TelegramNotificationSender.class) {
+                if (!apiContextInitialized) {
+                    ApiContextInitializer.init();
+                    apiContextInitialized = true;
+                }
+            }
+
+            DefaultBotOptions options = ApiContext.getInstance(DefaultBotOptions.class);
+            options.setMaxThreads(MAX_THREADS);
+            TelegramBot bot = new TelegramBot(token, username, options);
+            botSession = new TelegramBotsApi().registerBot(bot);
+            botUsername = username;
+            botToken = token;
+            telegramBot = bot;
+            return bot;
+        }
+    }
+
     @Override
     public NotificationSenderResult send(String source, String destination, Content content) {
+        return send(Collections.singletonList(new NotificationSenderRequest(source, destination, content))).get(0);
+    }
+
+    /**
+     * Sends messages asynchronously at notification:telegram_rate_limit messages per second for the bot
+     * (30 by default) and one message per second for a chat. The calling thread never sleeps: messages over the limit
+     * and messages answered with 429 are returned with a retry delay, so the dispatcher queues them again.
+     * Messages without response in time are returned as failed and retried with backoff.
+     */
+    @Override
+    public List<NotificationSenderResult> send(List<NotificationSenderRequest> requests) {
+        List<NotificationSenderResult> results = new ArrayList<>(requests.size());
+        TelegramBot bot;
         try {
-            if (telegramBot == null) {
+            bot = getTelegramBot();
+            if (bot == null) {
                 throw new RuntimeException("Telegram bot not initialized");
             }
-
-            telegramBot.sendNotification(content.getBody(), destination);
-            return new NotificationSenderResult(true, null);
         } catch (Exception e) {
-            return new NotificationSenderResult(false, e.getMessage());
+            for (int i = 0; i < requests.size(); i++) {
+                results.add(new NotificationSenderResult(false, e.getMessage()));
+            }
+            return results;
+        }
+
+        int permits = updateBotRateLimit();
+        List<CompletableFuture<NotificationSenderResult>> futures = new ArrayList<>(requests.size());
+        long botDelay = pausedUntil - System.currentTimeMillis();
+        for (NotificationSenderRequest request : requests) {
+            CompletableFuture<NotificationSenderResult> future = new CompletableFuture<>();
+            futures.add(future);
+            //Once the bot is out of tokens the rest of the batch is not offered to the buckets
+            long delay = botDelay > 0 ? botDelay : acquireChat(request.getDestination());
+            if (delay == 0) {
+                botDelay = botBucket.tryAcquire();
+                if (botDelay > 0) {
+                    releaseChat(request.getDestination());
+                }
+                delay = botDelay;
+            }
+            if (delay > 0) {
+                future.complete(new NotificationSenderResult("Telegram rate limit", delay));
+            } else {
+                sendAsync(bot, bot.createNotificationMessage(request.getContent().getBody(), request.getDestination()), future);
+            }
+        }
+
+        long deadline = System.currentTimeMillis() + SEND_TIMEOUT;
+        for (CompletableFuture<NotificationSenderResult> future : futures) {
+            try {
+                results.add(future.get(Math.max(0L, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS));
+            } catch (TimeoutException e) {
+                results.add(new NotificationSenderResult(false, "Timed out waiting for telegram response"));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(new NotificationSenderResult(false, "Interrupted"));
+            } catch (ExecutionException e) {
+                results.add(new NotificationSenderResult(false, e.getCause().getMessage()));
+            }
+        }
+
+        //Postponed messages are spread at the bot rate, so they are not claimed again all at once
+        int position = 0;
+        for (NotificationSenderResult result : results) {
+            if (result.getRetryDelay() != null) {
+                result.setRetryDelay(result.getRetryDelay() + position++ * 1000L / permits);
+            }
+        }
+        return results;
+    }
+
+    private void sendAsync(TelegramBot bot, SendMessage message, final CompletableFuture<NotificationSenderResult> future) {
+        try {
+            bot.executeAsync(message, new SentCallback<Message>() {
+                @Override
+                public void onResult(BotApiMethod<Message> method, Message response) {
+                    future.complete(new NotificationSenderResult(true, null));
+                }
+
+                @Override
+                public void onError(BotApiMethod<Message> method, TelegramApiRequestException e) {
+                    Integer retryAfter = e.getParameters() != null ? e.getParameters().getRetryAfter() : null;
+                    if (retryAfter != null) {
+                        long delay = Math.max(1L, retryAfter) * 1000L;
+                        if (System.currentTimeMillis() + delay > pausedUntil) {
+                            logger.warn("Telegram rate limit exceeded, pausing for {} s", retryAfter);
+                            pausedUntil = System.currentTimeMillis() + delay;
+                        }
+                        future.complete(new NotificationSenderResult("Telegram rate limit", delay));
+                    } else {
+                        future.complete(new NotificationSenderResult(false, e.getMessage() + (e.getApiResponse() != null ? ": " + e.getApiResponse() : "")));
+                    }
+                }
+
+                @Override
+                public void onException(BotApiMethod<Message> method, Exception e) {
+                    future.complete(new NotificationSenderResult(false, e.getMessage()));
+                }
+            });
+        } catch (TelegramApiException e) {
+            future.complete(new NotificationSenderResult(false, e.getMessage()));
+        }
+    }
+
+    /**
+     * Takes a token from the chat bucket.
+     *
+     * @return 0 if message may be sent to the chat now, otherwise milliseconds to wait
+     */
+    private long acquireChat(String chatId) {
+        TokenBucket chatBucket = chatBuckets.get(chatId);
+        if (chatBucket == null) {
+            chatBucket = new TokenBucket(1, 1000L);
+            TokenBucket existing = chatBuckets.putIfAbsent(chatId, chatBucket);
+            if (existing != null) {
+                chatBucket = existing;
+            }
+        }
+        return chatBucket.tryAcquire();
+    }
+
+    private void releaseChat(String chatId) {
+        TokenBucket chatBucket = chatBuckets.get(chatId);
+        if (chatBucket != null) {
+            chatBucket.release();
+        }
+    }
+
+    private int updateBotRateLimit() {
+        Integer rateLimit = propertyService.getPropertyValueAsInteger("notification:telegram_rate_limit");
+        int permits = rateLimit != null && rateLimit > 0 ? rateLimit : DEFAULT_RATE_LIMIT;
+        if (!botBucket.hasSameRate(permits, 1000L)) {
+            botBucket = new TokenBucket(permits, 1000L);
         }
+        return permits;
     }
 
     @Override
@@ -10,7 +10,10 @@ import java.util.Date;
 import java.util.UUID;
 
 @Entity
-@Table(name = JPAProperties.TABLE_PREFIX + "NOTIFICATION")
+@Table(name = JPAProperties.TABLE_PREFIX + "NOTIFICATION", indexes = {
+        @Index(name = "IDX_" + JPAProperties.TABLE_PREFIX + "NOTIFICATION_DISPATCH", columnList = "NOTIFICATION_STATE_ID, NEXT_ATTEMPT_DT, PRIORITY"),
+        @Index(name = "IDX_" + JPAProperties.TABLE_PREFIX + "NOTIFICATION_CREATED", columnList = "CREATED_DT")
+})
 public class Notification extends IdObject<UUID> {
     @Id
     @Column(name = ID)
@@ -61,6 +64,12 @@ public class Notification extends IdObject<UUID> {
     @org.hibernate.annotations.Type(type = "com.gracelogic.platform.db.type.UUIDCustomType")
     private UUID referenceObjectId; //userId or other custom group field
 
+    @Column(name = "ATTEMPTS", nullable = true)
+    private Integer attempts;
+
+    @Column(name = "NEXT_ATTEMPT_DT", nullable = true)
+    private Date nextAttemptDt; //while QUEUED: time when dispatcher may claim notification
+
     @Override
     public UUID getId() {
         return id;
@@ -170,4 +179,20 @@ public class Notification extends IdObject<UUID> {
     public void setReferenceObjectId(UUID referenceObjectId) {
         this.referenceObjectId = referenceObjectId;
     }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public Date getNextAttemptDt() {
+        return nextAttemptDt;
+    }
+
+    public void setNextAttemptDt(Date nextAttemptDt) {
+        this.nextAttemptDt = nextAttemptDt;
+    }
 }
@@ -0,0 +1,45 @@
+package com.gracelogic.platform.notification.service;
+
+import com.github.mustachejava.Mustache;
+import com.gracelogic.platform.notification.dto.Content;
+
+import java.io.StringWriter;
+import java.util.Map;
+
+/**
+ * Template compiled once and rendered for many parameter sets. Compiled mustache is thread-safe,
+ * so one instance may be rendered concurrently.
+ */
+public class CompiledTemplate {
+    private final Mustache title;
+    private final Mustache body;
+    private final boolean found;
+
+    public CompiledTemplate(Mustache title, Mustache body, boolean found) {
+        this.title = title;
+        this.body = body;
+        this.found = found;
+    }
+
+    public Content render(Map<String, String> params) {
+        Content content = new Content();
+        if (!found) {
+            //Template not found - build raw params template
+            content.setTitle("Title");
+            StringBuilder sb = new StringBuilder();
+            for (String param : params.keySet()) {
+                sb.append(param).append("=").append(params.get(param)).append("\n");
+            }
+            content.setBody(sb.toString());
+            return content;
+        }
+
+        if (title != null) {
+            content.setTitle(title.execute(new StringWriter(), params).toString());
+        }
+        if (body != null) {
+            content.setBody(body.execute(new StringWriter(), params).toString());
+        }
+        return content;
+    }
+}
@@ -27,7 +27,8 @@ public class DataConstants {
         QUEUED(UUID.fromString("54480ce1-00eb-4179-a2b6-f74daa6b9e71")),
         SENT(UUID.fromString("54480ce1-00eb-4179-a2b6-f74daa6b9e72")),
         DELIVERED(UUID.fromString("54480ce1-00eb-4179-a2b6-f74daa6b9e73")),
-        ERROR(UUID.fromString("54480ce1-00eb-4179-a2b6-f74daa6b9e74"));
+        ERROR(UUID.fromString("54480ce1-00eb-4179-a2b6-f74daa6b9e74")),
+        DEAD(UUID.fromString("54480ce1-00eb-4179-a2b6-f74daa6b9e75")); //all delivery attempts failed
 
         private UUID value;
 
@@ -0,0 +1,29 @@
+package com.gracelogic.platform.notification.service;
+
+import com.gracelogic.platform.db.JsonUtils;
+import com.gracelogic.platform.filestorage.exception.UnsupportedStoreModeException;
+import com.gracelogic.platform.filestorage.service.FileStorageService;
+import com.gracelogic.platform.notification.condition.OnFileStorageConditional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.util.Map;
+import java.util.UUID;
+
+@Service
+@Conditional(OnFileStorageConditional.class)
+public class FileStorageNotificationArchiver implements NotificationArchiver {
+    @Autowired
+    private FileStorageService fileStorageService;
+
+    @Override
+    public void store(UUID storeModeId, File file, String extension, Map<String, String> meta) throws IOException {
+        try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+            fileStorageService.createStoredFile(storeModeId, null, is, extension, JsonUtils.mapToJson(meta));
+        } catch (UnsupportedStoreModeException e) {
+            throw new IOException("Unsupported store mode: " + storeModeId, e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.gracelogic.platform.notification.service;
+
+import java.util.UUID;
+
+/**
+ * Wakes clients waiting for INTERNAL notifications of a user and keeps per-user unread counters,
+ * so clients do not have to poll the notification list. User is identified by notification referenceObjectId.
+ */
+public interface InternalNotificationBroker {
+    void subscribe(UUID userId, InternalNotificationListener listener);
+
+    void unsubscribe(UUID userId, InternalNotificationListener listener);
+
+    /**
+     * Must be called in the transaction that marks notification as SENT, listeners are woken after commit.
+     */
+    void notificationSent(UUID userId, UUID notificationId);
+
+    /**
+     * Must be called in the transaction that marks notifications as read.
+     */
+    void notificationsRead(UUID userId, int count);
+
+    int getUnreadCount(UUID userId);
+
+    /**
+     * Applies an event received from another cluster node.
+     */
+    void onRemoteNotificationSent(UUID userId, UUID notificationId);
+
+    /**
+     * Applies an event received from another cluster node.
+     */
+    void onRemoteNotificationsRead(UUID userId);
+}
@@ -0,0 +1,197 @@
+package com.gracelogic.platform.notification.service;
+
+import com.gracelogic.platform.db.service.IdObjectService;
+import com.gracelogic.platform.notification.model.Notification;
+import net.jodah.expiringmap.ExpiringMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PreDestroy;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Service
+public class InternalNotificationBrokerImpl implements InternalNotificationBroker {
+    @Autowired
+    private IdObjectService idObjectService;
+
+    @Autowired
+    private NotificationRetentionService notificationRetentionService;
+
+    @Autowired(required = false)
+    private NotificationClusterChannel notificationClusterChannel;
+
+    private static Logger logger = LoggerFactory.getLogger(InternalNotificationBrokerImpl.class);
+
+    private static final int LISTENER_THREADS = 4;
+    private static final int LISTENER_QUEUE_SIZE = 10000;
+
+    private final ConcurrentMap<UUID, Set<InternalNotificationListener>> listeners = new ConcurrentHashMap<>();
+
+    //Counted once per user, then maintained by sent/read events
+    private final ExpiringMap<UUID, AtomicInteger> unreadCounters = ExpiringMap.builder()
+            .maxSize(100000)
+            .expiration(10, TimeUnit.MINUTES)
+            .build();
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    /**
+     * Listeners write to client connections and may count unread notifications, so they are called here instead of
+     * dispatcher or cluster listener threads. Events are dropped when the queue is full, clients catch up by unread count.
+     */
+    private final ThreadPoolExecutor listenerExecutor = new ThreadPoolExecutor(LISTENER_THREADS, LISTENER_THREADS,
+            60L, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(LISTENER_QUEUE_SIZE), new RejectedExecutionHandler() {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            long count = droppedEvents.incrementAndGet();
+            if (count == 1 || count % 1000 == 0) {
+                logger.warn("Internal notification listener queue is full, dropped events: {}", count);
+            }
+        }
+    });
+
+    @PreDestroy
+    private void destroy() {
+        listenerExecutor.shutdownNow();
+    }
+
+    @Override
+    public void subscribe(UUID userId, final InternalNotificationListener listener) {
+        listeners.compute(userId, (key, set) -> {
+            if (set == null) {
+                set = new CopyOnWriteArraySet<>();
+            }
+            set.add(listener);
+            return set;
+        });
+    }
+
+    @Override
+    public void unsubscribe(UUID userId, final InternalNotificationListener listener) {
+        listeners.computeIfPresent(userId, (key, set) -> {
+            set.remove(listener);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    @Override
+    public void notificationSent(final UUID userId, final UUID notificationId) {
+        if (notificationClusterChannel != null) {
+            notificationClusterChannel.publishNotificationSent(userId, notificationId);
+        }
+        afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                onRemoteNotificationSent(userId, notificationId);
+            }
+        });
+    }
+
+    @Override
+    public void notificationsRead(final UUID userId, final int count) {
+        if (notificationClusterChannel != null) {
+            notificationClusterChannel.publishNotificationsRead(userId);
+        }
+        afterCommit(new Runnable() {
+            @Override
+            public void run() {
+                AtomicInteger counter = getLoadedCounter(userId);
+                if (counter != null && counter.addAndGet(-count) < 0) {
+                    unreadCounters.remove(userId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Counter is loaded outside of the cache lock, so a slow count does not block other users.
+     */
+    @Override
+    public int getUnreadCount(UUID userId) {
+        AtomicInteger counter = unreadCounters.get(userId);
+        if (counter == null) {
+            counter = new AtomicInteger(countUnread(userId));
+            AtomicInteger existing = unreadCounters.putIfAbsent(userId, counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        return counter.get();
+    }
+
+    @Override
+    public void onRemoteNotificationSent(final UUID userId, final UUID notificationId) {
+        AtomicInteger counter = getLoadedCounter(userId);
+        if (counter != null) {
+            counter.incrementAndGet();
+        }
+
+        Set<InternalNotificationListener> userListeners = listeners.get(userId);
+        if (userListeners != null) {
+            for (final InternalNotificationListener listener : userListeners) {
+                listenerExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            listener.onNotification(notificationId, getUnreadCount(userId));
+                        } catch (Exception e) {
+                            logger.debug("Failed to notify listener", e);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    @Override
+    public void onRemoteNotificationsRead(UUID userId) {
+        unreadCounters.remove(userId);
+    }
+
+    /**
+     * Counter that is not loaded yet will be counted from the database on next request,
+     * so events are applied only to loaded ones.
+     */
+    private AtomicInteger getLoadedCounter(UUID userId) {
+        return unreadCounters.get(userId);
+    }
+
+    private int countUnread(UUID userId) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("userId", userId);
+        params.put("methodId", DataConstants.NotificationMethods.INTERNAL.getValue());
+        params.put("stateId", DataConstants.NotificationStates.SENT.getValue());
+        String cause = "el.referenceObjectId=:userId and el.notificationMethod.id=:methodId and el.notificationState.id=:stateId";
+        Date retentionStartDate = notificationRetentionService.getRetentionStartDate();
+        if (retentionStartDate != null) {
+            params.put("startDate", retentionStartDate);
+            cause += " and el.created >= :startDate";
+        }
+        Integer count = idObjectService.getCount(Notification.class, null, null, cause, params);
+        return count != null ? count : 0;
+    }
+
+    private static void afterCommit(final Runnable runnable) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    runnable.run();
+                }
+            });
+        } else {
+            runnable.run();
+        }
+    }
+}
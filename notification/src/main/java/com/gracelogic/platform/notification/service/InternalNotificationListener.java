@@ -0,0 +1,10 @@
+package com.gracelogic.platform.notification.service;
+
+import java.util.UUID;
+
+/**
+ * Called from the broker's listener pool, never from the thread that delivered the notification.
+ */
+public interface InternalNotificationListener {
+    void onNotification(UUID notificationId, int unreadCount);
+}
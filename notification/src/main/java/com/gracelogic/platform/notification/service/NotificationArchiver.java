@@ -0,0 +1,14 @@
+package com.gracelogic.platform.notification.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Stores notification archives made by retention. The default implementation is registered only when
+ * platform-file-storage is on the classpath, applications may provide their own bean instead.
+ */
+public interface NotificationArchiver {
+    void store(UUID storeModeId, File file, String extension, Map<String, String> meta) throws IOException;
+}
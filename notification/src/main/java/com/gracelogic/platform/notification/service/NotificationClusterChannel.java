@@ -0,0 +1,13 @@
+package com.gracelogic.platform.notification.service;
+
+import java.util.UUID;
+
+/**
+ * Fans out INTERNAL notification events to other nodes. Events are published within the current transaction
+ * and must reach other nodes only after commit.
+ */
+public interface NotificationClusterChannel {
+    void publishNotificationSent(UUID userId, UUID notificationId);
+
+    void publishNotificationsRead(UUID userId);
+}
@@ -0,0 +1,12 @@
+package com.gracelogic.platform.notification.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class NotificationDispatcherJob {
+    @Autowired
+    private NotificationService notificationService;
+
+    public void run() {
+        notificationService.dispatchNotifications();
+    }
+}
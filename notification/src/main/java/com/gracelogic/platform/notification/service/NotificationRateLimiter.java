@@ -0,0 +1,22 @@
+package com.gracelogic.platform.notification.service;
+
+import java.util.UUID;
+
+/**
+ * Limits delivery rate per notification method (provider throughput) and per method and destination
+ * (protection of a single recipient). Default implementation keeps buckets in memory of each node;
+ * a cluster-wide implementation backed by a shared store can replace it as a primary bean.
+ */
+public interface NotificationRateLimiter {
+    /**
+     * @return 0 if notification may be delivered now, otherwise delay in milliseconds after which it should be retried
+     */
+    long tryAcquire(UUID notificationMethodId, String destination);
+
+    /**
+     * Returns when the method limit lets through a notification that waits behind position others, without taking a token.
+     *
+     * @return 0 if the method has a free token now, otherwise delay in milliseconds
+     */
+    long getDelay(UUID notificationMethodId, int position);
+}
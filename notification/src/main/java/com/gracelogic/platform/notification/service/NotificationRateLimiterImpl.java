@@ -0,0 +1,108 @@
+package com.gracelogic.platform.notification.service;
+
+import com.gracelogic.platform.property.service.PropertyService;
+import net.jodah.expiringmap.ExpirationPolicy;
+import net.jodah.expiringmap.ExpiringMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class NotificationRateLimiterImpl implements NotificationRateLimiter {
+    private static final long SECOND = 1000L;
+    private static final long HOUR = 3600000L;
+
+    @Autowired
+    private PropertyService propertyService;
+
+    private final Map<UUID, TokenBucket> methodBuckets = new ConcurrentHashMap<>();
+
+    //Idle recipient buckets are full again after an hour, so they can be forgotten
+    private final Map<List<Object>, TokenBucket> destinationBuckets = ExpiringMap.builder()
+            .maxSize(100000)
+            .expirationPolicy(ExpirationPolicy.ACCESSED)
+            .expiration(1, TimeUnit.HOURS)
+            .build();
+
+    /**
+     * Limits are taken from notification:rate_limit_&lt;method&gt; (messages per second for the method)
+     * and notification:recipient_rate_limit_&lt;method&gt; (messages per hour for one destination).
+     * Missing or zero value disables the corresponding limit.
+     */
+    @Override
+    public long tryAcquire(UUID notificationMethodId, String destination) {
+        String methodName = getMethodName(notificationMethodId);
+        if (methodName == null) {
+            return 0L;
+        }
+
+        TokenBucket destinationBucket = null;
+        Integer recipientLimit = propertyService.getPropertyValueAsInteger("notification:recipient_rate_limit_" + methodName);
+        if (recipientLimit != null && recipientLimit > 0 && destination != null) {
+            destinationBucket = getBucket(destinationBuckets, Arrays.<Object>asList(notificationMethodId, destination), recipientLimit, HOUR);
+            long delay = destinationBucket.tryAcquire();
+            if (delay > 0) {
+                return delay;
+            }
+        }
+
+        Integer methodLimit = propertyService.getPropertyValueAsInteger("notification:rate_limit_" + methodName);
+        if (methodLimit != null && methodLimit > 0) {
+            long delay = getBucket(methodBuckets, notificationMethodId, methodLimit, SECOND).tryAcquire();
+            if (delay > 0) {
+                if (destinationBucket != null) {
+                    destinationBucket.release();
+                }
+                return delay;
+            }
+        }
+
+        return 0L;
+    }
+
+    @Override
+    public long getDelay(UUID notificationMethodId, int position) {
+        String methodName = getMethodName(notificationMethodId);
+        if (methodName == null) {
+            return 0L;
+        }
+
+        Integer methodLimit = propertyService.getPropertyValueAsInteger("notification:rate_limit_" + methodName);
+        if (methodLimit == null || methodLimit <= 0) {
+            return 0L;
+        }
+        return getBucket(methodBuckets, notificationMethodId, methodLimit, SECOND).getDelay(position);
+    }
+
+    private static <K> TokenBucket getBucket(Map<K, TokenBucket> buckets, K key, int permits, long period) {
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null || !bucket.hasSameRate(permits, period)) {
+            TokenBucket created = new TokenBucket(permits, period);
+            if (bucket == null) {
+                bucket = buckets.putIfAbsent(key, created);
+                if (bucket == null) {
+                    bucket = created;
+                }
+            } else {
+                buckets.put(key, created);
+                bucket = created;
+            }
+        }
+        return bucket;
+    }
+
+    private static String getMethodName(UUID notificationMethodId) {
+        for (DataConstants.NotificationMethods method : DataConstants.NotificationMethods.values()) {
+            if (method.getValue().equals(notificationMethodId)) {
+                return method.name().toLowerCase();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,22 @@
+package com.gracelogic.platform.notification.service;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.UUID;
+
+public interface NotificationRetentionService {
+    void createPartitions();
+
+    void applyRetention();
+
+    /**
+     * Returns the oldest creation date kept by retention policy or null when notifications are kept forever.
+     */
+    Date getRetentionStartDate();
+
+    long archiveNotifications(Date from, Date to, UUID storeModeId) throws IOException;
+
+    void dropPartition(Date from);
+
+    int deleteNotifications(Date before, int limit);
+}
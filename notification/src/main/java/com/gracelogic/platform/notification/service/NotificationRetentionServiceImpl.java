@@ -0,0 +1,177 @@
+package com.gracelogic.platform.notification.service;
+
+import com.gracelogic.platform.notification.dao.NotificationDao;
+import com.gracelogic.platform.property.service.PropertyService;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.time.DateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+@Service
+public class NotificationRetentionServiceImpl implements NotificationRetentionService {
+    @Autowired
+    private NotificationDao notificationDao;
+
+    @Autowired
+    private NotificationRetentionService notificationRetentionService;
+
+    @Autowired
+    private PropertyService propertyService;
+
+    @Autowired(required = false)
+    private NotificationArchiver notificationArchiver;
+
+    private static final int DEFAULT_PARTITIONS_AHEAD = 2;
+    private static final int DEFAULT_DELETE_BATCH_SIZE = 1000;
+    private static final String ARCHIVE_EXTENSION = "jsonl.gz";
+
+    private static Logger logger = LoggerFactory.getLogger(NotificationRetentionServiceImpl.class);
+
+    /**
+     * Creates monthly partitions for the current month and notification:partitions_ahead following months.
+     * Does nothing until the table is converted to a partitioned one.
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void createPartitions() {
+        if (!notificationDao.isPartitioned()) {
+            return;
+        }
+
+        Integer partitionsAhead = propertyService.getPropertyValueAsInteger("notification:partitions_ahead");
+        int count = partitionsAhead != null && partitionsAhead >= 0 ? partitionsAhead : DEFAULT_PARTITIONS_AHEAD;
+        Date month = DateUtils.truncate(new Date(), Calendar.MONTH);
+        for (int i = 0; i <= count; i++) {
+            Date nextMonth = DateUtils.addMonths(month, 1);
+            notificationDao.createPartition(month, nextMonth);
+            month = nextMonth;
+        }
+    }
+
+    /**
+     * Removes months that are entirely older than notification:retention_days. Partitions are dropped as a whole,
+     * unpartitioned table is cleaned by batches of notification:retention_delete_batch_size rows, each in its own transaction.
+     * When notification:retention_archive_store_mode is set, every month is stored by NotificationArchiver as gzipped json lines
+     * before removal and a month that failed to archive is kept. Without archiver nothing is removed in this case.
+     */
+    @Override
+    public void applyRetention() {
+        Date retentionStartDate = getRetentionStartDate();
+        if (retentionStartDate == null) {
+            return;
+        }
+
+        String storeMode = propertyService.getPropertyValue("notification:retention_archive_store_mode");
+        UUID storeModeId = !StringUtils.isEmpty(storeMode) ? UUID.fromString(storeMode) : null;
+        if (storeModeId != null && notificationArchiver == null) {
+            logger.error("Notification archive store mode is set, but no NotificationArchiver is available, retention skipped");
+            return;
+        }
+        Integer batchSize = propertyService.getPropertyValueAsInteger("notification:retention_delete_batch_size");
+        int deleteBatchSize = batchSize != null && batchSize > 0 ? batchSize : DEFAULT_DELETE_BATCH_SIZE;
+
+        boolean partitioned = notificationDao.isPartitioned();
+        for (Date month : getExpiredMonths(partitioned, retentionStartDate)) {
+            Date nextMonth = DateUtils.addMonths(month, 1);
+            if (storeModeId != null) {
+                try {
+                    long rows = notificationRetentionService.archiveNotifications(month, nextMonth, storeModeId);
+                    logger.info("Archived {} notifications created from {} to {}", rows, month, nextMonth);
+                } catch (Exception e) {
+                    logger.error(String.format("Failed to archive notifications created from %s to %s", month, nextMonth), e);
+                    return;
+                }
+            }
+
+            if (partitioned) {
+                notificationRetentionService.dropPartition(month);
+                logger.info("Dropped notification partition from {}", month);
+            } else {
+                long total = 0;
+                int deleted;
+                do {
+                    deleted = notificationRetentionService.deleteNotifications(nextMonth, deleteBatchSize);
+                    total += deleted;
+                } while (deleted >= deleteBatchSize);
+                logger.info("Deleted {} notifications created before {}", total, nextMonth);
+            }
+        }
+    }
+
+    private List<Date> getExpiredMonths(boolean partitioned, Date retentionStartDate) {
+        List<Date> months = new ArrayList<>();
+        if (partitioned) {
+            for (Date month : notificationDao.getPartitions()) {
+                if (!DateUtils.addMonths(month, 1).after(retentionStartDate)) {
+                    months.add(month);
+                }
+            }
+        } else {
+            Date oldest = notificationDao.getOldestNotificationDate();
+            if (oldest != null) {
+                Date month = DateUtils.truncate(oldest, Calendar.MONTH);
+                while (!DateUtils.addMonths(month, 1).after(retentionStartDate)) {
+                    months.add(month);
+                    month = DateUtils.addMonths(month, 1);
+                }
+            }
+        }
+        return months;
+    }
+
+    @Override
+    public Date getRetentionStartDate() {
+        Integer retentionDays = propertyService.getPropertyValueAsInteger("notification:retention_days");
+        if (retentionDays == null || retentionDays <= 0) {
+            return null;
+        }
+        return DateUtils.addDays(new Date(), -retentionDays);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public long archiveNotifications(Date from, Date to, UUID storeModeId) throws IOException {
+        File file = File.createTempFile("notifications", "." + ARCHIVE_EXTENSION);
+        try {
+            long rows;
+            try (OutputStream os = new GZIPOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                rows = notificationDao.exportNotifications(from, to, os);
+            }
+
+            if (rows > 0) {
+                SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+                Map<String, String> meta = new HashMap<>();
+                meta.put("type", "notification_archive");
+                meta.put("from", format.format(from));
+                meta.put("to", format.format(to));
+                meta.put("rows", String.valueOf(rows));
+                notificationArchiver.store(storeModeId, file, ARCHIVE_EXTENSION, meta);
+            }
+            return rows;
+        } finally {
+            if (!file.delete()) {
+                logger.warn("Failed to delete temporary file {}", file.getAbsolutePath());
+            }
+        }
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void dropPartition(Date from) {
+        notificationDao.dropPartition(from);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int deleteNotifications(Date before, int limit) {
+        return notificationDao.deleteNotifications(before, limit);
+    }
+}
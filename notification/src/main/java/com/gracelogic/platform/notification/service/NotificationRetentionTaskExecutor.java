@@ -0,0 +1,25 @@
+package com.gracelogic.platform.notification.service;
+
+import com.gracelogic.platform.notification.condition.OnTaskConditional;
+import com.gracelogic.platform.task.service.TaskExecutor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Service;
+
+/**
+ * Task executor that keeps monthly notification partitions created ahead and applies retention policy.
+ * Should be scheduled at least once a month with service name notificationRetentionTaskExecutor.
+ * Registered only when platform-task is on the classpath.
+ */
+@Service("notificationRetentionTaskExecutor")
+@Conditional(OnTaskConditional.class)
+public class NotificationRetentionTaskExecutor implements TaskExecutor {
+    @Autowired
+    private NotificationRetentionService notificationRetentionService;
+
+    @Override
+    public void execute(String parameter) {
+        notificationRetentionService.createPartitions();
+        notificationRetentionService.applyRetention();
+    }
+}
@@ -1,12 +1,27 @@
 package com.gracelogic.platform.notification.service;
 
 import com.gracelogic.platform.notification.dto.Content;
+import com.gracelogic.platform.notification.dto.NotificationSenderRequest;
 import com.gracelogic.platform.notification.dto.NotificationSenderResult;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 public interface NotificationSender {
     NotificationSenderResult send(String source, String destination, Content content);
 
+    /**
+     * Sends several notifications at once. Results are returned in the same order as requests.
+     * Senders that can reuse a connection or a bulk provider api override this one-by-one implementation.
+     */
+    default List<NotificationSenderResult> send(List<NotificationSenderRequest> requests) {
+        List<NotificationSenderResult> results = new ArrayList<>(requests.size());
+        for (NotificationSenderRequest request : requests) {
+            results.add(send(request.getSource(), request.getDestination(), request.getContent()));
+        }
+        return results;
+    }
+
     boolean supports(UUID notificationMethodId);
 }
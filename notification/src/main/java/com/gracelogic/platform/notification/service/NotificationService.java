@@ -1,21 +1,41 @@
 package com.gracelogic.platform.notification.service;
 
 import com.gracelogic.platform.db.dto.EntityListResponse;
+import com.gracelogic.platform.db.exception.ObjectNotFoundException;
+import com.gracelogic.platform.notification.dto.BulkNotificationRecipient;
 import com.gracelogic.platform.notification.dto.Content;
 import com.gracelogic.platform.notification.dto.NotificationDTO;
+import com.gracelogic.platform.notification.dto.NotificationSenderResult;
 import com.gracelogic.platform.notification.model.Notification;
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
 import java.util.concurrent.Future;
 
 public interface NotificationService {
     Future<Notification> send(UUID notificationMethodId, String source, String destination, Content content, Integer priority, UUID referenceObjectId);
 
+    int sendBulk(UUID templateTypeId, Locale locale, UUID notificationMethodId, String source, Integer priority, List<BulkNotificationRecipient> recipients);
+
     Notification saveNotification(Notification notification);
 
-    EntityListResponse<NotificationDTO> getNotificationsPaged(String name, String destination, UUID notificationMethodId, UUID notificationStateId, UUID referenceObjectId, boolean enrich,
+    List<Notification> claimNotifications(int limit, Collection<UUID> excludedMethodIds);
+
+    void completeNotifications(List<Notification> notifications, List<NotificationSenderResult> results);
+
+    int getUnreadInternalNotificationsCount(UUID userId);
+
+    void markInternalNotificationRead(UUID userId, UUID notificationId) throws ObjectNotFoundException;
+
+    void deferNotifications(List<Notification> notifications);
+
+    void dispatchNotifications();
+
+    EntityListResponse<NotificationDTO> getNotificationsPaged(String name, String destination, UUID notificationMethodId, UUID notificationStateId, UUID referenceObjectId, Date startDate, Date endDate, boolean enrich,
                                                               boolean calculate, Integer count, Integer page, Integer start, String sortField, String sortDir);
 }
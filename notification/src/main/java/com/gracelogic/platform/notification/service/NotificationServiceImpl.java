@@ -2,27 +2,34 @@ package com.gracelogic.platform.notification.service;
 
 import com.gracelogic.platform.db.JsonUtils;
 import com.gracelogic.platform.db.dto.EntityListResponse;
+import com.gracelogic.platform.db.exception.ObjectNotFoundException;
 import com.gracelogic.platform.db.service.IdObjectService;
 import com.gracelogic.platform.dictionary.service.DictionaryService;
 import com.gracelogic.platform.notification.dto.Content;
+import com.gracelogic.platform.notification.dao.NotificationDao;
+import com.gracelogic.platform.notification.dto.BulkNotificationRecipient;
 import com.gracelogic.platform.notification.dto.NotificationDTO;
+import com.gracelogic.platform.notification.dto.NotificationSenderRequest;
 import com.gracelogic.platform.notification.dto.NotificationSenderResult;
 import com.gracelogic.platform.notification.model.Notification;
 import com.gracelogic.platform.notification.model.NotificationMethod;
 import com.gracelogic.platform.notification.model.NotificationState;
+import com.gracelogic.platform.property.service.PropertyService;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.UUID;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 @Service
 public class NotificationServiceImpl implements NotificationService {
@@ -55,63 +62,514 @@ public class NotificationServiceImpl implements NotificationService {
     @Qualifier("telegramNotificationSender")
     private NotificationSender telegramNotificationSender;
 
-    private ExecutorService executorService = Executors.newSingleThreadExecutor();
+    @Autowired
+    private NotificationDao notificationDao;
+
+    @Autowired
+    private PropertyService propertyService;
+
+    @Autowired
+    private NotificationRateLimiter notificationRateLimiter;
+
+    @Autowired
+    private InternalNotificationBroker internalNotificationBroker;
+
+    @Autowired
+    private TemplateService templateService;
+
+    @Autowired
+    private NotificationRetentionService notificationRetentionService;
+
+    private static final int DEFAULT_DISPATCH_BATCH_SIZE = 500;
+    private static final long DEFAULT_DISPATCH_LEASE = 300000L;
+    private static final int DEFAULT_MAX_ATTEMPTS = 5;
+    private static final long DEFAULT_RETRY_BASE_DELAY = 30000L;
+    private static final long DEFAULT_RETRY_MAX_DELAY = 3600000L;
+
+    private static Logger logger = LoggerFactory.getLogger(NotificationServiceImpl.class);
+
+    private ScheduledExecutorService executorService = Executors.newSingleThreadScheduledExecutor();
+
+    private final AtomicBoolean dispatchRequested = new AtomicBoolean(false);
 
+    //Time of the pending delayed dispatch, 0 if there is none
+    private final AtomicLong scheduledDispatch = new AtomicLong(0L);
+
+    //Methods out of rate limit tokens on this node and the time they get the next one, their rows are not claimed until then
+    private final Map<UUID, Long> pausedMethods = new ConcurrentHashMap<>();
+
+    //Latest next attempt given to a row postponed by rate limits on this node
+    private final AtomicLong deferredUntil = new AtomicLong(0L);
+
+    /**
+     * Stores notification as QUEUED in the caller's transaction, it is delivered by dispatcher after commit.
+     * Returned future holds the queued notification. Invalid request completes the future exceptionally,
+     * failure to queue never marks the caller's transaction for rollback.
+     */
     @Override
-    public Future<Notification> send(final UUID notificationMethodId, final String source, final String destination, final Content content, final Integer priority, final UUID referenceObjectId) {
-        return executorService.submit(new Callable<Notification>() {
-            @Override
-            public Notification call() throws Exception {
-                //Create and save notification in separate transaction
-                Notification notification = new Notification();
-                notification.setNotificationMethod(ds.get(NotificationMethod.class, notificationMethodId));
-                notification.setNotificationState(ds.get(NotificationState.class, DataConstants.NotificationStates.QUEUED.getValue()));
-                notification.setTitle(content.getTitle());
-                notification.setBody(content.getBody());
-                notification.setFields(JsonUtils.mapToJson(content.getFields()));
-                notification.setSource(source);
-                notification.setDestination(destination);
-                notification.setPriority(priority);
-                notification.setReferenceObjectId(referenceObjectId);
-                notification = notificationService.saveNotification(notification);
-
-                //Send notification
-                NotificationSenderResult result;
+    @Transactional(noRollbackFor = Exception.class)
+    public Future<Notification> send(UUID notificationMethodId, String source, String destination, Content content, Integer priority, UUID referenceObjectId) {
+        NotificationMethod notificationMethod = ds.get(NotificationMethod.class, notificationMethodId);
+        if (notificationMethod == null || content == null || StringUtils.isEmpty(destination)) {
+            CompletableFuture<Notification> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalArgumentException(notificationMethod == null ?
+                    "Unknown notification method: " + notificationMethodId : "Notification content and destination are required"));
+            return future;
+        }
+
+        Notification notification = new Notification();
+        notification.setNotificationMethod(notificationMethod);
+        notification.setNotificationState(ds.get(NotificationState.class, DataConstants.NotificationStates.QUEUED.getValue()));
+        notification.setTitle(content.getTitle());
+        notification.setBody(content.getBody());
+        notification.setFields(JsonUtils.mapToJson(content.getFields()));
+        notification.setSource(source);
+        notification.setDestination(destination);
+        notification.setPriority(priority);
+        notification.setReferenceObjectId(referenceObjectId);
+        notification.setAttempts(0);
+        notification.setNextAttemptDt(new Date());
+        notification = idObjectService.save(notification);
+
+        requestDispatchAfterCommit();
+        return CompletableFuture.completedFuture(notification);
+    }
+
+    /**
+     * Queues one notification per recipient in the caller's transaction. Template is compiled once and rendered
+     * in parallel, rows are inserted with JDBC batches. Dispatcher then delivers them through batched senders.
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int sendBulk(UUID templateTypeId, Locale locale, UUID notificationMethodId, String source, Integer priority, List<BulkNotificationRecipient> recipients) {
+        if (recipients.isEmpty()) {
+            return 0;
+        }
+
+        final CompiledTemplate template = templateService.compileTemplate(templateTypeId, locale);
+        List<Content> contents = recipients.parallelStream()
+                .map(recipient -> template.render(recipient.getParams() != null ? recipient.getParams() : Collections.<String, String>emptyMap()))
+                .collect(Collectors.toList());
+
+        NotificationMethod notificationMethod = ds.get(NotificationMethod.class, notificationMethodId);
+        NotificationState notificationState = ds.get(NotificationState.class, DataConstants.NotificationStates.QUEUED.getValue());
+        Date now = new Date();
+        List<Notification> notifications = new ArrayList<>(recipients.size());
+        for (int i = 0; i < recipients.size(); i++) {
+            BulkNotificationRecipient recipient = recipients.get(i);
+            Content content = contents.get(i);
+            Notification notification = new Notification();
+            notification.setId(UUID.randomUUID());
+            notification.setCreated(now);
+            notification.setChanged(now);
+            notification.setNotificationMethod(notificationMethod);
+            notification.setNotificationState(notificationState);
+            notification.setTitle(content.getTitle());
+            notification.setBody(content.getBody());
+            notification.setFields(JsonUtils.mapToJson(content.getFields()));
+            notification.setSource(source);
+            notification.setDestination(recipient.getDestination());
+            notification.setPriority(priority != null ? priority : 0);
+            notification.setReferenceObjectId(recipient.getReferenceObjectId());
+            notification.setAttempts(0);
+            notification.setNextAttemptDt(now);
+            notifications.add(notification);
+        }
+        notificationDao.insertNotifications(notifications);
+
+        requestDispatchAfterCommit();
+        return notifications.size();
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public Notification saveNotification(Notification notification) {
+        return idObjectService.save(notification);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public List<Notification> claimNotifications(int limit, Collection<UUID> excludedMethodIds) {
+        Date now = new Date();
+        long lease = getLongProperty("notification:dispatch_lease", DEFAULT_DISPATCH_LEASE);
+        List<UUID> ids = notificationDao.claimNotifications(now, new Date(now.getTime() + lease), limit, excludedMethodIds);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("ids", ids);
+        return idObjectService.getList(Notification.class, "left join fetch el.notificationMethod", "el.id in (:ids)", params, null, null, null, null);
+    }
+
+    /**
+     * Marks delivered notifications as SENT. Failed ones are rescheduled with exponential backoff and jitter
+     * until the attempt limit of their method is reached and then moved to DEAD.
+     * Ones not sent because of provider rate limit are queued again after the returned delay without counting the attempt.
+     */
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void completeNotifications(List<Notification> notifications, List<NotificationSenderResult> results) {
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < notifications.size(); i++) {
+            Notification notification = notifications.get(i);
+            NotificationSenderResult result = results.get(i);
+
+            UUID stateId;
+            if (result.isSuccess()) {
+                stateId = DataConstants.NotificationStates.SENT.getValue();
+                notification.setNextAttemptDt(null);
+                if (notification.getReferenceObjectId() != null &&
+                        DataConstants.NotificationMethods.INTERNAL.getValue().equals(notification.getNotificationMethod().getId())) {
+                    internalNotificationBroker.notificationSent(notification.getReferenceObjectId(), notification.getId());
+                }
+            } else if (result.getRetryDelay() != null) {
+                stateId = DataConstants.NotificationStates.QUEUED.getValue();
+                notification.setNextAttemptDt(new Date(now + result.getRetryDelay()));
+                notification.setAttempts(Math.max(0, notification.getAttempts() - 1));
+            } else if (getSender(notification.getNotificationMethod().getId()) == null) {
+                stateId = DataConstants.NotificationStates.ERROR.getValue();
+                notification.setNextAttemptDt(null);
+            } else {
+                int attempts = notification.getAttempts() != null ? notification.getAttempts() : 0;
+                if (attempts >= getMaxAttempts(notification.getNotificationMethod().getId())) {
+                    stateId = DataConstants.NotificationStates.DEAD.getValue();
+                    notification.setNextAttemptDt(null);
+                    logger.warn("Notification {} moved to dead letter after {} attempts: {}", notification.getId(), attempts, result.getErrorDescription());
+                } else {
+                    stateId = DataConstants.NotificationStates.QUEUED.getValue();
+                    notification.setNextAttemptDt(new Date(now + getRetryDelay(attempts)));
+                }
+            }
+            notification.setNotificationState(ds.get(NotificationState.class, stateId));
+            notification.setErrorDescription(result.getErrorDescription());
+            idObjectService.save(notification);
+        }
+    }
+
+    /**
+     * Claims and delivers due notifications in batches until the outbox has no due rows left.
+     * Safe to run concurrently on several nodes, claimed rows are skipped by other dispatchers.
+     * Methods out of rate limit tokens are not claimed, next dispatch is scheduled when postponed rows become due.
+     */
+    @Override
+    public void dispatchNotifications() {
+        int batchSize = getIntProperty("notification:dispatch_batch_size", DEFAULT_DISPATCH_BATCH_SIZE);
+        List<Notification> notifications;
+        do {
+            notifications = notificationService.claimNotifications(batchSize, getPausedMethods());
+            if (notifications.isEmpty()) {
+                break;
+            }
+
+            Map<UUID, List<Notification>> byMethod = new LinkedHashMap<>();
+            for (Notification notification : notifications) {
+                UUID methodId = notification.getNotificationMethod().getId();
+                List<Notification> group = byMethod.get(methodId);
+                if (group == null) {
+                    group = new ArrayList<>();
+                    byMethod.put(methodId, group);
+                }
+                group.add(notification);
+            }
+
+            for (Map.Entry<UUID, List<Notification>> entry : byMethod.entrySet()) {
+                List<Notification> group = throttle(entry.getKey(), entry.getValue());
+                if (group.isEmpty()) {
+                    continue;
+                }
+                List<NotificationSenderResult> results = deliver(entry.getKey(), group);
+                pauseOnRetryDelay(entry.getKey(), results);
                 try {
-                    if (notificationMethodId.equals(DataConstants.NotificationMethods.EMAIL.getValue())) {
-                        result = emailNotificationSender.send(source, destination, content);
-                    } else if (notificationMethodId.equals(DataConstants.NotificationMethods.SMS.getValue())) {
-                        result = smsNotificationSender.send(source, destination, content);
-                    } else if (notificationMethodId.equals(DataConstants.NotificationMethods.INTERNAL.getValue())) {
-                        result = internalNotificationSender.send(source, destination, content);
-                    } else if (notificationMethodId.equals(DataConstants.NotificationMethods.PUSH.getValue())) {
-                        result = pushNotificationSender.send(source, destination, content);
-                    } else if (notificationMethodId.equals(DataConstants.NotificationMethods.TELEGRAM.getValue())) {
-                        result = telegramNotificationSender.send(source, destination, content);
-                    } else {
-                        result = new NotificationSenderResult(false, "Method is not implemented");
-                    }
+                    notificationService.completeNotifications(group, results);
                 } catch (Exception e) {
-                    result = new NotificationSenderResult(false, e.getMessage());
+                    //Lease expires and notifications will be claimed again
+                    logger.error("Failed to save notification delivery results", e);
                 }
-
-                notification.setNotificationState(result.isSuccess() ?
-                        ds.get(NotificationState.class, DataConstants.NotificationStates.SENT.getValue()) :
-                        ds.get(NotificationState.class, DataConstants.NotificationStates.ERROR.getValue()));
-                notification.setErrorDescription(result.getErrorDescription());
-                return notificationService.saveNotification(notification);
             }
-        });
+        } while (notifications.size() >= batchSize);
+
+        scheduleDeferredDispatch();
+    }
+
+    @Override
+    public int getUnreadInternalNotificationsCount(UUID userId) {
+        return internalNotificationBroker.getUnreadCount(userId);
     }
 
+    /**
+     * INTERNAL notification stays SENT until the user reads it, then it becomes DELIVERED.
+     */
     @Override
     @Transactional(rollbackFor = Exception.class)
-    public Notification saveNotification(Notification notification) {
-        return idObjectService.save(notification);
+    public void markInternalNotificationRead(UUID userId, UUID notificationId) throws ObjectNotFoundException {
+        Notification notification = idObjectService.getObjectById(Notification.class, notificationId);
+        if (notification == null || !userId.equals(notification.getReferenceObjectId()) ||
+                !DataConstants.NotificationMethods.INTERNAL.getValue().equals(notification.getNotificationMethod().getId())) {
+            throw new ObjectNotFoundException();
+        }
+
+        if (DataConstants.NotificationStates.SENT.getValue().equals(notification.getNotificationState().getId())) {
+            notification.setNotificationState(ds.get(NotificationState.class, DataConstants.NotificationStates.DELIVERED.getValue()));
+            idObjectService.save(notification);
+            internalNotificationBroker.notificationsRead(userId, 1);
+        }
     }
 
     @Override
-    public EntityListResponse<NotificationDTO> getNotificationsPaged(String name, String destination, UUID notificationMethodId, UUID notificationStateId, UUID referenceObjectId, boolean enrich,
+    @Transactional(rollbackFor = Exception.class)
+    public void deferNotifications(List<Notification> notifications) {
+        for (Notification notification : notifications) {
+            idObjectService.save(notification);
+        }
+    }
+
+    /**
+     * Returns notifications of one method allowed by rate limiter. Over-limit ones stay QUEUED and the claim
+     * is not counted as a delivery attempt. Once the method is out of tokens the rest are not offered to the limiter:
+     * they are spread over the following token times in queue order and the method is paused until the next token.
+     */
+    private List<Notification> throttle(UUID notificationMethodId, List<Notification> notifications) {
+        List<Notification> allowed = new ArrayList<>(notifications.size());
+        List<Notification> deferred = new LinkedList<>();
+        long now = System.currentTimeMillis();
+        int waiting = -1;
+        for (Notification notification : notifications) {
+            long delay = 0L;
+            if (waiting < 0) {
+                delay = notificationRateLimiter.tryAcquire(notificationMethodId, notification.getDestination());
+                if (delay <= 0) {
+                    allowed.add(notification);
+                    continue;
+                }
+                if (notificationRateLimiter.getDelay(notificationMethodId, 0) > 0) {
+                    waiting = 0;
+                }
+            }
+            if (waiting >= 0) {
+                delay = Math.max(delay, notificationRateLimiter.getDelay(notificationMethodId, waiting++));
+            }
+
+            notification.setNextAttemptDt(new Date(now + delay));
+            notification.setAttempts(Math.max(0, notification.getAttempts() - 1));
+            deferred.add(notification);
+            deferredUntil.accumulateAndGet(now + delay, Math::max);
+        }
+
+        if (waiting >= 0) {
+            pause(notificationMethodId, now + Math.max(1L, notificationRateLimiter.getDelay(notificationMethodId, 0)));
+        }
+        if (!deferred.isEmpty()) {
+            logger.debug("Notifications deferred by rate limit: {}", deferred.size());
+            try {
+                notificationService.deferNotifications(deferred);
+            } catch (Exception e) {
+                //Lease expires and notifications will be claimed again
+                logger.error("Failed to defer notifications", e);
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * Provider rate limit: sender already spread the returned delays, method is paused until the first of them.
+     */
+    private void pauseOnRetryDelay(UUID notificationMethodId, List<NotificationSenderResult> results) {
+        long now = System.currentTimeMillis();
+        long resume = Long.MAX_VALUE;
+        for (NotificationSenderResult result : results) {
+            if (result.getRetryDelay() != null) {
+                resume = Math.min(resume, now + result.getRetryDelay());
+                deferredUntil.accumulateAndGet(now + result.getRetryDelay(), Math::max);
+            }
+        }
+        if (resume != Long.MAX_VALUE) {
+            pause(notificationMethodId, resume);
+        }
+    }
+
+    private void pause(UUID notificationMethodId, long until) {
+        pausedMethods.merge(notificationMethodId, until, Math::max);
+    }
+
+    private Set<UUID> getPausedMethods() {
+        long now = System.currentTimeMillis();
+        Set<UUID> result = new HashSet<>();
+        for (Map.Entry<UUID, Long> entry : pausedMethods.entrySet()) {
+            if (entry.getValue() > now) {
+                result.add(entry.getKey());
+            } else {
+                pausedMethods.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    private List<NotificationSenderResult> deliver(UUID notificationMethodId, List<Notification> notifications) {
+        NotificationSender sender = getSender(notificationMethodId);
+        List<NotificationSenderResult> results = new ArrayList<>(notifications.size());
+        if (sender == null) {
+            for (int i = 0; i < notifications.size(); i++) {
+                results.add(new NotificationSenderResult(false, "Method is not implemented"));
+            }
+            return results;
+        }
+
+        List<NotificationSenderRequest> requests = new ArrayList<>(notifications.size());
+        for (Notification notification : notifications) {
+            Content content = new Content();
+            content.setTitle(notification.getTitle());
+            content.setBody(notification.getBody());
+            if (notification.getFields() != null) {
+                content.setFields(JsonUtils.jsonToMap(notification.getFields()));
+            }
+            requests.add(new NotificationSenderRequest(notification.getSource(), notification.getDestination(), content));
+        }
+
+        try {
+            results.addAll(sender.send(requests));
+        } catch (Exception e) {
+            logger.error("Failed to send notifications", e);
+            results.clear();
+            for (int i = 0; i < notifications.size(); i++) {
+                results.add(new NotificationSenderResult(false, e.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    private NotificationSender getSender(UUID notificationMethodId) {
+        if (notificationMethodId.equals(DataConstants.NotificationMethods.EMAIL.getValue())) {
+            return emailNotificationSender;
+        } else if (notificationMethodId.equals(DataConstants.NotificationMethods.SMS.getValue())) {
+            return smsNotificationSender;
+        } else if (notificationMethodId.equals(DataConstants.NotificationMethods.INTERNAL.getValue())) {
+            return internalNotificationSender;
+        } else if (notificationMethodId.equals(DataConstants.NotificationMethods.PUSH.getValue())) {
+            return pushNotificationSender;
+        } else if (notificationMethodId.equals(DataConstants.NotificationMethods.TELEGRAM.getValue())) {
+            return telegramNotificationSender;
+        }
+        return null;
+    }
+
+    /**
+     * Wakes the dispatcher once the queued rows are visible, instead of waiting for the next scheduled run.
+     * Requests made while a dispatch is already pending are coalesced.
+     */
+    private void requestDispatchAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    requestDispatch();
+                }
+            });
+        } else {
+            requestDispatch();
+        }
+    }
+
+    /**
+     * Wakes the dispatcher when rows postponed by rate limits become due instead of leaving them to the scheduled run.
+     * Due rows of paused methods wait until the method gets its next token.
+     */
+    private void scheduleDeferredDispatch() {
+        long now = System.currentTimeMillis();
+        if (deferredUntil.get() <= now) {
+            return;
+        }
+
+        Date nextAttempt;
+        try {
+            nextAttempt = notificationDao.getNextAttemptDate();
+        } catch (Exception e) {
+            logger.error("Failed to get next notification attempt date", e);
+            return;
+        }
+        if (nextAttempt == null) {
+            return;
+        }
+
+        long at = nextAttempt.getTime();
+        if (at <= now) {
+            long resume = Long.MAX_VALUE;
+            for (Long until : pausedMethods.values()) {
+                resume = Math.min(resume, until);
+            }
+            at = resume != Long.MAX_VALUE ? Math.max(at, resume) : at;
+        }
+        scheduleDispatch(at);
+    }
+
+    private void scheduleDispatch(final long at) {
+        long now = System.currentTimeMillis();
+        long scheduled;
+        do {
+            scheduled = scheduledDispatch.get();
+            if (scheduled > now && scheduled <= at) {
+                return;
+            }
+        } while (!scheduledDispatch.compareAndSet(scheduled, at));
+
+        executorService.schedule(new Runnable() {
+            @Override
+            public void run() {
+                scheduledDispatch.compareAndSet(at, 0L);
+                requestDispatch();
+            }
+        }, Math.max(0L, at - now), TimeUnit.MILLISECONDS);
+    }
+
+    private void requestDispatch() {
+        if (!dispatchRequested.compareAndSet(false, true)) {
+            return;
+        }
+        executorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                dispatchRequested.set(false);
+                try {
+                    notificationService.dispatchNotifications();
+                } catch (Exception e) {
+                    logger.error("Failed to dispatch notifications", e);
+                }
+            }
+        });
+    }
+
+    private int getMaxAttempts(UUID notificationMethodId) {
+        for (DataConstants.NotificationMethods method : DataConstants.NotificationMethods.values()) {
+            if (method.getValue().equals(notificationMethodId)) {
+                Integer value = propertyService.getPropertyValueAsInteger("notification:max_attempts_" + method.name().toLowerCase());
+                if (value != null && value > 0) {
+                    return value;
+                }
+            }
+        }
+        return getIntProperty("notification:max_attempts", DEFAULT_MAX_ATTEMPTS);
+    }
+
+    private long getRetryDelay(int attempts) {
+        long baseDelay = getLongProperty("notification:retry_base_delay", DEFAULT_RETRY_BASE_DELAY);
+        long maxDelay = getLongProperty("notification:retry_max_delay", DEFAULT_RETRY_MAX_DELAY);
+        long delay = Math.min(maxDelay, baseDelay << Math.min(Math.max(attempts - 1, 0), 20));
+        //Equal jitter: keeps half of the backoff and randomizes the rest to spread retries after an outage
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private int getIntProperty(String name, int defaultValue) {
+        Integer value = propertyService.getPropertyValueAsInteger(name);
+        return value != null && value > 0 ? value : defaultValue;
+    }
+
+    private long getLongProperty(String name, long defaultValue) {
+        Long value = propertyService.getPropertyValueAsLong(name);
+        return value != null && value > 0 ? value : defaultValue;
+    }
+
+    @Override
+    public EntityListResponse<NotificationDTO> getNotificationsPaged(String name, String destination, UUID notificationMethodId, UUID notificationStateId, UUID referenceObjectId, Date startDate, Date endDate, boolean enrich,
                                                                      boolean calculate, Integer count, Integer page, Integer start, String sortField, String sortDir) {
         String fetches = enrich ? "left join fetch el.notificationState left join fetch el.notificationMethod" : "";
         String countFetches = "";
@@ -144,6 +602,20 @@ public class NotificationServiceImpl implements NotificationService {
             cause += " and el.referenceObjectId=:referenceObjectId";
         }
 
+        //Lower bound lets partitioned table skip months awaiting retention
+        if (startDate == null) {
+            startDate = notificationRetentionService.getRetentionStartDate();
+        }
+        if (startDate != null) {
+            params.put("startDate", startDate);
+            cause += " and el.created >= :startDate";
+        }
+
+        if (endDate != null) {
+            params.put("endDate", endDate);
+            cause += " and el.created <= :endDate";
+        }
+
         Integer totalCount = calculate ? idObjectService.getCount(Notification.class, null, countFetches, cause, params) : null;
 
         EntityListResponse<NotificationDTO> entityListResponse = new EntityListResponse<>(totalCount, count, page, start);
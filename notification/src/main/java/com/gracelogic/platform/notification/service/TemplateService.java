@@ -22,4 +22,6 @@ public interface TemplateService {
                                                                  Integer count, Integer page, Integer start, String sortField, String sortDir);
 
     Content buildFromTemplate(UUID templateTypeId, Locale locale, Map<String, String> params);
+
+    CompiledTemplate compileTemplate(UUID templateTypeId, Locale locale);
 }
@@ -17,7 +17,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.StringReader;
-import java.io.StringWriter;
 import java.util.*;
 
 @Service
@@ -100,40 +99,31 @@ public class TemplateServiceImpl implements TemplateService {
 
     @Override
     public Content buildFromTemplate(UUID templateTypeId, Locale locale, Map<String, String> params) {
+        return compileTemplate(templateTypeId, locale).render(params);
+    }
+
+    @Override
+    public CompiledTemplate compileTemplate(UUID templateTypeId, Locale locale) {
         Map<String, Object> dbParams = new HashMap<>();
         dbParams.put("templateTypeId", templateTypeId);
         dbParams.put("locale", locale.toString());
         dbParams.put("defaultLocale", "*");
 
         List<Template> templates = idObjectService.getList(Template.class, null, "el.templateType.id=:templateTypeId and (el.locale=:locale or el.locale=:defaultLocale)", dbParams, "el.locale", "DESC", null, 1);
-        String titleTemplate;
-        String bodyTemplate;
-        if (!templates.isEmpty()) {
-            Template template = templates.iterator().next();
-            titleTemplate = template.getTitle();
-            bodyTemplate = template.getBody();
+        if (templates.isEmpty()) {
+            return new CompiledTemplate(null, null, false);
         }
-        else {
-            //Template not found - build raw params template
-            titleTemplate = "Title";
-            StringBuilder sb = new StringBuilder();
-            for (String param : params.keySet()) {
-                sb.append(param).append("=").append(params.get(param)).append("\n");
-            }
-            bodyTemplate = sb.toString();
-        }
-
-        Content content = new Content();
 
+        Template template = templates.iterator().next();
         MustacheFactory mf = new DefaultMustacheFactory();
-        if (!StringUtils.isEmpty(titleTemplate)) {
-            Mustache titleMustache = mf.compile(new StringReader(titleTemplate), templateTypeId.toString() + locale.toString() + "title");
-            content.setTitle(titleMustache.execute(new StringWriter(), params).toString());
+        Mustache titleMustache = null;
+        Mustache bodyMustache = null;
+        if (!StringUtils.isEmpty(template.getTitle())) {
+            titleMustache = mf.compile(new StringReader(template.getTitle()), templateTypeId.toString() + locale.toString() + "title");
         }
-        if (!StringUtils.isEmpty(bodyTemplate)) {
-            Mustache bodyMustache = mf.compile(new StringReader(bodyTemplate), templateTypeId.toString() + locale.toString() + "body");
-            content.setBody(bodyMustache.execute(new StringWriter(), params).toString());
+        if (!StringUtils.isEmpty(template.getBody())) {
+            bodyMustache = mf.compile(new StringReader(template.getBody()), templateTypeId.toString() + locale.toString() + "body");
         }
-        return content;
+        return new CompiledTemplate(titleMustache, bodyMustache, true);
     }
 }
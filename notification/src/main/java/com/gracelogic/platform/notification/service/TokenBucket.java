@@ -0,0 +1,65 @@
+package com.gracelogic.platform.notification.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket implemented as GCRA: the whole state is a single "theoretical arrival time"
+ * updated with CAS, so acquiring a token is one read and one compare-and-set in the common case.
+ */
+public class TokenBucket {
+    private final long interval;
+    private final long tolerance;
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param permits number of tokens refilled per period, also the bucket capacity
+     * @param period  refill period in milliseconds
+     */
+    public TokenBucket(int permits, long period) {
+        this.interval = Math.max(1L, period * 1000000L / permits);
+        this.tolerance = interval * (permits - 1);
+        this.theoreticalArrival = new AtomicLong(System.nanoTime() - tolerance - interval);
+    }
+
+    /**
+     * Takes a token if available.
+     *
+     * @return 0 if token was acquired, otherwise milliseconds until the next token becomes available
+     */
+    public long tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long tat = theoreticalArrival.get();
+            long start = tat - now > 0 ? tat : now;
+            if (start - now > tolerance) {
+                return Math.max(1L, (start - now - tolerance) / 1000000L);
+            }
+            if (theoreticalArrival.compareAndSet(tat, start + interval)) {
+                return 0L;
+            }
+        }
+    }
+
+    /**
+     * Returns when a token becomes available for a caller that waits behind position others, without taking it.
+     *
+     * @return 0 if token is available now, otherwise milliseconds until it becomes available
+     */
+    public long getDelay(int position) {
+        long now = System.nanoTime();
+        long tat = theoreticalArrival.get();
+        long wait = (tat - now > 0 ? tat : now) + position * interval - now - tolerance;
+        return wait > 0 ? Math.max(1L, wait / 1000000L) : 0L;
+    }
+
+    /**
+     * Returns a token taken by {@link #tryAcquire()} that was not used.
+     */
+    public void release() {
+        theoreticalArrival.addAndGet(-interval);
+    }
+
+    public boolean hasSameRate(int permits, long period) {
+        return interval == Math.max(1L, period * 1000000L / permits) && tolerance == interval * (permits - 1);
+    }
+}
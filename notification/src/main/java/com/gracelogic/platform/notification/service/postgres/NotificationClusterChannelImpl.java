@@ -0,0 +1,82 @@
+package com.gracelogic.platform.notification.service.postgres;
+
+import com.gracelogic.platform.db.condition.OnPostgreSQLConditional;
+import com.gracelogic.platform.db.service.DatabaseChannel;
+import com.gracelogic.platform.db.service.DatabaseChannelListener;
+import com.gracelogic.platform.notification.service.InternalNotificationBroker;
+import com.gracelogic.platform.notification.service.NotificationClusterChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.UUID;
+
+/**
+ * Cluster fan-out over PostgreSQL LISTEN/NOTIFY. NOTIFY is transactional, so other nodes receive the event
+ * only after commit.
+ */
+@Service
+@Conditional(OnPostgreSQLConditional.class)
+public class NotificationClusterChannelImpl implements NotificationClusterChannel {
+    private static final String CHANNEL = "cmn_notification";
+    private static final String SENT = "s";
+    private static final String READ = "r";
+
+    private static Logger logger = LoggerFactory.getLogger(NotificationClusterChannelImpl.class);
+
+    @Autowired
+    private DatabaseChannel databaseChannel;
+
+    @Autowired
+    private InternalNotificationBroker internalNotificationBroker;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @PostConstruct
+    private void init() {
+        databaseChannel.listen(CHANNEL, new DatabaseChannelListener() {
+            @Override
+            public void onConnected() {
+            }
+
+            @Override
+            public void onMessage(String payload) {
+                handle(payload);
+            }
+        });
+    }
+
+    @Override
+    public void publishNotificationSent(UUID userId, UUID notificationId) {
+        publish(SENT + "|" + userId + "|" + notificationId);
+    }
+
+    @Override
+    public void publishNotificationsRead(UUID userId) {
+        publish(READ + "|" + userId);
+    }
+
+    private void publish(String event) {
+        databaseChannel.publish(CHANNEL, nodeId + "|" + event);
+    }
+
+    private void handle(String payload) {
+        try {
+            String[] parts = payload.split("\\|");
+            if (parts.length < 3 || nodeId.equals(parts[0])) {
+                return;
+            }
+            UUID userId = UUID.fromString(parts[2]);
+            if (SENT.equals(parts[1]) && parts.length > 3) {
+                internalNotificationBroker.onRemoteNotificationSent(userId, UUID.fromString(parts[3]));
+            } else if (READ.equals(parts[1])) {
+                internalNotificationBroker.onRemoteNotificationsRead(userId);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to handle notification event: {}", payload, e);
+        }
+    }
+}
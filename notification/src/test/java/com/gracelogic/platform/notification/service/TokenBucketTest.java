@@ -0,0 +1,62 @@
+package com.gracelogic.platform.notification.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TokenBucketTest {
+    private static final long MINUTE = 60000L;
+
+    @Test
+    public void fullBucketAllowsBurstOfPermits() {
+        TokenBucket bucket = new TokenBucket(3, MINUTE);
+        assertEquals(0L, bucket.tryAcquire());
+        assertEquals(0L, bucket.tryAcquire());
+        assertEquals(0L, bucket.tryAcquire());
+
+        long delay = bucket.tryAcquire();
+        assertTrue(delay > 0);
+        assertTrue(delay <= MINUTE / 3);
+    }
+
+    @Test
+    public void releasedTokenCanBeTakenAgain() {
+        TokenBucket bucket = new TokenBucket(1, MINUTE);
+        assertEquals(0L, bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire() > 0);
+
+        bucket.release();
+        assertEquals(0L, bucket.tryAcquire());
+    }
+
+    @Test
+    public void delayDoesNotTakeToken() {
+        TokenBucket bucket = new TokenBucket(2, MINUTE);
+        assertEquals(0L, bucket.getDelay(0));
+        assertEquals(0L, bucket.getDelay(0));
+        assertEquals(0L, bucket.tryAcquire());
+        assertEquals(0L, bucket.tryAcquire());
+        assertTrue(bucket.getDelay(0) > 0);
+    }
+
+    @Test
+    public void delayGrowsByIntervalWithPosition() {
+        TokenBucket bucket = new TokenBucket(4, MINUTE);
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0L, bucket.tryAcquire());
+        }
+
+        long first = bucket.getDelay(0);
+        long third = bucket.getDelay(2);
+        assertTrue(first > 0);
+        assertEquals(2 * MINUTE / 4, third - first, 50L);
+    }
+
+    @Test
+    public void bucketKnowsItsRate() {
+        TokenBucket bucket = new TokenBucket(30, 1000L);
+        assertTrue(bucket.hasSameRate(30, 1000L));
+        assertFalse(bucket.hasSameRate(10, 1000L));
+        assertFalse(bucket.hasSameRate(30, 60000L));
+    }
+}
@@ -12,6 +12,7 @@ import com.gracelogic.platform.payment.dto.PaymentDTO;
 import com.gracelogic.platform.payment.dto.ProcessPaymentRequest;
 import com.gracelogic.platform.payment.exception.InvalidPaymentSystemException;
 import com.gracelogic.platform.payment.exception.PaymentAlreadyExistException;
+import com.gracelogic.platform.payment.exception.PaymentInProgressException;
 import com.gracelogic.platform.payment.model.Payment;
 import com.gracelogic.platform.payment.service.PaymentService;
 import com.gracelogic.platform.user.api.AbstractAuthorizedController;
@@ -98,6 +99,8 @@ public class PaymentApi extends AbstractAuthorizedController {
             return new ResponseEntity<IDResponse>(new IDResponse(payment.getId()), HttpStatus.OK);
         } catch (PaymentAlreadyExistException e) {
             return new ResponseEntity<ErrorResponse>(new ErrorResponse(e.getMessage(), e.getMessage()), HttpStatus.BAD_REQUEST);
+        } catch (PaymentInProgressException e) {
+            return new ResponseEntity<ErrorResponse>(new ErrorResponse(e.getMessage(), e.getMessage()), HttpStatus.CONFLICT);
         } catch (AccountNotFoundException e) {
             return new ResponseEntity<ErrorResponse>(new ErrorResponse(e.getMessage(), e.getMessage()), HttpStatus.BAD_REQUEST);
         } catch (InvalidPaymentSystemException e) {
@@ -4,6 +4,7 @@ package com.gracelogic.platform.payment.controller;
 import com.gracelogic.platform.db.service.IdObjectService;
 import com.gracelogic.platform.payment.model.PaymentSystem;
 import com.gracelogic.platform.payment.service.PaymentExecutor;
+import com.gracelogic.platform.payment.service.PaymentExecutorRegistry;
 import com.gracelogic.platform.web.ServletUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -17,7 +18,6 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 import java.util.UUID;
 
 import static com.gracelogic.platform.payment.Path.PLATFORM_PAYMENT;
@@ -31,6 +31,9 @@ public class PaymentController {
     @Autowired
     private ApplicationContext applicationContext;
 
+    @Autowired
+    private PaymentExecutorRegistry paymentExecutorRegistry;
+
     private static Logger logger = LoggerFactory.getLogger(PaymentController.class);
 
     @RequestMapping(value = "/{paymentSystemId}")
@@ -59,16 +62,11 @@ public class PaymentController {
 
         PaymentExecutor paymentExecutor = null;
         try {
-            paymentExecutor = initializePaymentExecutor(paymentSystem.getPaymentExecutorClass());
+            paymentExecutor = paymentExecutorRegistry.getPaymentExecutor(paymentSystem);
             paymentExecutor.processCallback(paymentSystem, applicationContext, request, response);
         } catch (Exception e) {
             logger.error("Failed to process payment", e);
             response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
         }
     }
-
-    private PaymentExecutor initializePaymentExecutor(String paymentExecutorClassName) throws ClassNotFoundException, NoSuchMethodException, IllegalAccessException, InvocationTargetException, InstantiationException {
-        Class<?> clazz = Class.forName(paymentExecutorClassName);
-        return (PaymentExecutor) clazz.newInstance();
-    }
 }
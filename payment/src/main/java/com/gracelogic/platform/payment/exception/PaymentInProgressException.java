@@ -0,0 +1,18 @@
+package com.gracelogic.platform.payment.exception;
+
+/**
+ * Payment with the same UID is being processed by another request and is not committed yet. Caller should retry later.
+ */
+public class PaymentInProgressException extends Exception {
+
+    private String message;
+
+    public PaymentInProgressException(String message) {
+        super(message);
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
@@ -12,7 +12,8 @@ import java.util.Date;
 import java.util.UUID;
 
 @Entity
-@Table(name = JPAProperties.TABLE_PREFIX + "PAYMENT")
+@Table(name = JPAProperties.TABLE_PREFIX + "PAYMENT", uniqueConstraints =
+        {@UniqueConstraint(columnNames = {"PAYMENT_SYSTEM_ID", "PAYMENT_UID"})})
 public class Payment extends IdObject<UUID> {
     @Id
     @Column(name = ID)
@@ -7,6 +7,7 @@ import com.gracelogic.platform.payment.dto.PaymentExecutionRequestDTO;
 import com.gracelogic.platform.payment.dto.PaymentExecutionResultDTO;
 import com.gracelogic.platform.payment.dto.ProcessPaymentRequest;
 import com.gracelogic.platform.payment.dto.alfabank.*;
+import com.gracelogic.platform.payment.exception.PaymentAlreadyExistException;
 import com.gracelogic.platform.payment.exception.PaymentExecutionException;
 import com.gracelogic.platform.payment.model.PaymentSystem;
 import org.apache.commons.io.IOUtils;
@@ -53,6 +54,12 @@ public class AlfaBankPaymentExecutor implements PaymentExecutor {
         } catch (Exception e) {
             throw new PaymentExecutionException("AlfaBankOrderNumberServiceImpl not found in project");
         }
+        CloseableHttpClient httpClient;
+        try {
+            httpClient = context.getBean(HttpClientRegistry.class).getHttpClient(HttpClientRegistry.ALFA_BANK);
+        } catch (Exception e) {
+            throw new PaymentExecutionException(e.getMessage());
+        }
         String orderNumber = paymentSystemFields.get("order_prefix") + orderNumberService.getOrderNumber();
         registerOrderDTO.setOrderNumber(orderNumber);
         Double amount = FinanceUtils.toFractional2Rounded(request.getAmount());
@@ -84,7 +91,7 @@ public class AlfaBankPaymentExecutor implements PaymentExecutor {
         //registerOrderDTO.setPostAddress("");
 
         try {
-            AlfaBankRegisterOrderResponseDTO response = registerOrder(registerOrderDTO, paymentSystemFields.get("endpoint"));
+            AlfaBankRegisterOrderResponseDTO response = registerOrder(httpClient, registerOrderDTO, paymentSystemFields.get("endpoint"));
             if (response.getOrderId() == null) {
                 throw new PaymentExecutionException(response.getErrorMessage());
             }
@@ -106,8 +113,10 @@ public class AlfaBankPaymentExecutor implements PaymentExecutor {
 
         Map<String, String> paymentSystemFields = JsonUtils.jsonToMap(paymentSystem.getFields());
         PaymentService paymentService;
+        CloseableHttpClient httpClient;
         try {
             paymentService = context.getBean(PaymentService.class);
+            httpClient = context.getBean(HttpClientRegistry.class).getHttpClient(HttpClientRegistry.ALFA_BANK);
         } catch (Exception e) {
             throw new PaymentExecutionException(e.getMessage());
         }
@@ -120,7 +129,7 @@ public class AlfaBankPaymentExecutor implements PaymentExecutor {
                 statusRequest.setToken(paymentSystemFields.get("token"));
 
                 AlfaBankOrderStatusResponseDTO orderStatus =
-                        getOrderStatus(statusRequest, paymentSystemFields.get("endpoint"));
+                        getOrderStatus(httpClient, statusRequest, paymentSystemFields.get("endpoint"));
                 logger.info(orderStatus.toString());
 
                 if (orderStatus.getOrderStatus() != null && orderStatus.getOrderStatus() == 2) {
@@ -129,7 +138,11 @@ public class AlfaBankPaymentExecutor implements PaymentExecutor {
                     req.setRegisteredAmount(orderStatus.getAmount() / 100.0d);
                     req.setPaymentUID(orderStatus.getOrderNumber());
                     req.setCurrency(getCurrencyCodeFromIso4217(orderStatus.getCurrency()));
-                    paymentService.processPayment(paymentSystem.getId(), req, null);
+                    try {
+                        paymentService.processPayment(paymentSystem.getId(), req, null);
+                    } catch (PaymentAlreadyExistException e) {
+                        logger.info("Payment already processed: {}", req.getPaymentUID());
+                    }
                 } else {
                     logger.warn("Payment not succeed, but event accepted: {}", orderStatus.getOrderNumber());
                 }
@@ -148,38 +161,36 @@ public class AlfaBankPaymentExecutor implements PaymentExecutor {
         return true;
     }
 
-    private static AlfaBankRegisterOrderResponseDTO registerOrder(AlfaBankRegisterOrderDTO request, String endpoint) throws Exception {
-        CloseableHttpClient httpClient = HttpClientUtils.getMultithreadedUnsecuredClient();
-
+    private static AlfaBankRegisterOrderResponseDTO registerOrder(CloseableHttpClient httpClient, AlfaBankRegisterOrderDTO request, String endpoint) throws Exception {
         URIBuilder uriBuilder = new URIBuilder(endpoint + "/register.do");
         uriBuilder.setParameters(request.getNameValuePairs());
 
         HttpPost sendMethod = new HttpPost(uriBuilder.build());
         sendMethod.addHeader("Accept", "application/json");
 
-        CloseableHttpResponse result = httpClient.execute(sendMethod);
-        logger.debug("response status: {}", result.getStatusLine().getStatusCode());
-        HttpEntity entity = result.getEntity();
-        String response = EntityUtils.toString(entity);
-        logger.debug("response body: {}", response);
-        return mapper.readValue(response, AlfaBankRegisterOrderResponseDTO.class);
+        try (CloseableHttpResponse result = httpClient.execute(sendMethod)) {
+            logger.debug("response status: {}", result.getStatusLine().getStatusCode());
+            HttpEntity entity = result.getEntity();
+            String response = EntityUtils.toString(entity);
+            logger.debug("response body: {}", response);
+            return mapper.readValue(response, AlfaBankRegisterOrderResponseDTO.class);
+        }
     }
 
-    private static AlfaBankOrderStatusResponseDTO getOrderStatus(AlfaBankOrderStatusRequestDTO request, String endpoint) throws Exception {
-        CloseableHttpClient httpClient = HttpClientUtils.getMultithreadedUnsecuredClient();
-
+    private static AlfaBankOrderStatusResponseDTO getOrderStatus(CloseableHttpClient httpClient, AlfaBankOrderStatusRequestDTO request, String endpoint) throws Exception {
         URIBuilder uriBuilder = new URIBuilder(endpoint + "/getOrderStatusExtended.do");
         uriBuilder.setParameters(request.getNameValuePairs());
 
         HttpPost sendMethod = new HttpPost(uriBuilder.build());
         sendMethod.addHeader("Accept", "application/json");
 
-        CloseableHttpResponse result = httpClient.execute(sendMethod);
-        logger.debug("response status: {}", result.getStatusLine().getStatusCode());
-        HttpEntity entity = result.getEntity();
-        String response = EntityUtils.toString(entity);
-        logger.debug("response body: {}", response);
-        return mapper.readValue(response, AlfaBankOrderStatusResponseDTO.class);
+        try (CloseableHttpResponse result = httpClient.execute(sendMethod)) {
+            logger.debug("response status: {}", result.getStatusLine().getStatusCode());
+            HttpEntity entity = result.getEntity();
+            String response = EntityUtils.toString(entity);
+            logger.debug("response body: {}", response);
+            return mapper.readValue(response, AlfaBankOrderStatusResponseDTO.class);
+        }
     }
 
     private static Integer getCurrencyCodeAsIso4217(String code) throws PaymentExecutionException {
@@ -0,0 +1,15 @@
+package com.gracelogic.platform.payment.service;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+
+public interface HttpClientRegistry {
+    String PAYPAL = "paypal";
+    String ALFA_BANK = "alfabank";
+    String YANDEX_KASSA = "yandex_kassa";
+
+    /**
+     * Returns long-lived pooled client dedicated to the provider. The client is owned by the registry and must not be closed by the caller.
+     * Pool settings are read when the client is built on first use, so their changes take effect after restart.
+     */
+    CloseableHttpClient getHttpClient(String provider);
+}
@@ -0,0 +1,102 @@
+package com.gracelogic.platform.payment.service;
+
+import com.gracelogic.platform.property.service.PropertyService;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class HttpClientRegistryImpl implements HttpClientRegistry {
+    private static Logger logger = LoggerFactory.getLogger(HttpClientRegistryImpl.class);
+
+    private static final int DEFAULT_MAX_TOTAL = 50;
+    private static final int DEFAULT_MAX_PER_ROUTE = 20;
+    private static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+    private static final int DEFAULT_READ_TIMEOUT = 30000;
+    private static final int DEFAULT_KEEP_ALIVE = 30000;
+    private static final int DEFAULT_IDLE_TIMEOUT = 60000;
+
+    @Autowired
+    private PropertyService propertyService;
+
+    private final Map<String, CloseableHttpClient> clients = new ConcurrentHashMap<>();
+
+    @Override
+    public CloseableHttpClient getHttpClient(String provider) {
+        return clients.computeIfAbsent(provider, this::buildHttpClient);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        for (String provider : clients.keySet()) {
+            close(provider, clients.remove(provider));
+        }
+    }
+
+    private CloseableHttpClient buildHttpClient(String provider) {
+        int maxTotal = getIntSetting(provider, "max_total", DEFAULT_MAX_TOTAL);
+        int maxPerRoute = getIntSetting(provider, "max_per_route", DEFAULT_MAX_PER_ROUTE);
+        int connectTimeout = getIntSetting(provider, "connect_timeout", DEFAULT_CONNECT_TIMEOUT);
+        int readTimeout = getIntSetting(provider, "read_timeout", DEFAULT_READ_TIMEOUT);
+        long keepAlive = getIntSetting(provider, "keep_alive", DEFAULT_KEEP_ALIVE);
+        long idleTimeout = getIntSetting(provider, "idle_timeout", DEFAULT_IDLE_TIMEOUT);
+
+        //Default socket factories verify gateway certificates and host names
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        connectionManager.setValidateAfterInactivity(2000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeout)
+                .setConnectionRequestTimeout(connectTimeout)
+                .setSocketTimeout(readTimeout)
+                .build();
+
+        //Use server provided keep-alive if it is shorter than configured one
+        ConnectionKeepAliveStrategy keepAliveStrategy = (response, context) -> {
+            long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAlive) : keepAlive;
+        };
+
+        logger.info("Creating http client for '{}': maxTotal={}, maxPerRoute={}, connectTimeout={}, readTimeout={}", provider, maxTotal, maxPerRoute, connectTimeout, readTimeout);
+        return HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy(keepAliveStrategy)
+                .evictExpiredConnections()
+                .evictIdleConnections(idleTimeout, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    private int getIntSetting(String provider, String name, int defaultValue) {
+        Integer value = propertyService.getPropertyValueAsInteger(String.format("payment:http_%s_%s", provider, name));
+        if (value == null) {
+            value = propertyService.getPropertyValueAsInteger(String.format("payment:http_%s", name));
+        }
+        return value != null ? value : defaultValue;
+    }
+
+    private static void close(String provider, CloseableHttpClient client) {
+        if (client != null) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close http client for '{}'", provider, e);
+            }
+        }
+    }
+}
@@ -21,28 +21,36 @@ public class HttpClientUtils {
      * @return http client which ignores SSL and ready for multiple threaded environment.
      */
     public static HttpClientBuilder getMultithreadedUnsecuredClientBuilder() {
+        return HttpClientBuilder.create()
+                .setSSLSocketFactory(getUnsecuredSSLSocketFactory())
+                .setConnectionManager(new PoolingHttpClientConnectionManager(getUnsecuredSocketFactoryRegistry()));
+    }
+
+    public static SSLConnectionSocketFactory getUnsecuredSSLSocketFactory() {
         try {
             SSLContextBuilder sslbuilder = new SSLContextBuilder();
             sslbuilder.loadTrustMaterial(null, new AlwaysTrustStrategy());
 
-            SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(
+            return new SSLConnectionSocketFactory(
                     sslbuilder.build(),
                     SSLConnectionSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER
             );
-
-            Registry<ConnectionSocketFactory> socketFactoryRegistry = RegistryBuilder.<ConnectionSocketFactory>create()
-                    .register("https", sslsf)
-                    .register("http", new PlainConnectionSocketFactory())
-                    .build();
-
-            return HttpClientBuilder.create()
-                    .setSSLSocketFactory(sslsf)
-                    .setConnectionManager(new PoolingHttpClientConnectionManager(socketFactoryRegistry));
         } catch (Exception e) {
             throw new RuntimeException(e.getMessage(), e);
         }
     }
 
+    public static Registry<ConnectionSocketFactory> getUnsecuredSocketFactoryRegistry() {
+        return RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("https", getUnsecuredSSLSocketFactory())
+                .register("http", new PlainConnectionSocketFactory())
+                .build();
+    }
+
+    /**
+     * Builds a new client with its own connection pool on every call. Payment executors must use
+     * {@link HttpClientRegistry} instead, which keeps one pooled client per provider.
+     */
     public static CloseableHttpClient getMultithreadedUnsecuredClient() {
         return getMultithreadedUnsecuredClientBuilder().build();
     }
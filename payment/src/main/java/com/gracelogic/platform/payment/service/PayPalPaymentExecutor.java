@@ -56,8 +56,10 @@ public class PayPalPaymentExecutor implements PaymentExecutor {
 
         //Initilaize
         PaymentService paymentService = null;
+        CloseableHttpClient httpClient = null;
         try {
             paymentService = context.getBean(PaymentService.class);
+            httpClient = context.getBean(HttpClientRegistry.class).getHttpClient(HttpClientRegistry.PAYPAL);
         } catch (Exception e) {
             throw new PaymentExecutionException(e.getMessage());
         }
@@ -66,7 +68,7 @@ public class PayPalPaymentExecutor implements PaymentExecutor {
         //Get access token
         PayPalOAuthResponseDTO accessToken = null;
         try {
-            accessToken = token(apiUrl, params.get(PARAMETER_CLIENT_ID), params.get(PARAMETER_SECRET_KEY));
+            accessToken = token(httpClient, apiUrl, params.get(PARAMETER_CLIENT_ID), params.get(PARAMETER_SECRET_KEY));
             if (accessToken == null || StringUtils.isEmpty(accessToken.getAccess_token())) {
                 throw new PaymentExecutionException("Access token is null");
             }
@@ -77,9 +79,9 @@ public class PayPalPaymentExecutor implements PaymentExecutor {
 
         Boolean useBillingAgreement = request.getParams().get(USE_BILLING_AGREEMENT) != null ? Boolean.parseBoolean(request.getParams().get(USE_BILLING_AGREEMENT)) : null;
         if (request.getPeriodicity() == null || (useBillingAgreement != null && !useBillingAgreement)) {
-            return executePayment(request, accessToken, apiUrl, params, paymentService);
+            return executePayment(httpClient, request, accessToken, apiUrl, params, paymentService);
         } else {
-            return executeBillingAgreement(request, accessToken, apiUrl, params);
+            return executeBillingAgreement(httpClient, request, accessToken, apiUrl, params);
         }
     }
 
@@ -124,7 +126,7 @@ public class PayPalPaymentExecutor implements PaymentExecutor {
         return true;
     }
 
-    private PaymentExecutionResultDTO executePayment(PaymentExecutionRequestDTO request, PayPalOAuthResponseDTO accessToken, String apiUrl, Map<String, String> params, PaymentService paymentService) throws PaymentExecutionException {
+    private PaymentExecutionResultDTO executePayment(CloseableHttpClient httpClient, PaymentExecutionRequestDTO request, PayPalOAuthResponseDTO accessToken, String apiUrl, Map<String, String> params, PaymentService paymentService) throws PaymentExecutionException {
         String action = request.getParams().get(ACTION);
         if (request.getParams() == null || !request.getParams().containsKey(ACTION)) {
             throw new PaymentExecutionException("Not specified action");
@@ -149,7 +151,7 @@ public class PayPalPaymentExecutor implements PaymentExecutor {
             createRequestDTO.getTransactions().add(transactionDTO);
 
             try {
-                PayPalCreateResponseDTO responseDTO = createPayment(apiUrl, accessToken.getAccess_token(), createRequestDTO);
+                PayPalCreateResponseDTO responseDTO = createPayment(httpClient, apiUrl, accessToken.getAccess_token(), createRequestDTO);
                 if (responseDTO.getId() == null) {
                     throw new PaymentExecutionException("PaymentId is null!");
                 }
@@ -166,7 +168,7 @@ public class PayPalPaymentExecutor implements PaymentExecutor {
             executeRequestDTO.setPayer_id(request.getParams().get("payerId"));
 
             try {
-                PayPalExecuteResponseDTO responseDTO = executePayment(apiUrl, accessToken.getAccess_token(), request.getParams().get("paymentId"), executeRequestDTO);
+                PayPalExecuteResponseDTO responseDTO = executePayment(httpClient, apiUrl, accessToken.getAccess_token(), request.getParams().get("paymentId"), executeRequestDTO);
                 if (request.getParams().get("paymentId") != null && StringUtils.equalsIgnoreCase(responseDTO.getState(), "approved")) {
                     ProcessPaymentRequest req = new ProcessPaymentRequest();
                     req.setExternalIdentifier(request.getUniquePaymentIdentifier());
@@ -192,7 +194,7 @@ public class PayPalPaymentExecutor implements PaymentExecutor {
     }
 
 
-    private PaymentExecutionResultDTO executeBillingAgreement(PaymentExecutionRequestDTO request, PayPalOAuthResponseDTO accessToken, String apiUrl, Map<String, String> params) throws PaymentExecutionException {
+    private PaymentExecutionResultDTO executeBillingAgreement(CloseableHttpClient httpClient, PaymentExecutionRequestDTO request, PayPalOAuthResponseDTO accessToken, String apiUrl, Map<String, String> params) throws PaymentExecutionException {
         if (request.getParams() == null || !request.getParams().containsKey(ACTION)) {
             throw new PaymentExecutionException("Not specified action");
         }
@@ -223,11 +225,11 @@ public class PayPalPaymentExecutor implements PaymentExecutor {
             merchantPreferencesDTO.setMax_fail_attempts(0);
             planDTO.setMerchant_preferences(merchantPreferencesDTO);
             try {
-                planDTO = createPlan(apiUrl, accessToken.getAccess_token(), planDTO);
+                planDTO = createPlan(httpClient, apiUrl, accessToken.getAccess_token(), planDTO);
                 if (planDTO.getId() == null) {
                     throw new PaymentExecutionException("PlanId is null!");
                 }
-                activatePlan(apiUrl, accessToken.getAccess_token(), planDTO.getId());
+                activatePlan(httpClient, apiUrl, accessToken.getAccess_token(), planDTO.getId());
 
             } catch (Exception e) {
                 e.printStackTrace();
@@ -254,7 +256,7 @@ public class PayPalPaymentExecutor implements PaymentExecutor {
             billingAgreementDTO.setPlan(planDTO1);
 
             try {
-                billingAgreementDTO = createBillingAgreement(apiUrl, accessToken.getAccess_token(), billingAgreementDTO);
+                billingAgreementDTO = createBillingAgreement(httpClient, apiUrl, accessToken.getAccess_token(), billingAgreementDTO);
                 for (PayPalLinkDescriptionDTO l : billingAgreementDTO.getLinks()) {
                     if (StringUtils.equalsIgnoreCase(l.getRel(), "execute")) {
                         billingAgreementDTO.setId(extractAgreementId(l.getHref()));
@@ -273,7 +275,7 @@ public class PayPalPaymentExecutor implements PaymentExecutor {
             }
         } else if (StringUtils.equalsIgnoreCase(action, ACTION_EXECUTE)) {
             try {
-                PayPalBillingAgreementDTO billingAgreementDTO = executeBillingAgreement(apiUrl, accessToken.getAccess_token(), request.getParams().get("paymentId"));
+                PayPalBillingAgreementDTO billingAgreementDTO = executeBillingAgreement(httpClient, apiUrl, accessToken.getAccess_token(), request.getParams().get("paymentId"));
                 if (billingAgreementDTO.getId() == null) {
                     throw new PaymentExecutionException("BillingAgreement is null!");
                 }
@@ -287,9 +289,7 @@ public class PayPalPaymentExecutor implements PaymentExecutor {
         }
     }
 
-    private static PayPalOAuthResponseDTO token(String apiUrl, String clientId, String secret) throws Exception {
-        CloseableHttpClient httpClient = HttpClientUtils.getMultithreadedUnsecuredClient();
-
+    private static PayPalOAuthResponseDTO token(CloseableHttpClient httpClient, String apiUrl, String clientId, String secret) throws Exception {
         String uri = apiUrl + "/v1/oauth2/token";
         logger.debug("request url: {}", uri);
         HttpPost sendMethod = new HttpPost(uri);
@@ -299,17 +299,16 @@ public class PayPalPaymentExecutor implements PaymentExecutor {
         String requestBody = "grant_type=client_credentials";
         logger.debug("request body: {}", requestBody);
         sendMethod.setEntity(new StringEntity(requestBody, APPLICATION_JSON));
-        CloseableHttpResponse result = httpClient.execute(sendMethod);
-        logger.debug("response status: {}", result.getStatusLine().getStatusCode());
-        HttpEntity entity = result.getEntity();
-        String response = EntityUtils.toString(entity);
-        logger.debug("response body: {}", response);
-        return mapper.readValue(response, PayPalOAuthResponseDTO.class);
+        try (CloseableHttpResponse result = httpClient.execute(sendMethod)) {
+            logger.debug("response status: {}", result.getStatusLine().getStatusCode());
+            HttpEntity entity = result.getEntity();
+            String response = EntityUtils.toString(entity);
+            logger.debug("response body: {}", response);
+            return mapper.readValue(response, PayPalOAuthResponseDTO.class);
+        }
     }
 
-    private static PayPalCreateResponseDTO createPayment(String apiUrl, String accessToken, PayPalCreateRequestDTO requestDTO) throws Exception {
-        CloseableHttpClient httpClient = HttpClientUtils.getMultithreadedUnsecuredClient();
-
+    private static PayPalCreateResponseDTO createPayment(CloseableHttpClient httpClient, String apiUrl, String accessToken, PayPalCreateRequestDTO requestDTO) throws Exception {
         String uri = apiUrl + "/v1/payments/payment";
         logger.debug("request url: {}", uri);
         HttpPost sendMethod = new HttpPost(uri);
@@ -318,17 +317,16 @@ public class PayPalPaymentExecutor implements PaymentExecutor {
         String requestBody = mapper.writeValueAsString(requestDTO);
         logger.debug("request body: {}", requestBody);
         sendMethod.setEntity(new StringEntity(requestBody, APPLICATION_JSON));
-        CloseableHttpResponse result = httpClient.execute(sendMethod);
-        logger.debug("response status: {}", result.getStatusLine().getStatusCode());
-        HttpEntity entity = result.getEntity();
-        String response = EntityUtils.toString(entity);
-        logger.debug("response body: {}", response);
-        return mapper.readValue(response, PayPalCreateResponseDTO.class);
+        try (CloseableHttpResponse result = httpClient.execute(sendMethod)) {
+            logger.debug("response status: {}", result.getStatusLine().getStatusCode());
+            HttpEntity entity = result.getEntity();
+            String response = EntityUtils.toString(entity);
+            logger.debug("response body: {}", response);
+            return mapper.readValue(response, PayPalCreateResponseDTO.class);
+        }
     }
 
-    private static PayPalExecuteResponseDTO executePayment(String apiUrl, String accessToken, String id, PayPalExecuteRequestDTO requestDTO) throws Exception {
-        CloseableHttpClient httpClient = HttpClientUtils.getMultithreadedUnsecuredClient();
-
+    private static PayPalExecuteResponseDTO executePayment(CloseableHttpClient httpClient, String apiUrl, String accessToken, String id, PayPalExecuteRequestDTO requestDTO) throws Exception {
         String uri = apiUrl + "/v1/payments/payment/" + id + "/execute";
         logger.debug("request url: {}", uri);
         HttpPost sendMethod = new HttpPost(uri);
@@ -337,17 +335,16 @@ public class PayPalPaymentExecutor implements PaymentExecutor {
         String requestBody = mapper.writeValueAsString(requestDTO);
         logger.debug("request body: {}", requestBody);
         sendMethod.setEntity(new StringEntity(requestBody, APPLICATION_JSON));
-        CloseableHttpResponse result = httpClient.execute(sendMethod);
-        logger.debug("response status: {}", result.getStatusLine().getStatusCode());
-        HttpEntity entity = result.getEntity();
-        String response = EntityUtils.toString(entity);
-        logger.debug("response body: {}", response);
-        return mapper.readValue(response, PayPalExecuteResponseDTO.class);
+        try (CloseableHttpResponse result = httpClient.execute(sendMethod)) {
+            logger.debug("response status: {}", result.getStatusLine().getStatusCode());
+            HttpEntity entity = result.getEntity();
+            String response = EntityUtils.toString(entity);
+            logger.debug("response body: {}", response);
+            return mapper.readValue(response, PayPalExecuteResponseDTO.class);
+        }
     }
 
-    private static PayPalPlanDTO createPlan(String apiUrl, String accessToken, PayPalPlanDTO requestDTO) throws Exception {
-        CloseableHttpClient httpClient = HttpClientUtils.getMultithreadedUnsecuredClient();
-
+    private static PayPalPlanDTO createPlan(CloseableHttpClient httpClient, String apiUrl, String accessToken, PayPalPlanDTO requestDTO) throws Exception {
         String uri = apiUrl + "/v1/payments/billing-plans";
         logger.debug("request url: {}", uri);
         HttpPost sendMethod = new HttpPost(uri);
@@ -356,17 +353,16 @@ public class PayPalPaymentExecutor implements PaymentExecutor {
         String requestBody = mapper.writeValueAsString(requestDTO);
         logger.debug("request body: {}", requestBody);
         sendMethod.setEntity(new StringEntity(requestBody, APPLICATION_JSON));
-        CloseableHttpResponse result = httpClient.execute(sendMethod);
-        logger.debug("response status: {}", result.getStatusLine().getStatusCode());
-        HttpEntity entity = result.getEntity();
-        String response = EntityUtils.toString(entity);
-        logger.debug("response body: {}", response);
-        return mapper.readValue(response, PayPalPlanDTO.class);
+        try (CloseableHttpResponse result = httpClient.execute(sendMethod)) {
+            logger.debug("response status: {}", result.getStatusLine().getStatusCode());
+            HttpEntity entity = result.getEntity();
+            String response = EntityUtils.toString(entity);
+            logger.debug("response body: {}", response);
+            return mapper.readValue(response, PayPalPlanDTO.class);
+        }
     }
 
-    private static void activatePlan(String apiUrl, String accessToken, String planId) throws Exception {
-        CloseableHttpClient httpClient = HttpClientUtils.getMultithreadedUnsecuredClient();
-
+    private static void activatePlan(CloseableHttpClient httpClient, String apiUrl, String accessToken, String planId) throws Exception {
         String uri = apiUrl + "/v1/payments/billing-plans/" + planId;
         logger.debug("request url: {}", uri);
         HttpPatch sendMethod = new HttpPatch(uri);
@@ -381,16 +377,15 @@ public class PayPalPaymentExecutor implements PaymentExecutor {
         String requestBody = mapper.writeValueAsString(list);
         logger.debug("request body: {}", requestBody);
         sendMethod.setEntity(new StringEntity(requestBody, APPLICATION_JSON));
-        CloseableHttpResponse result = httpClient.execute(sendMethod);
-        logger.debug("response status: {}", result.getStatusLine().getStatusCode());
-        HttpEntity entity = result.getEntity();
-        String response = EntityUtils.toString(entity);
-        logger.debug("response body: {}", response);
+        try (CloseableHttpResponse result = httpClient.execute(sendMethod)) {
+            logger.debug("response status: {}", result.getStatusLine().getStatusCode());
+            HttpEntity entity = result.getEntity();
+            String response = EntityUtils.toString(entity);
+            logger.debug("response body: {}", response);
+        }
     }
 
-    private static PayPalBillingAgreementDTO createBillingAgreement(String apiUrl, String accessToken, PayPalBillingAgreementDTO requestDTO) throws Exception {
-        CloseableHttpClient httpClient = HttpClientUtils.getMultithreadedUnsecuredClient();
-
+    private static PayPalBillingAgreementDTO createBillingAgreement(CloseableHttpClient httpClient, String apiUrl, String accessToken, PayPalBillingAgreementDTO requestDTO) throws Exception {
         String uri = apiUrl + "/v1/payments/billing-agreements";
         logger.debug("request url: {}", uri);
         HttpPost sendMethod = new HttpPost(uri);
@@ -399,28 +394,28 @@ public class PayPalPaymentExecutor implements PaymentExecutor {
         String requestBody = mapper.writeValueAsString(requestDTO);
         logger.debug("request body: {}", requestBody);
         sendMethod.setEntity(new StringEntity(requestBody, APPLICATION_JSON));
-        CloseableHttpResponse result = httpClient.execute(sendMethod);
-        logger.debug("response status: {}", result.getStatusLine().getStatusCode());
-        HttpEntity entity = result.getEntity();
-        String response = EntityUtils.toString(entity);
-        logger.debug("response body: {}", response);
-        return mapper.readValue(response, PayPalBillingAgreementDTO.class);
+        try (CloseableHttpResponse result = httpClient.execute(sendMethod)) {
+            logger.debug("response status: {}", result.getStatusLine().getStatusCode());
+            HttpEntity entity = result.getEntity();
+            String response = EntityUtils.toString(entity);
+            logger.debug("response body: {}", response);
+            return mapper.readValue(response, PayPalBillingAgreementDTO.class);
+        }
     }
 
-    private static PayPalBillingAgreementDTO executeBillingAgreement(String apiUrl, String accessToken, String billingAgreementId) throws Exception {
-        CloseableHttpClient httpClient = HttpClientUtils.getMultithreadedUnsecuredClient();
-
+    private static PayPalBillingAgreementDTO executeBillingAgreement(CloseableHttpClient httpClient, String apiUrl, String accessToken, String billingAgreementId) throws Exception {
         String uri = apiUrl + "/v1/payments/billing-agreements/" + billingAgreementId + "/agreement-execute";
         logger.debug("request url: {}", uri);
         HttpPost sendMethod = new HttpPost(uri);
         sendMethod.addHeader("Authorization", "Bearer " + accessToken);
         sendMethod.addHeader("Content-Type", "application/json");
-        CloseableHttpResponse result = httpClient.execute(sendMethod);
-        logger.debug("response status: {}", result.getStatusLine().getStatusCode());
-        HttpEntity entity = result.getEntity();
-        String response = EntityUtils.toString(entity);
-        logger.debug("response body: {}", response);
-        return mapper.readValue(response, PayPalBillingAgreementDTO.class);
+        try (CloseableHttpResponse result = httpClient.execute(sendMethod)) {
+            logger.debug("response status: {}", result.getStatusLine().getStatusCode());
+            HttpEntity entity = result.getEntity();
+            String response = EntityUtils.toString(entity);
+            logger.debug("response body: {}", response);
+            return mapper.readValue(response, PayPalBillingAgreementDTO.class);
+        }
     }
 
     private static String extractAgreementId(String url) {
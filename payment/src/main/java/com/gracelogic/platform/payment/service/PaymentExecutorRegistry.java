@@ -0,0 +1,12 @@
+package com.gracelogic.platform.payment.service;
+
+import com.gracelogic.platform.payment.exception.PaymentExecutionException;
+import com.gracelogic.platform.payment.model.PaymentSystem;
+
+public interface PaymentExecutorRegistry {
+    /**
+     * Returns cached executor of the payment system. Executor is rebuilt when payment system was changed since last call,
+     * so no explicit eviction is needed after payment system is saved.
+     */
+    PaymentExecutor getPaymentExecutor(PaymentSystem paymentSystem) throws PaymentExecutionException;
+}
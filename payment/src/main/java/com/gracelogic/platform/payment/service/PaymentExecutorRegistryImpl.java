@@ -0,0 +1,79 @@
+package com.gracelogic.platform.payment.service;
+
+import com.gracelogic.platform.payment.exception.PaymentExecutionException;
+import com.gracelogic.platform.payment.model.PaymentSystem;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class PaymentExecutorRegistryImpl implements PaymentExecutorRegistry {
+    private static Logger logger = LoggerFactory.getLogger(PaymentExecutorRegistryImpl.class);
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    private final Map<UUID, CachedExecutor> executors = new ConcurrentHashMap<>();
+
+    private static class CachedExecutor {
+        private final String className;
+        private final Date changed;
+        private final PaymentExecutor executor;
+
+        CachedExecutor(String className, Date changed, PaymentExecutor executor) {
+            this.className = className;
+            this.changed = changed;
+            this.executor = executor;
+        }
+
+        boolean isActual(PaymentSystem paymentSystem) {
+            return StringUtils.equals(className, paymentSystem.getPaymentExecutorClass())
+                    && Objects.equals(changed, paymentSystem.getChanged());
+        }
+    }
+
+    @Override
+    public PaymentExecutor getPaymentExecutor(PaymentSystem paymentSystem) throws PaymentExecutionException {
+        if (StringUtils.isEmpty(paymentSystem.getPaymentExecutorClass())) {
+            throw new PaymentExecutionException("Payment executor class is not specified");
+        }
+
+        CachedExecutor cached = executors.get(paymentSystem.getId());
+        if (cached == null || !cached.isActual(paymentSystem)) {
+            cached = new CachedExecutor(paymentSystem.getPaymentExecutorClass(), paymentSystem.getChanged(), createPaymentExecutor(paymentSystem.getPaymentExecutorClass()));
+            executors.put(paymentSystem.getId(), cached);
+            logger.info("Payment executor {} initialized for payment system {}", cached.className, paymentSystem.getId());
+        }
+        return cached.executor;
+    }
+
+    private PaymentExecutor createPaymentExecutor(String paymentExecutorClassName) throws PaymentExecutionException {
+        try {
+            Class<?> clazz = Class.forName(paymentExecutorClassName);
+            if (!PaymentExecutor.class.isAssignableFrom(clazz)) {
+                throw new PaymentExecutionException(String.format("%s is not a payment executor", paymentExecutorClassName));
+            }
+
+            //Prefer executor registered as spring bean
+            Object bean = applicationContext.getBeanProvider(clazz).getIfUnique();
+            if (bean != null) {
+                return (PaymentExecutor) bean;
+            }
+            return (PaymentExecutor) clazz.getDeclaredConstructor().newInstance();
+        } catch (PaymentExecutionException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to initialize payment executor {}", paymentExecutorClassName, e);
+            throw new PaymentExecutionException(e.getMessage());
+        }
+    }
+}
@@ -10,6 +10,7 @@ import com.gracelogic.platform.payment.dto.PaymentDTO;
 import com.gracelogic.platform.payment.dto.ProcessPaymentRequest;
 import com.gracelogic.platform.payment.exception.InvalidPaymentSystemException;
 import com.gracelogic.platform.payment.exception.PaymentAlreadyExistException;
+import com.gracelogic.platform.payment.exception.PaymentInProgressException;
 import com.gracelogic.platform.payment.model.Payment;
 import com.gracelogic.platform.payment.model.PaymentSystem;
 import com.gracelogic.platform.user.dto.AuthorizedUser;
@@ -23,7 +24,12 @@ public interface PaymentService {
 
     CalcPaymentFeeResult calcPaymentFee(PaymentSystem paymentSystem, Double registeredAmount);
 
-    Payment processPayment(UUID paymentSystemId, ProcessPaymentRequest paymentModel, AuthorizedUser executedBy) throws PaymentAlreadyExistException, AccountNotFoundException, InvalidPaymentSystemException;
+    Payment processPayment(UUID paymentSystemId, ProcessPaymentRequest paymentModel, AuthorizedUser executedBy) throws PaymentAlreadyExistException, PaymentInProgressException, AccountNotFoundException, InvalidPaymentSystemException;
+
+    /**
+     * Creates payment in a transaction without deduplication of concurrent requests, use processPayment instead.
+     */
+    Payment createPayment(UUID paymentSystemId, ProcessPaymentRequest paymentModel, AuthorizedUser executedBy) throws PaymentAlreadyExistException, AccountNotFoundException, InvalidPaymentSystemException;
 
     void cancelPayment(UUID paymentId) throws AccountNotFoundException, IncorrectPaymentStateException, InsufficientFundsException;
 
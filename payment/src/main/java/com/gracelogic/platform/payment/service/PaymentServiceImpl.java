@@ -15,19 +15,24 @@ import com.gracelogic.platform.payment.dto.PaymentDTO;
 import com.gracelogic.platform.payment.dto.ProcessPaymentRequest;
 import com.gracelogic.platform.payment.exception.InvalidPaymentSystemException;
 import com.gracelogic.platform.payment.exception.PaymentAlreadyExistException;
+import com.gracelogic.platform.payment.exception.PaymentInProgressException;
 import com.gracelogic.platform.payment.model.Payment;
 import com.gracelogic.platform.payment.model.PaymentState;
 import com.gracelogic.platform.payment.model.PaymentSystem;
 import com.gracelogic.platform.user.dto.AuthorizedUser;
 import com.gracelogic.platform.user.model.User;
+import net.jodah.expiringmap.ExpiringMap;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class PaymentServiceImpl implements PaymentService {
@@ -45,6 +50,19 @@ public class PaymentServiceImpl implements PaymentService {
     @Autowired
     private DictionaryService ds;
 
+    @Autowired
+    private PaymentService paymentService;
+
+    /**
+     * Recently seen (paymentSystemId, paymentUID) pairs: TRUE when the payment is committed, FALSE while it is
+     * being processed on this node. Lets duplicate provider callbacks fail fast without touching the database;
+     * unique index on the payment table guards the cluster-wide case.
+     */
+    private final Map<String, Boolean> recentPayments = ExpiringMap.builder()
+            .maxSize(10000)
+            .expiration(1, TimeUnit.HOURS)
+            .build();
+
     @Override
     public Account checkPaymentAbility(UUID paymentSystemId, String accountNumber, String currency) throws InvalidPaymentSystemException, AccountNotFoundException {
         PaymentSystem paymentSystem = idObjectService.getObjectById(PaymentSystem.class, paymentSystemId);
@@ -55,23 +73,63 @@ public class PaymentServiceImpl implements PaymentService {
         return accountResolver.getTargetAccount(null, accountNumber, paymentSystem, currency);
     }
 
+    /**
+     * Payment is acknowledged as existing only when it is committed. Duplicate that is still being processed gets
+     * PaymentInProgressException, so the provider retries and the payment is not lost if the first attempt rolls back.
+     */
+    @Override
+    public Payment processPayment(UUID paymentSystemId, ProcessPaymentRequest paymentRequest, AuthorizedUser executedBy) throws PaymentAlreadyExistException, PaymentInProgressException, AccountNotFoundException, InvalidPaymentSystemException {
+        String paymentKey = !StringUtils.isEmpty(paymentRequest.getPaymentUID()) ? paymentSystemId + ":" + paymentRequest.getPaymentUID() : null;
+        if (paymentKey == null) {
+            return paymentService.createPayment(paymentSystemId, paymentRequest, executedBy);
+        }
+
+        Boolean committed = recentPayments.putIfAbsent(paymentKey, Boolean.FALSE);
+        if (committed != null) {
+            if (committed) {
+                throw new PaymentAlreadyExistException("PaymentAlreadyExistException");
+            }
+            throw new PaymentInProgressException("PaymentInProgressException");
+        }
+
+        boolean outerTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+        //Set when payment with the key exists, even if created by another request
+        boolean created = false;
+        try {
+            Payment payment = paymentService.createPayment(paymentSystemId, paymentRequest, executedBy);
+            created = true;
+            return payment;
+        } catch (PaymentAlreadyExistException e) {
+            created = true;
+            throw e;
+        } catch (RuntimeException e) {
+            //Unique constraint violation: payment was inserted concurrently by another node
+            if (!outerTransaction && isPaymentExist(paymentSystemId, paymentRequest.getPaymentUID())) {
+                created = true;
+                throw new PaymentAlreadyExistException("PaymentAlreadyExistException");
+            }
+            throw e;
+        } finally {
+            if (!created) {
+                recentPayments.remove(paymentKey);
+            } else if (outerTransaction) {
+                confirmOnCommit(paymentKey);
+            } else {
+                recentPayments.put(paymentKey, Boolean.TRUE);
+            }
+        }
+    }
+
     @Transactional(rollbackFor = Exception.class)
     @Override
-    public Payment processPayment(UUID paymentSystemId, ProcessPaymentRequest paymentRequest, AuthorizedUser executedBy) throws PaymentAlreadyExistException, AccountNotFoundException, InvalidPaymentSystemException {
+    public Payment createPayment(UUID paymentSystemId, ProcessPaymentRequest paymentRequest, AuthorizedUser executedBy) throws PaymentAlreadyExistException, AccountNotFoundException, InvalidPaymentSystemException {
         PaymentSystem paymentSystem = idObjectService.getObjectById(PaymentSystem.class, paymentSystemId);
         if (paymentSystem == null || !paymentSystem.getActive()) {
             throw new InvalidPaymentSystemException("InvalidPaymentSystemException");
         }
 
-        if (!StringUtils.isEmpty(paymentRequest.getPaymentUID())) {
-            Map<String, Object> params = new HashMap<>();
-            params.put("paymentSystemId", paymentSystemId);
-            params.put("paymentUID", paymentRequest.getPaymentUID());
-
-            Integer count = idObjectService.checkExist(Payment.class, null, "el.paymentSystem.id=:paymentSystemId and el.paymentUID=:paymentUID", params, 1);
-            if (count > 0) {
-                throw new PaymentAlreadyExistException("PaymentAlreadyExistException");
-            }
+        if (!StringUtils.isEmpty(paymentRequest.getPaymentUID()) && isPaymentExist(paymentSystemId, paymentRequest.getPaymentUID())) {
+            throw new PaymentAlreadyExistException("PaymentAlreadyExistException");
         }
 
         Payment payment = new Payment();
@@ -126,6 +184,30 @@ public class PaymentServiceImpl implements PaymentService {
         return payment;
     }
 
+    private boolean isPaymentExist(UUID paymentSystemId, String paymentUID) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("paymentSystemId", paymentSystemId);
+        params.put("paymentUID", paymentUID);
+
+        return idObjectService.checkExist(Payment.class, null, "el.paymentSystem.id=:paymentSystemId and el.paymentUID=:paymentUID", params, 1) > 0;
+    }
+
+    /**
+     * Payment created inside caller's transaction is visible to others only after that transaction commits.
+     */
+    private void confirmOnCommit(String key) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    recentPayments.put(key, Boolean.TRUE);
+                } else {
+                    recentPayments.remove(key);
+                }
+            }
+        });
+    }
+
     @Transactional(rollbackFor = Exception.class)
     @Override
     public void cancelPayment(UUID paymentId) throws AccountNotFoundException, IncorrectPaymentStateException, InsufficientFundsException {
@@ -7,6 +7,7 @@ import com.gracelogic.platform.payment.dto.PaymentExecutionResultDTO;
 import com.gracelogic.platform.payment.dto.ProcessPaymentRequest;
 import com.gracelogic.platform.payment.exception.InvalidPaymentSystemException;
 import com.gracelogic.platform.payment.exception.PaymentAlreadyExistException;
+import com.gracelogic.platform.payment.exception.PaymentInProgressException;
 import com.gracelogic.platform.payment.exception.PaymentExecutionException;
 import com.gracelogic.platform.payment.model.Payment;
 import com.gracelogic.platform.payment.model.PaymentSystem;
@@ -109,6 +110,8 @@ public class SbrfPaymentExecutor implements PaymentExecutor {
 
             } catch (PaymentAlreadyExistException e) {
                 resp = String.format(RESPONSE_TEMPLATE, "<CODE>8</CODE><MESSAGE>PAYMENT ALREADY REGISTERED</MESSAGE>");
+            } catch (PaymentInProgressException e) {
+                resp = String.format(RESPONSE_TEMPLATE, "<CODE>1</CODE><MESSAGE>TEMPORARY ERROR</MESSAGE>");
             } catch (AccountNotFoundException | InvalidPaymentSystemException e) {
                 resp = String.format(RESPONSE_TEMPLATE, "<CODE>5</CODE><MESSAGE>BAD REQUEST</MESSAGE>");
             }
@@ -8,6 +8,7 @@ import com.gracelogic.platform.payment.dto.PaymentExecutionRequestDTO;
 import com.gracelogic.platform.payment.dto.PaymentExecutionResultDTO;
 import com.gracelogic.platform.payment.dto.ProcessPaymentRequest;
 import com.gracelogic.platform.payment.dto.yandex.kassa.*;
+import com.gracelogic.platform.payment.exception.PaymentAlreadyExistException;
 import com.gracelogic.platform.payment.exception.PaymentExecutionException;
 import com.gracelogic.platform.payment.model.PaymentSystem;
 import com.gracelogic.platform.property.service.PropertyService;
@@ -74,8 +75,15 @@ public class YandexKassaPaymentExecutor implements PaymentExecutor {
             receiptDTO.setCustomer(customerDTO);
         }
 
+        CloseableHttpClient httpClient;
         try {
-            YandexKassaPaymentDTO result = createPayment(paymentDTO, params.get(PARAMETER_CLIENT_ID), params.get(PARAMETER_SECRET_KEY));
+            httpClient = context.getBean(HttpClientRegistry.class).getHttpClient(HttpClientRegistry.YANDEX_KASSA);
+        } catch (Exception e) {
+            throw new PaymentExecutionException(e.getMessage());
+        }
+
+        try {
+            YandexKassaPaymentDTO result = createPayment(httpClient, paymentDTO, params.get(PARAMETER_CLIENT_ID), params.get(PARAMETER_SECRET_KEY));
 
             Map<String, String> responseParams = new HashMap<>();
             responseParams.put("confirmation_url", result.getConfirmation().getConfirmation_url());
@@ -92,9 +100,11 @@ public class YandexKassaPaymentExecutor implements PaymentExecutor {
         logger.info("Yandex.Kassa callback accepted");
         PropertyService propertyService;
         PaymentService paymentService;
+        CloseableHttpClient httpClient;
         try {
             propertyService = context.getBean(PropertyService.class);
             paymentService = context.getBean(PaymentService.class);
+            httpClient = context.getBean(HttpClientRegistry.class).getHttpClient(HttpClientRegistry.YANDEX_KASSA);
         } catch (Exception e) {
             throw new PaymentExecutionException(e.getMessage());
         }
@@ -105,14 +115,18 @@ public class YandexKassaPaymentExecutor implements PaymentExecutor {
             YandexKassaNotificationDTO notification = mapper.readValue(requestBody, YandexKassaNotificationDTO.class);
             logger.info(notification.toString());
             if (StringUtils.equalsIgnoreCase(notification.getEvent(), "payment.succeeded") && !StringUtils.isEmpty(notification.getObject().getId())) {
-                YandexKassaPaymentDTO payment = getPayment(notification.getObject().getId(), propertyService.getPropertyValue("payment:yandex_kassa_shop_id"), propertyService.getPropertyValue("payment:yandex_kassa_secret"));
+                YandexKassaPaymentDTO payment = getPayment(httpClient, notification.getObject().getId(), propertyService.getPropertyValue("payment:yandex_kassa_shop_id"), propertyService.getPropertyValue("payment:yandex_kassa_secret"));
                 if (StringUtils.equalsIgnoreCase(payment.getStatus(), "succeeded")) {
                     ProcessPaymentRequest req = new ProcessPaymentRequest();
                     req.setExternalIdentifier(payment.getId());
                     req.setRegisteredAmount(Double.parseDouble(payment.getAmount().getValue()));
                     req.setPaymentUID(payment.getId());
                     req.setCurrency(payment.getAmount().getCurrency());
-                    paymentService.processPayment(paymentSystem.getId(), req, null);
+                    try {
+                        paymentService.processPayment(paymentSystem.getId(), req, null);
+                    } catch (PaymentAlreadyExistException e) {
+                        logger.info("Payment already processed: {}", req.getPaymentUID());
+                    }
                 }
                 else {
                     logger.warn("Payment not succeed, but event accepted: {}", notification.getObject().getId());
@@ -129,8 +143,7 @@ public class YandexKassaPaymentExecutor implements PaymentExecutor {
         return false;
     }
 
-    private static YandexKassaPaymentDTO createPayment(YandexKassaCreatePaymentDTO request, String shopId, String secret) throws Exception {
-        CloseableHttpClient httpClient = HttpClientUtils.getMultithreadedUnsecuredClient();
+    private static YandexKassaPaymentDTO createPayment(CloseableHttpClient httpClient, YandexKassaCreatePaymentDTO request, String shopId, String secret) throws Exception {
         String uri = API_URL + "/v3/payments";
         logger.debug("request url: {}", uri);
         HttpPost sendMethod = new HttpPost(uri);
@@ -141,25 +154,26 @@ public class YandexKassaPaymentExecutor implements PaymentExecutor {
         String requestBody = mapper.writeValueAsString(request);
         logger.debug("request body: {}", requestBody);
         sendMethod.setEntity(new StringEntity(requestBody, APPLICATION_JSON));
-        CloseableHttpResponse result = httpClient.execute(sendMethod);
-        logger.debug("response status: {}", result.getStatusLine().getStatusCode());
-        HttpEntity entity = result.getEntity();
-        String response = EntityUtils.toString(entity);
-        logger.debug("response body: {}", response);
-        return mapper.readValue(response, YandexKassaPaymentDTO.class);
+        try (CloseableHttpResponse result = httpClient.execute(sendMethod)) {
+            logger.debug("response status: {}", result.getStatusLine().getStatusCode());
+            HttpEntity entity = result.getEntity();
+            String response = EntityUtils.toString(entity);
+            logger.debug("response body: {}", response);
+            return mapper.readValue(response, YandexKassaPaymentDTO.class);
+        }
     }
 
-    private static YandexKassaPaymentDTO getPayment(String id, String shopId, String secret) throws Exception {
-        CloseableHttpClient httpClient = HttpClientUtils.getMultithreadedUnsecuredClient();
+    private static YandexKassaPaymentDTO getPayment(CloseableHttpClient httpClient, String id, String shopId, String secret) throws Exception {
         String uri = API_URL + "/v3/payments/" + id;
         logger.debug("request url: {}", uri);
         HttpGet sendMethod = new HttpGet(uri);
         sendMethod.addHeader("Authorization", "Basic " + Utils.getBase64Authorization(shopId, secret));
-        CloseableHttpResponse result = httpClient.execute(sendMethod);
-        logger.debug("response status: {}", result.getStatusLine().getStatusCode());
-        HttpEntity entity = result.getEntity();
-        String response = EntityUtils.toString(entity);
-        logger.debug("response body: {}", response);
-        return mapper.readValue(response, YandexKassaPaymentDTO.class);
+        try (CloseableHttpResponse result = httpClient.execute(sendMethod)) {
+            logger.debug("response status: {}", result.getStatusLine().getStatusCode());
+            HttpEntity entity = result.getEntity();
+            String response = EntityUtils.toString(entity);
+            logger.debug("response body: {}", response);
+            return mapper.readValue(response, YandexKassaPaymentDTO.class);
+        }
     }
 }
\ No newline at end of file
@@ -5,6 +5,7 @@ import com.gracelogic.platform.db.JsonUtils;
 import com.gracelogic.platform.payment.dto.PaymentExecutionRequestDTO;
 import com.gracelogic.platform.payment.dto.PaymentExecutionResultDTO;
 import com.gracelogic.platform.payment.dto.ProcessPaymentRequest;
+import com.gracelogic.platform.payment.exception.PaymentAlreadyExistException;
 import com.gracelogic.platform.payment.exception.PaymentExecutionException;
 import com.gracelogic.platform.payment.model.Payment;
 import com.gracelogic.platform.payment.model.PaymentSystem;
@@ -118,12 +119,15 @@ public class YandexMoneyPaymentExecutor implements PaymentExecutor {
                     paymentModel.setCurrency("RUB");
 
                     Payment result = null;
+                    boolean alreadyProcessed = false;
                     try {
                         result = paymentService.processPayment(paymentSystem.getId(), paymentModel, null);
+                    } catch (PaymentAlreadyExistException e) {
+                        alreadyProcessed = true;
                     } catch (Exception ignored) {
                     }
 
-                    if (result != null) {
+                    if (result != null || alreadyProcessed) {
                         resp = String.format(RESPONSE_TEMPLATE, action, DATE_FORMAT.format(new Date()), "0", payId, shopId);
                     } else {
                         resp = String.format(RESPONSE_TEMPLATE, action, DATE_FORMAT.format(new Date()), "100", payId, shopId);
@@ -1,5 +1,6 @@
 package com.gracelogic.platform.survey.service;
 
+import com.gracelogic.platform.db.GroupingUtils;
 import com.gracelogic.platform.db.dto.EntityListResponse;
 import com.gracelogic.platform.db.exception.ObjectNotFoundException;
 import com.gracelogic.platform.db.model.IdObject;
@@ -1453,29 +1454,24 @@ public class SurveyServiceImpl implements SurveyService {
         EntityListResponse<SurveyQuestionDTO> entityListResponse = new EntityListResponse<>(totalCount, count, page, start);
 
         List<SurveyQuestion> items = idObjectService.getList(SurveyQuestion.class, fetches, cause, params, sortField, sortDir, entityListResponse.getStartRecord(), count);
-        Set<UUID> questionIds = new HashSet<>();
-        List<SurveyAnswerVariant> variants = Collections.emptyList();
-        if (withVariants) {
-            for (SurveyQuestion surveyQuestion : items) {
-                questionIds.add(surveyQuestion.getId());
-            }
-            if (!questionIds.isEmpty()) {
-                Map<String, Object> pms = new HashMap<>();
-                pms.put("questionIds", questionIds);
-                variants = idObjectService.getList(SurveyAnswerVariant.class, null, "el.surveyQuestion.id in (:questionIds)", pms, "el.sortOrder ASC", null, null);
-            }
+        Map<UUID, List<SurveyAnswerVariant>> variants = Collections.emptyMap();
+        if (withVariants && !items.isEmpty()) {
+            Map<String, Object> pms = new HashMap<>();
+            pms.put("questionIds", GroupingUtils.getIds(items));
+            variants = GroupingUtils.groupBy(idObjectService.getList(SurveyAnswerVariant.class, null, "el.surveyQuestion.id in (:questionIds)", pms, "el.sortOrder ASC", null, null),
+                    new GroupingUtils.KeyExtractor<UUID, SurveyAnswerVariant>() {
+                        @Override
+                        public UUID getKey(SurveyAnswerVariant variant) {
+                            return variant.getSurveyQuestion().getId();
+                        }
+                    });
         }
 
         for (SurveyQuestion e : items) {
             SurveyQuestionDTO el = SurveyQuestionDTO.prepare(e);
             entityListResponse.addData(el);
-            if (withVariants) {
-                for (SurveyAnswerVariant v : variants) {
-                    if (v.getSurveyQuestion().getId().equals(e.getId())) {
-                        SurveyAnswerVariantDTO dto = SurveyAnswerVariantDTO.prepare(v);
-                        el.getAnswerVariants().add(dto);
-                    }
-                }
+            for (SurveyAnswerVariant v : GroupingUtils.getGroup(variants, e.getId())) {
+                el.getAnswerVariants().add(SurveyAnswerVariantDTO.prepare(v));
             }
         }
 
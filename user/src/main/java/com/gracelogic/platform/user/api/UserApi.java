@@ -7,11 +7,14 @@ import com.gracelogic.platform.localization.service.LocaleHolder;
 import com.gracelogic.platform.user.Path;
 import com.gracelogic.platform.user.PlatformRole;
 import com.gracelogic.platform.user.dto.SignUpDTO;
+import com.gracelogic.platform.user.dto.UserImportResultDTO;
 import com.gracelogic.platform.user.dto.UserDTO;
 import com.gracelogic.platform.user.exception.CustomLocalizedException;
 import com.gracelogic.platform.user.exception.InvalidIdentifierException;
 import com.gracelogic.platform.user.exception.InvalidPassphraseException;
 import com.gracelogic.platform.user.model.User;
+import com.gracelogic.platform.user.service.UserImportReader;
+import com.gracelogic.platform.user.service.UserImportService;
 import com.gracelogic.platform.user.service.UserLifecycleService;
 import com.gracelogic.platform.user.service.UserService;
 import com.gracelogic.platform.web.dto.EmptyResponse;
@@ -29,11 +32,10 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.UUID;
+import java.util.*;
 
 @Controller
 @RequestMapping(value = Path.API_USER)
@@ -55,6 +57,9 @@ public class UserApi extends AbstractAuthorizedController {
     @Autowired
     private UserLifecycleService lifecycleService;
 
+    @Autowired
+    private UserImportService userImportService;
+
     @Autowired
     private IdObjectService idObjectService;
 
@@ -178,6 +183,34 @@ public class UserApi extends AbstractAuthorizedController {
         }
     }
 
+    @ApiOperation(
+            value = "importUsers",
+            notes = "Import users from CSV with header row (text/csv) or from JSON array of sign up objects (application/json)",
+            response = UserImportResultDTO.class
+    )
+    @ApiResponses({
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 401, message = "Unauthorized", response = ErrorResponse.class),
+            @ApiResponse(code = 400, message = "Failed to import users", response = ErrorResponse.class),
+            @ApiResponse(code = 500, message = "Internal Server Error", response = ErrorResponse.class)})
+    @PreAuthorize("hasAuthority('USER:SAVE')")
+    @RequestMapping(method = RequestMethod.POST, value = "/import", consumes = {"text/csv", "application/json"})
+    @ResponseBody
+    public ResponseEntity importUsers(@ApiParam(name = "roleIds", value = "roleIds") @RequestParam(value = "roleIds", required = false) List<UUID> roleIds,
+                                      @ApiParam(name = "sendVerificationCodes", value = "sendVerificationCodes") @RequestParam(value = "sendVerificationCodes", required = false, defaultValue = "true") Boolean sendVerificationCodes,
+                                      HttpServletRequest request) {
+        try {
+            UserImportReader reader = StringUtils.containsIgnoreCase(request.getContentType(), "csv") ?
+                    UserImportReader.csv(request.getInputStream()) : UserImportReader.json(request.getInputStream());
+            UserImportResultDTO result = userImportService.importUsers(reader, roleIds != null ? roleIds : Collections.<UUID>emptyList(), sendVerificationCodes);
+            return new ResponseEntity<>(result, HttpStatus.OK);
+        } catch (ObjectNotFoundException e) {
+            return new ResponseEntity<>(new ErrorResponse("db.NOT_FOUND", dbMessageSource.getMessage("db.NOT_FOUND", null, LocaleHolder.getLocale())), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>(new ErrorResponse("common.UNEXPECTED_ERROR", messageSource.getMessage("common.UNEXPECTED_ERROR", null, LocaleHolder.getLocale())), HttpStatus.BAD_REQUEST);
+        }
+    }
+
     @ApiOperation(
             value = "deleteUser",
             notes = "Delete user",
@@ -0,0 +1,14 @@
+package com.gracelogic.platform.user.condition;
+
+public class OnLocalSessionRegistryConditional extends SessionRegistryCondition {
+
+    @Override
+    public String registryName() {
+        return "local";
+    }
+
+    @Override
+    public String databaseName() {
+        return "mssql";
+    }
+}
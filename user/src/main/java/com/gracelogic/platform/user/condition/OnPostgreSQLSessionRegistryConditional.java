@@ -0,0 +1,14 @@
+package com.gracelogic.platform.user.condition;
+
+public class OnPostgreSQLSessionRegistryConditional extends SessionRegistryCondition {
+
+    @Override
+    public String registryName() {
+        return "postgres";
+    }
+
+    @Override
+    public String databaseName() {
+        return "postgres";
+    }
+}
@@ -0,0 +1,17 @@
+package com.gracelogic.platform.user.condition;
+
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Matches when optional platform-task module is on the classpath.
+ */
+public class OnTaskConditional implements Condition {
+
+    @Override
+    public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        return ClassUtils.isPresent("com.gracelogic.platform.task.service.TaskExecutor", context.getClassLoader());
+    }
+}
@@ -0,0 +1,24 @@
+package com.gracelogic.platform.user.condition;
+
+import com.gracelogic.platform.db.condition.DatabaseCondition;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+/**
+ * Selects SessionRegistry implementation by user.session_registry environment property: "local", "postgres"
+ * or any other value to register none and provide own implementation. Without the property it follows the database dialect.
+ */
+public abstract class SessionRegistryCondition extends DatabaseCondition {
+
+    public abstract String registryName();
+
+    @Override
+    public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+        String registry = context.getEnvironment().getProperty("user.session_registry");
+        if (!StringUtils.isEmpty(registry)) {
+            return registryName().equalsIgnoreCase(registry);
+        }
+        return super.matches(context, metadata);
+    }
+}
@@ -1,15 +1,25 @@
 package com.gracelogic.platform.user.dao;
 
 import com.gracelogic.platform.db.dao.BaseDao;
-import com.gracelogic.platform.user.model.Identifier;
+import com.gracelogic.platform.user.dto.UserSessionDTO;
+import com.gracelogic.platform.user.model.*;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.PreparedStatement;
+import java.sql.Types;
 import java.util.*;
+import java.util.regex.Pattern;
 
 public abstract class AbstractUserDaoImpl extends BaseDao implements UserDao {
     private static Logger logger = LoggerFactory.getLogger(AbstractUserDaoImpl.class);
 
+    protected static final String USER_SESSION_COLUMNS = "id, created_dt, changed_dt, session_id, session_created_dt, max_inactive_interval, " +
+            "last_access_dt, user_id, auth_ip, is_valid, user_agent, identifier_id";
+
+    private static final Pattern PLAIN_FIELD_KEY = Pattern.compile("[A-Za-z0-9_]{1,64}");
+
     @Override
     public Identifier findIdentifier(UUID identifierTypeId, String identifierValue, boolean enrich) {
         String query = "select el from Identifier el " +
@@ -31,4 +41,119 @@ public abstract class AbstractUserDaoImpl extends BaseDao implements UserDao {
         }
         return null;
     }
-}
+
+    @Override
+    public void upsertUserSessions(final Collection<UserSessionDTO> sessions) {
+        Session session = getEntityManager().unwrap(Session.class);
+        final String tableName = getTableName(UserSession.class);
+
+        session.doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(getUpsertUserSessionQuery(tableName))) {
+                for (UserSessionDTO userSession : sessions) {
+                    int i = 1;
+                    setUuid(ps, i++, userSession.getId());
+                    setDate(ps, i++, userSession.getCreated());
+                    setDate(ps, i++, userSession.getChanged());
+                    ps.setString(i++, userSession.getSessionId());
+                    setDate(ps, i++, userSession.getSessionCreatedDt());
+                    if (userSession.getMaxInactiveInterval() != null) {
+                        ps.setLong(i++, userSession.getMaxInactiveInterval());
+                    } else {
+                        ps.setNull(i++, Types.BIGINT);
+                    }
+                    setDate(ps, i++, userSession.getLastAccessDt());
+                    setUuid(ps, i++, userSession.getUserId());
+                    ps.setString(i++, userSession.getAuthIp());
+                    ps.setBoolean(i++, userSession.getValid() != null && userSession.getValid());
+                    ps.setString(i++, userSession.getUserAgent());
+                    setUuid(ps, i, userSession.getIdentifierId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        });
+    }
+
+    @Override
+    public void insertUsers(final Collection<User> users, final Collection<Identifier> identifiers, final Collection<Passphrase> passphrases, final Collection<UserRole> userRoles) {
+        Session session = getEntityManager().unwrap(Session.class);
+        final String userTable = getTableName(User.class);
+        final String identifierTable = getTableName(Identifier.class);
+        final String passphraseTable = getTableName(Passphrase.class);
+        final String userRoleTable = getTableName(UserRole.class);
+
+        session.doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement("INSERT INTO " + userTable +
+                    " (id, created_dt, changed_dt, is_approved, is_blocked, fields, locale) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                for (User user : users) {
+                    setUuid(ps, 1, user.getId());
+                    setDate(ps, 2, user.getCreated());
+                    setDate(ps, 3, user.getChanged());
+                    ps.setBoolean(4, user.getApproved());
+                    ps.setBoolean(5, user.getBlocked());
+                    setJson(ps, 6, user.getFields());
+                    ps.setString(7, user.getLocale());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+
+            try (PreparedStatement ps = connection.prepareStatement("INSERT INTO " + identifierTable +
+                    " (id, created_dt, changed_dt, value, is_verified, is_primary, identifier_type_id, user_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (Identifier identifier : identifiers) {
+                    setUuid(ps, 1, identifier.getId());
+                    setDate(ps, 2, identifier.getCreated());
+                    setDate(ps, 3, identifier.getChanged());
+                    ps.setString(4, identifier.getValue());
+                    ps.setBoolean(5, identifier.getVerified());
+                    ps.setBoolean(6, identifier.getPrimary());
+                    setUuid(ps, 7, identifier.getIdentifierType().getId());
+                    setUuid(ps, 8, identifier.getUser().getId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+
+            try (PreparedStatement ps = connection.prepareStatement("INSERT INTO " + passphraseTable +
+                    " (id, created_dt, changed_dt, value, salt, user_id, passphrase_type_id, passphrase_state_id, reference_object_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                for (Passphrase passphrase : passphrases) {
+                    setUuid(ps, 1, passphrase.getId());
+                    setDate(ps, 2, passphrase.getCreated());
+                    setDate(ps, 3, passphrase.getChanged());
+                    ps.setString(4, passphrase.getValue());
+                    ps.setString(5, passphrase.getSalt());
+                    setUuid(ps, 6, passphrase.getUser().getId());
+                    setUuid(ps, 7, passphrase.getPassphraseType().getId());
+                    setUuid(ps, 8, passphrase.getPassphraseState().getId());
+                    setUuid(ps, 9, passphrase.getReferenceObjectId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+
+            try (PreparedStatement ps = connection.prepareStatement("INSERT INTO " + userRoleTable +
+                    " (id, created_dt, changed_dt, user_id, role_id) VALUES (?, ?, ?, ?, ?)")) {
+                for (UserRole userRole : userRoles) {
+                    setUuid(ps, 1, userRole.getId());
+                    setDate(ps, 2, userRole.getCreated());
+                    setDate(ps, 3, userRole.getChanged());
+                    setUuid(ps, 4, userRole.getUser().getId());
+                    setUuid(ps, 5, userRole.getRole().getId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        });
+    }
+
+    /**
+     * Query must take parameters in USER_SESSION_COLUMNS order.
+     */
+    protected abstract String getUpsertUserSessionQuery(String tableName);
+
+    /**
+     * Field keys of letters, digits and underscores only can be written into SQL as literals.
+     */
+    protected static boolean isPlainFieldKey(String key) {
+        return key != null && PLAIN_FIELD_KEY.matcher(key).matches();
+    }}
@@ -1,8 +1,11 @@
 package com.gracelogic.platform.user.dao;
 
 
+import com.gracelogic.platform.user.dto.UserSessionDTO;
 import com.gracelogic.platform.user.model.Identifier;
+import com.gracelogic.platform.user.model.Passphrase;
 import com.gracelogic.platform.user.model.User;
+import com.gracelogic.platform.user.model.UserRole;
 
 import java.util.*;
 
@@ -11,7 +14,54 @@ public interface UserDao {
 
     List<User> getUsers(String identifierValue, Boolean approved, Boolean blocked, Map<String, String> fields, String sortField, String sortDir, Integer startRecord, Integer recordsOnPage);
 
+    /**
+     * Returns user id, session id and created date of the last valid session of every user.
+     */
     List<Object[]> getLastActiveUsersSessions();
 
     Identifier findIdentifier(UUID identifierTypeId, String identifierValue, boolean enrich);
+
+    /**
+     * Inserts or updates sessions by session id with JDBC batches. User, identifier, address and user agent
+     * are written only when the session row is created.
+     */
+    void upsertUserSessions(Collection<UserSessionDTO> sessions);
+
+    /**
+     * Blocks at most limit users whose block date has come. Returns number of blocked users.
+     */
+    int blockExpiredUsers(Date currentTime, int limit);
+
+    /**
+     * Archives at most limit actual passphrases that are older than lifetime of their type.
+     */
+    int archiveExpiredPassphrases(Date currentTime, int limit);
+
+    /**
+     * Deactivates at most limit active tokens without requests since lastRequestBefore.
+     */
+    int deactivateExpiredTokens(Date lastRequestBefore, Date currentTime, int limit);
+
+    /**
+     * Deletes at most limit inactive tokens that were changed before changedBefore.
+     */
+    int deleteInactiveTokens(Date changedBefore, int limit);
+
+    /**
+     * Deletes at most limit unverified non-primary identifiers created before createdBefore that are not referenced
+     * by tokens, sessions or auth attempts.
+     */
+    int deleteUnverifiedIdentifiers(Date createdBefore, int limit);
+
+    /**
+     * Prepares user search indexes, may take long on a large table and is expected to run in a maintenance window.
+     * On PostgreSQL fields are converted to jsonb and indexed with GIN, so field keys are ignored. On MSSQL an indexed
+     * computed column is added for every field key.
+     */
+    void createSearchIndexes(Collection<String> fieldKeys);
+
+    /**
+     * Inserts new users with their identifiers, passphrases and roles by JDBC batches. Ids must be assigned.
+     */
+    void insertUsers(Collection<User> users, Collection<Identifier> identifiers, Collection<Passphrase> passphrases, Collection<UserRole> userRoles);
 }
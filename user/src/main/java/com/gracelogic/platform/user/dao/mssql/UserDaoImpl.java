@@ -2,7 +2,8 @@ package com.gracelogic.platform.user.dao.mssql;
 
 import com.gracelogic.platform.db.condition.OnMSSQLServerConditional;
 import com.gracelogic.platform.user.dao.AbstractUserDaoImpl;
-import com.gracelogic.platform.user.model.User;
+import com.gracelogic.platform.user.service.DataConstants;
+import com.gracelogic.platform.user.model.*;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,33 +21,11 @@ public class UserDaoImpl extends AbstractUserDaoImpl {
     @Override
     public Integer getUsersCount(String identifierValue, Boolean approved, Boolean blocked, Map<String, String> fields) {
         Integer count = null;
-        StringBuilder queryStr = new StringBuilder("select count(ID) from {h-schema}cmn_user el " +
-                "inner join {h-schema}cmn_identifier iden on el.id = iden.user_id where 1=1 ");
+        StringBuilder queryStr = new StringBuilder("select count(*) from {h-schema}cmn_user el where 1=1 ");
 
         Map<String, Object> params = new HashMap<>();
-        if (!StringUtils.isEmpty(identifierValue)) {
-            queryStr.append("and iden.value = :identifierValue ");
-            params.put("identifierValue", identifierValue);
-        }
-        if (approved != null) {
-            queryStr.append("and el.is_approved = :approved ");
-            params.put("approved", approved);
-        }
-        if (blocked != null) {
-            queryStr.append("and el.is_blocked = :blocked ");
-            params.put("blocked", blocked);
-        }
-        if (fields != null && !fields.isEmpty()) {
-            int i = 0;
-            for (String key : fields.keySet()) {
-                i++;
-                queryStr.append(String.format("and JSON_VALUE(el.fields, :key_%d) like val_%d ", i, i));
-//                queryStr.append(String.format("and JSON_VALUE(el.fields,'$.%s') like '%s' ", key, fields.get(key)));
+        appendFilterClause(queryStr, params, identifierValue, approved, blocked, fields);
 
-                params.put("key_" + i, "$." + key);
-                params.put("val_" + i, fields.get(key));
-            }
-        }
         try {
             Query query = getEntityManager().createNativeQuery(queryStr.toString());
 
@@ -63,7 +42,6 @@ public class UserDaoImpl extends AbstractUserDaoImpl {
     }
 
     @Override
-    //public List<User> getUsers(String phone, String email, Boolean approved, Boolean blocked, Map<String, String> fields, String sortField, String sortDir, Integer startRecord, Integer recordsOnPage) {
     public List<User> getUsers(String identifierValue, Boolean approved, Boolean blocked, Map<String, String> fields, String sortField, String sortDir, Integer startRecord, Integer recordsOnPage) {
         List<String> availableSortingFields = Arrays.asList("el.id", "el.created_dt", "el.changed_dt", "el.is_active", "el.is_blocked", "el.is_approved", "el.blocked_dt", "el.blocked_by_user_id", "el.last_visit_dt", "el.last_visit_ip");
         if (!availableSortingFields.contains(StringUtils.lowerCase(sortField))) {
@@ -71,35 +49,14 @@ public class UserDaoImpl extends AbstractUserDaoImpl {
         }
 
         List<User> users = Collections.emptyList();
-        StringBuilder queryStr = new StringBuilder("select * from {h-schema}cmn_user el " +
-                "inner join {h-schema}cmn_identifier iden on el.id = iden.user_id where 1=1 ");
+        StringBuilder queryStr = new StringBuilder("select el.* from {h-schema}cmn_user el where 1=1 ");
 
         Map<String, Object> params = new HashMap<>();
-        if (!StringUtils.isEmpty(identifierValue)) {
-            queryStr.append("and iden.value = :identifierValue ");
-            params.put("identifierValue", identifierValue);
-        }
-        if (approved != null) {
-            queryStr.append("and el.is_approved = :approved ");
-            params.put("approved", approved);
-        }
-        if (blocked != null) {
-            queryStr.append("and el.is_blocked = :blocked ");
-            params.put("blocked", blocked);
-        }
-        if (fields != null && !fields.isEmpty()) {
-            int i = 0;
-            for (String key : fields.keySet()) {
-                i++;
-                queryStr.append(String.format("and JSON_VALUE(el.fields, :key_%d) like val_%d ", i, i));
-//                queryStr.append(String.format("and JSON_VALUE(el.fields,'$.%s') like '%s' ", key, fields.get(key)));
-
-                params.put("key_" + i, "$." + key);
-                params.put("val_" + i, fields.get(key));
-            }
-        }
-
+        appendFilterClause(queryStr, params, identifierValue, approved, blocked, fields);
         appendSortClause(queryStr, sortField, sortDir);
+        if (!StringUtils.equalsIgnoreCase(sortField, "el.id")) {
+            queryStr.append(", el.id ");
+        }
 
         try {
             Query query = getEntityManager().createNativeQuery(queryStr.toString(), User.class);
@@ -119,13 +76,47 @@ public class UserDaoImpl extends AbstractUserDaoImpl {
         return users;
     }
 
+    /**
+     * Field path is written as a literal for plain keys so the optimizer can match the expression with the indexed
+     * computed column created by createSearchIndexes. Other keys are passed as a parameter and are not indexed.
+     */
+    private static void appendFilterClause(StringBuilder queryStr, Map<String, Object> params, String identifierValue, Boolean approved, Boolean blocked, Map<String, String> fields) {
+        if (!StringUtils.isEmpty(identifierValue)) {
+            queryStr.append("and exists (select 1 from {h-schema}cmn_identifier iden where iden.user_id = el.id and iden.value = :identifierValue) ");
+            params.put("identifierValue", identifierValue);
+        } else {
+            queryStr.append("and exists (select 1 from {h-schema}cmn_identifier iden where iden.user_id = el.id) ");
+        }
+        if (approved != null) {
+            queryStr.append("and el.is_approved = :approved ");
+            params.put("approved", approved);
+        }
+        if (blocked != null) {
+            queryStr.append("and el.is_blocked = :blocked ");
+            params.put("blocked", blocked);
+        }
+        if (fields != null && !fields.isEmpty()) {
+            int i = 0;
+            for (String key : fields.keySet()) {
+                i++;
+                if (isPlainFieldKey(key)) {
+                    queryStr.append(String.format("and JSON_VALUE(el.fields, '$.%s') like :val_%d ", key, i));
+                } else {
+                    queryStr.append(String.format("and JSON_VALUE(el.fields, :key_%d) like :val_%d ", i, i));
+                    params.put("key_" + i, "$." + key);
+                }
+                params.put("val_" + i, fields.get(key));
+            }
+        }
+    }
+
     @Override
     public List<Object[]> getLastActiveUsersSessions() {
         List<Object[]> result = Collections.emptyList();
 
         String queryStr =
                 "SELECT " +
-                "  CAST(x.user_id AS text) as user_id, x.session_id " +
+                "  CAST(x.user_id AS text) as user_id, x.session_id, x.created_dt " +
                 "FROM ( " +
                 "  SELECT " +
                 "    ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY created_dt desc) AS r, " +
@@ -145,4 +136,99 @@ public class UserDaoImpl extends AbstractUserDaoImpl {
 
         return result;
     }
+
+    /**
+     * UPDATE TOP and DELETE TOP with READPAST keep each chunk below the lock escalation threshold and skip rows
+     * locked by other nodes.
+     */
+    @Override
+    public int blockExpiredUsers(Date currentTime, int limit) {
+        Query query = getEntityManager().createNativeQuery(
+                "UPDATE TOP (:limit) " + getTableName(User.class) + " WITH (ROWLOCK, READPAST) " +
+                "SET is_blocked = 1, blocked_dt = :currentTime, changed_dt = :currentTime " +
+                "WHERE is_blocked = 0 AND block_after_dt <= :currentTime");
+        query.setParameter("currentTime", currentTime);
+        query.setParameter("limit", limit);
+        return query.executeUpdate();
+    }
+
+    @Override
+    public int archiveExpiredPassphrases(Date currentTime, int limit) {
+        Query query = getEntityManager().createNativeQuery(
+                "UPDATE TOP (:limit) p SET passphrase_state_id = :archive, changed_dt = :currentTime " +
+                "FROM " + getTableName(Passphrase.class) + " p WITH (ROWLOCK, READPAST) " +
+                "INNER JOIN " + getTableName(PassphraseType.class) + " t ON t.id = p.passphrase_type_id " +
+                "WHERE p.passphrase_state_id = :actual AND t.lifetime > 0 " +
+                "AND DATEADD(second, t.lifetime / 1000, p.created_dt) < :currentTime");
+        query.setParameter("archive", DataConstants.PassphraseStates.ARCHIVE.getValue().toString());
+        query.setParameter("actual", DataConstants.PassphraseStates.ACTUAL.getValue().toString());
+        query.setParameter("currentTime", currentTime);
+        query.setParameter("limit", limit);
+        return query.executeUpdate();
+    }
+
+    @Override
+    public int deactivateExpiredTokens(Date lastRequestBefore, Date currentTime, int limit) {
+        Query query = getEntityManager().createNativeQuery(
+                "UPDATE TOP (:limit) " + getTableName(Token.class) + " WITH (ROWLOCK, READPAST) " +
+                "SET is_active = 0, changed_dt = :currentTime " +
+                "WHERE is_active = 1 AND COALESCE(last_request_dt, created_dt) < :lastRequestBefore");
+        query.setParameter("lastRequestBefore", lastRequestBefore);
+        query.setParameter("currentTime", currentTime);
+        query.setParameter("limit", limit);
+        return query.executeUpdate();
+    }
+
+    @Override
+    public int deleteInactiveTokens(Date changedBefore, int limit) {
+        Query query = getEntityManager().createNativeQuery(
+                "DELETE TOP (:limit) FROM " + getTableName(Token.class) + " WITH (ROWLOCK, READPAST) " +
+                "WHERE is_active = 0 AND changed_dt < :changedBefore");
+        query.setParameter("changedBefore", changedBefore);
+        query.setParameter("limit", limit);
+        return query.executeUpdate();
+    }
+
+    @Override
+    public int deleteUnverifiedIdentifiers(Date createdBefore, int limit) {
+        Query query = getEntityManager().createNativeQuery(
+                "DELETE TOP (:limit) i FROM " + getTableName(Identifier.class) + " i WITH (ROWLOCK, READPAST) " +
+                "WHERE i.is_verified = 0 AND i.is_primary = 0 AND i.created_dt < :createdBefore " +
+                "AND NOT EXISTS (SELECT 1 FROM " + getTableName(Token.class) + " t WHERE t.identifier_id = i.id) " +
+                "AND NOT EXISTS (SELECT 1 FROM " + getTableName(UserSession.class) + " s WHERE s.identifier_id = i.id) " +
+                "AND NOT EXISTS (SELECT 1 FROM " + getTableName(IncorrectAuthAttempt.class) + " a WHERE a.identifier_id = i.id)");
+        query.setParameter("createdBefore", createdBefore);
+        query.setParameter("limit", limit);
+        return query.executeUpdate();
+    }
+
+    @Override
+    public void createSearchIndexes(Collection<String> fieldKeys) {
+        String tableName = getTableName(User.class);
+        for (String key : fieldKeys) {
+            if (!isPlainFieldKey(key)) {
+                logger.warn("Skipping user field that can not be indexed: {}", key);
+                continue;
+            }
+            String column = "fields_" + StringUtils.lowerCase(key);
+            //Column and index are created by separate batches, otherwise the index batch does not compile
+            getEntityManager().createNativeQuery(String.format("IF COL_LENGTH('%s', '%s') IS NULL " +
+                    "ALTER TABLE {h-schema}cmn_user ADD %s AS JSON_VALUE(fields, '$.%s')", tableName, column, column, key)).executeUpdate();
+            getEntityManager().createNativeQuery(String.format("IF NOT EXISTS (SELECT 1 FROM sys.indexes WHERE name = 'idx_cmn_user_%s') " +
+                    "CREATE INDEX idx_cmn_user_%s ON {h-schema}cmn_user (%s)", column, column, column)).executeUpdate();
+        }
+    }
+
+    @Override
+    protected String getUpsertUserSessionQuery(String tableName) {
+        return "MERGE " + tableName + " WITH (HOLDLOCK) AS t " +
+                "USING (VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)) AS s (" + USER_SESSION_COLUMNS + ") " +
+                "ON t.session_id = s.session_id " +
+                "WHEN MATCHED THEN UPDATE SET " +
+                "  changed_dt = s.changed_dt, session_created_dt = s.session_created_dt, " +
+                "  max_inactive_interval = s.max_inactive_interval, last_access_dt = s.last_access_dt, is_valid = s.is_valid " +
+                "WHEN NOT MATCHED THEN INSERT (" + USER_SESSION_COLUMNS + ") " +
+                "VALUES (s.id, s.created_dt, s.changed_dt, s.session_id, s.session_created_dt, s.max_inactive_interval, " +
+                "  s.last_access_dt, s.user_id, s.auth_ip, s.is_valid, s.user_agent, s.identifier_id);";
+    }
 }
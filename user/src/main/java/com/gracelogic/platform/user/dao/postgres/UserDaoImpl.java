@@ -1,8 +1,10 @@
 package com.gracelogic.platform.user.dao.postgres;
 
+import com.gracelogic.platform.db.JsonUtils;
 import com.gracelogic.platform.db.condition.OnPostgreSQLConditional;
 import com.gracelogic.platform.user.dao.AbstractUserDaoImpl;
-import com.gracelogic.platform.user.model.User;
+import com.gracelogic.platform.user.service.DataConstants;
+import com.gracelogic.platform.user.model.*;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,31 +23,10 @@ public class UserDaoImpl extends AbstractUserDaoImpl {
     @Override
     public Integer getUsersCount(String identifierValue, Boolean approved, Boolean blocked, Map<String, String> fields) {
         BigInteger count = null;
-        StringBuilder queryStr = new StringBuilder("select count(DISTINCT el.ID) from {h-schema}cmn_user el " +
-                "inner join {h-schema}cmn_identifier iden on el.id = iden.user_id where 1=1 ");
+        StringBuilder queryStr = new StringBuilder("select count(*) from {h-schema}cmn_user el where 1=1 ");
 
         Map<String, Object> params = new HashMap<>();
-        if (!StringUtils.isEmpty(identifierValue)) {
-            queryStr.append("and iden.value = :identifierValue ");
-            params.put("identifierValue", identifierValue);
-        }
-        if (approved != null) {
-            queryStr.append("and el.is_approved = :approved ");
-            params.put("approved", approved);
-        }
-        if (blocked != null) {
-            queryStr.append("and el.is_blocked = :blocked ");
-            params.put("blocked", blocked);
-        }
-        if (fields != null && !fields.isEmpty()) {
-            int i = 0;
-            for (String key : fields.keySet()) {
-                i++;
-                queryStr.append(String.format("and el.fields ->> :key_%d = :val_%d ", i, i));
-                params.put("key_" + i, key);
-                params.put("val_" + i, fields.get(key));
-            }
-        }
+        appendFilterClause(queryStr, params, identifierValue, approved, blocked, fields);
 
         try {
             Query query = getEntityManager().createNativeQuery(queryStr.toString());
@@ -70,33 +51,14 @@ public class UserDaoImpl extends AbstractUserDaoImpl {
         }
 
         List<User> users = Collections.emptyList();
-        StringBuilder queryStr = new StringBuilder(String.format("select DISTINCT ON (%s,  el.id) * from {h-schema}cmn_user el ", sortField) +
-                "inner join {h-schema}cmn_identifier iden on el.id = iden.user_id  where 1=1 ");
+        StringBuilder queryStr = new StringBuilder("select el.* from {h-schema}cmn_user el where 1=1 ");
 
         Map<String, Object> params = new HashMap<>();
-        if (!StringUtils.isEmpty(identifierValue)) {
-            queryStr.append("and iden.value = :identifierValue ");
-            params.put("identifierValue", identifierValue);
-        }
-        if (approved != null) {
-            queryStr.append("and el.is_approved = :approved ");
-            params.put("approved", approved);
-        }
-        if (blocked != null) {
-            queryStr.append("and el.is_blocked = :blocked ");
-            params.put("blocked", blocked);
-        }
-        if (fields != null && !fields.isEmpty()) {
-            int i = 0;
-            for (String key : fields.keySet()) {
-                i++;
-                queryStr.append(String.format("and el.fields ->> :key_%d = :val_%d ", i, i));
-                params.put("key_" + i, key);
-                params.put("val_" + i, fields.get(key));
-            }
-        }
-
+        appendFilterClause(queryStr, params, identifierValue, approved, blocked, fields);
         appendSortClause(queryStr, sortField, sortDir);
+        if (!StringUtils.equalsIgnoreCase(sortField, "el.id")) {
+            queryStr.append(", el.id ");
+        }
 
         try {
             Query query = getEntityManager().createNativeQuery(queryStr.toString(), User.class);
@@ -115,13 +77,39 @@ public class UserDaoImpl extends AbstractUserDaoImpl {
         return users;
     }
 
+    /**
+     * Identifiers are matched by semi-join so users are not multiplied and no DISTINCT is needed. Fields are matched
+     * by jsonb containment which is served by the GIN index created by createSearchIndexes. The cast is a no-op once
+     * the column is converted to jsonb and keeps the query working on a json column before that.
+     */
+    private static void appendFilterClause(StringBuilder queryStr, Map<String, Object> params, String identifierValue, Boolean approved, Boolean blocked, Map<String, String> fields) {
+        if (!StringUtils.isEmpty(identifierValue)) {
+            queryStr.append("and exists (select 1 from {h-schema}cmn_identifier iden where iden.user_id = el.id and iden.value = :identifierValue) ");
+            params.put("identifierValue", identifierValue);
+        } else {
+            queryStr.append("and exists (select 1 from {h-schema}cmn_identifier iden where iden.user_id = el.id) ");
+        }
+        if (approved != null) {
+            queryStr.append("and el.is_approved = :approved ");
+            params.put("approved", approved);
+        }
+        if (blocked != null) {
+            queryStr.append("and el.is_blocked = :blocked ");
+            params.put("blocked", blocked);
+        }
+        if (fields != null && !fields.isEmpty()) {
+            queryStr.append("and CAST(el.fields AS jsonb) @> CAST(:fields AS jsonb) ");
+            params.put("fields", JsonUtils.mapToJson(fields));
+        }
+    }
+
     @Override
     public List<Object[]> getLastActiveUsersSessions() {
         List<Object[]> result = Collections.emptyList();
 
         String queryStr =
                 "SELECT " +
-                "  CAST(x.user_id AS text) as user_id, x.session_id " +
+                "  CAST(x.user_id AS text) as user_id, x.session_id, x.created_dt " +
                 "FROM ( " +
                 "  SELECT " +
                 "    ROW_NUMBER() OVER (PARTITION BY user_id ORDER BY created_dt desc) AS r, " +
@@ -141,4 +129,95 @@ public class UserDaoImpl extends AbstractUserDaoImpl {
 
         return result;
     }
+
+    @Override
+    public int blockExpiredUsers(Date currentTime, int limit) {
+        Query query = getEntityManager().createNativeQuery(
+                "UPDATE " + getTableName(User.class) + " SET is_blocked = true, blocked_dt = :currentTime, changed_dt = :currentTime " +
+                "WHERE id IN ( " +
+                "  SELECT id FROM " + getTableName(User.class) + " WHERE is_blocked = false AND block_after_dt <= :currentTime " +
+                "  LIMIT :limit FOR UPDATE SKIP LOCKED)");
+        query.setParameter("currentTime", currentTime);
+        query.setParameter("limit", limit);
+        return query.executeUpdate();
+    }
+
+    @Override
+    public int archiveExpiredPassphrases(Date currentTime, int limit) {
+        Query query = getEntityManager().createNativeQuery(
+                "UPDATE " + getTableName(Passphrase.class) + " SET passphrase_state_id = CAST(:archive AS uuid), changed_dt = :currentTime " +
+                "WHERE id IN ( " +
+                "  SELECT p.id FROM " + getTableName(Passphrase.class) + " p " +
+                "  INNER JOIN " + getTableName(PassphraseType.class) + " t ON t.id = p.passphrase_type_id " +
+                "  WHERE p.passphrase_state_id = CAST(:actual AS uuid) AND t.lifetime > 0 " +
+                "  AND p.created_dt + t.lifetime * interval '1 millisecond' < :currentTime " +
+                "  LIMIT :limit FOR UPDATE OF p SKIP LOCKED)");
+        query.setParameter("archive", DataConstants.PassphraseStates.ARCHIVE.getValue().toString());
+        query.setParameter("actual", DataConstants.PassphraseStates.ACTUAL.getValue().toString());
+        query.setParameter("currentTime", currentTime);
+        query.setParameter("limit", limit);
+        return query.executeUpdate();
+    }
+
+    @Override
+    public int deactivateExpiredTokens(Date lastRequestBefore, Date currentTime, int limit) {
+        Query query = getEntityManager().createNativeQuery(
+                "UPDATE " + getTableName(Token.class) + " SET is_active = false, changed_dt = :currentTime " +
+                "WHERE id IN ( " +
+                "  SELECT id FROM " + getTableName(Token.class) + " WHERE is_active = true " +
+                "  AND COALESCE(last_request_dt, created_dt) < :lastRequestBefore " +
+                "  LIMIT :limit FOR UPDATE SKIP LOCKED)");
+        query.setParameter("lastRequestBefore", lastRequestBefore);
+        query.setParameter("currentTime", currentTime);
+        query.setParameter("limit", limit);
+        return query.executeUpdate();
+    }
+
+    @Override
+    public int deleteInactiveTokens(Date changedBefore, int limit) {
+        Query query = getEntityManager().createNativeQuery(
+                "DELETE FROM " + getTableName(Token.class) + " WHERE id IN ( " +
+                "  SELECT id FROM " + getTableName(Token.class) + " WHERE is_active = false AND changed_dt < :changedBefore " +
+                "  LIMIT :limit FOR UPDATE SKIP LOCKED)");
+        query.setParameter("changedBefore", changedBefore);
+        query.setParameter("limit", limit);
+        return query.executeUpdate();
+    }
+
+    @Override
+    public int deleteUnverifiedIdentifiers(Date createdBefore, int limit) {
+        Query query = getEntityManager().createNativeQuery(
+                "DELETE FROM " + getTableName(Identifier.class) + " WHERE id IN ( " +
+                "  SELECT i.id FROM " + getTableName(Identifier.class) + " i " +
+                "  WHERE i.is_verified = false AND i.is_primary = false AND i.created_dt < :createdBefore " +
+                "  AND NOT EXISTS (SELECT 1 FROM " + getTableName(Token.class) + " t WHERE t.identifier_id = i.id) " +
+                "  AND NOT EXISTS (SELECT 1 FROM " + getTableName(UserSession.class) + " s WHERE s.identifier_id = i.id) " +
+                "  AND NOT EXISTS (SELECT 1 FROM " + getTableName(IncorrectAuthAttempt.class) + " a WHERE a.identifier_id = i.id) " +
+                "  LIMIT :limit FOR UPDATE OF i SKIP LOCKED)");
+        query.setParameter("createdBefore", createdBefore);
+        query.setParameter("limit", limit);
+        return query.executeUpdate();
+    }
+
+    @Override
+    public void createSearchIndexes(Collection<String> fieldKeys) {
+        Query query = getEntityManager().createNativeQuery("SELECT format_type(atttypid, atttypmod) FROM pg_attribute " +
+                "WHERE attrelid = to_regclass(:tableName) AND attname = 'fields'");
+        query.setParameter("tableName", getTableName(User.class));
+        if (StringUtils.equals((String) query.getSingleResult(), "json")) {
+            logger.info("Converting user fields to jsonb");
+            getEntityManager().createNativeQuery("ALTER TABLE {h-schema}cmn_user ALTER COLUMN fields TYPE jsonb USING CAST(fields AS jsonb)").executeUpdate();
+        }
+        getEntityManager().createNativeQuery("CREATE INDEX IF NOT EXISTS idx_cmn_user_fields ON {h-schema}cmn_user USING gin (fields jsonb_path_ops)").executeUpdate();
+    }
+
+    @Override
+    protected String getUpsertUserSessionQuery(String tableName) {
+        return "INSERT INTO " + tableName + " (" + USER_SESSION_COLUMNS + ") " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+                "ON CONFLICT (session_id) DO UPDATE SET " +
+                "  changed_dt = EXCLUDED.changed_dt, session_created_dt = EXCLUDED.session_created_dt, " +
+                "  max_inactive_interval = EXCLUDED.max_inactive_interval, last_access_dt = EXCLUDED.last_access_dt, " +
+                "  is_valid = EXCLUDED.is_valid";
+    }
 }
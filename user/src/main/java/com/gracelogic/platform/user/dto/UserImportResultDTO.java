@@ -0,0 +1,56 @@
+package com.gracelogic.platform.user.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class UserImportResultDTO {
+    private static final int MAX_ERRORS = 1000;
+
+    private int imported;
+    private int failed;
+    //Key - row number starting from 1, only the first MAX_ERRORS errors are kept
+    private Map<Integer, String> errors = new LinkedHashMap<>();
+
+    public int getImported() {
+        return imported;
+    }
+
+    public void setImported(int imported) {
+        this.imported = imported;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public Map<Integer, String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(Map<Integer, String> errors) {
+        this.errors = errors;
+    }
+
+    public void addImported(int count) {
+        imported += count;
+    }
+
+    public void addError(int row, String message) {
+        failed++;
+        if (errors.size() < MAX_ERRORS) {
+            errors.put(row, message);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "UserImportResultDTO{" +
+                "imported=" + imported +
+                ", failed=" + failed +
+                '}';
+    }
+}
@@ -2,8 +2,9 @@ package com.gracelogic.platform.user.filter;
 
 import com.gracelogic.platform.user.api.AbstractAuthorizedController;
 import com.gracelogic.platform.user.dto.AuthorizedUser;
-import com.gracelogic.platform.user.service.LastSessionHolder;
+import com.gracelogic.platform.user.service.SessionRegistry;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.support.WebApplicationContextUtils;
 
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
@@ -11,9 +12,11 @@ import javax.servlet.http.HttpSession;
 import java.io.IOException;
 
 public class LastSessionFilter extends AbstractAuthorizedController implements Filter {
+    private SessionRegistry sessionRegistry;
 
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
+        sessionRegistry = WebApplicationContextUtils.getRequiredWebApplicationContext(filterConfig.getServletContext()).getBean(SessionRegistry.class);
     }
 
     @Override
@@ -22,7 +25,7 @@ public class LastSessionFilter extends AbstractAuthorizedController implements F
             AuthorizedUser user = getUser();
             if (user != null) {
                 HttpSession session = ((HttpServletRequest) servletRequest).getSession(false);
-                if (session != null && !LastSessionHolder.isLastSession(user.getId(), session.getId())) {
+                if (session != null && !sessionRegistry.isLastSession(user.getId(), session.getId())) {
                     session.invalidate();
                     SecurityContextHolder.clearContext();
                 }
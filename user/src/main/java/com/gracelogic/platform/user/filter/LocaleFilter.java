@@ -3,14 +3,44 @@ package com.gracelogic.platform.user.filter;
 import com.gracelogic.platform.localization.service.LocaleHolder;
 import com.gracelogic.platform.user.api.AbstractAuthorizedController;
 import com.gracelogic.platform.user.dto.AuthorizedUser;
-import org.apache.commons.lang3.LocaleUtils;
+import net.jodah.expiringmap.ExpirationPolicy;
+import net.jodah.expiringmap.ExpiringMap;
 import org.apache.commons.lang3.StringUtils;
 
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Sets request locale from the authorized user or from Accept-Language header weighted by q-values.
+ * When supported locales are set, only they are chosen, otherwise the language of the best range is used.
+ * Resolved headers are cached since browsers send only a few distinct values.
+ */
 public class LocaleFilter extends AbstractAuthorizedController implements Filter {
+    private static final int MAX_CACHED_HEADER_LENGTH = 256;
+
+    //Marks headers without acceptable locale, map does not hold nulls
+    private static final Locale NOT_RESOLVED = Locale.ROOT;
+
+    private static final ExpiringMap<String, Locale> resolvedLocales = ExpiringMap.builder()
+            .maxSize(1000)
+            .expiration(1, TimeUnit.HOURS)
+            .expirationPolicy(ExpirationPolicy.ACCESSED)
+            .build();
+
+    private static volatile List<Locale> supportedLocales = Collections.emptyList();
+
+    public static void setSupportedLocales(Collection<Locale> locales) {
+        supportedLocales = locales != null ? Collections.unmodifiableList(new ArrayList<>(locales)) : Collections.<Locale>emptyList();
+        resolvedLocales.clear();
+    }
+
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
     }
@@ -19,30 +49,137 @@ public class LocaleFilter extends AbstractAuthorizedController implements Filter
     public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
         if (servletRequest instanceof HttpServletRequest) {
             final HttpServletRequest httpRequest = (HttpServletRequest) servletRequest;
-            String acceptLanguage = httpRequest.getHeader("Accept-Language");
-            String locale = null;
 
             AuthorizedUser user = getUser();
             if (user != null && !StringUtils.isEmpty(user.getLocale())) {
-                locale = user.getLocale();
-            } else if (!StringUtils.isEmpty(acceptLanguage)) {
-                try {
-                    locale = LocaleUtils.toLocale(acceptLanguage).getLanguage();
-                } catch (Exception ignored) {
-                }
-            }
-
-            if (!StringUtils.isEmpty(locale)) {
-                LocaleHolder.setLocale(locale);
+                LocaleHolder.setLocale(user.getLocale());
             } else {
-                LocaleHolder.setLocale(LocaleHolder.defaultLocale);
+                Locale locale = resolve(httpRequest.getHeader("Accept-Language"));
+                LocaleHolder.setLocale(locale != null ? locale : LocaleHolder.defaultLocale);
             }
-
-            filterChain.doFilter(servletRequest, servletResponse);
         }
+        filterChain.doFilter(servletRequest, servletResponse);
     }
 
     @Override
     public void destroy() {
     }
+
+    static Locale resolve(String acceptLanguage) {
+        if (StringUtils.isEmpty(acceptLanguage)) {
+            return null;
+        }
+        if (acceptLanguage.length() > MAX_CACHED_HEADER_LENGTH) {
+            return parse(acceptLanguage, supportedLocales);
+        }
+
+        Locale locale = resolvedLocales.get(acceptLanguage);
+        if (locale == null) {
+            locale = parse(acceptLanguage, supportedLocales);
+            if (locale == null) {
+                locale = NOT_RESOLVED;
+            }
+            resolvedLocales.put(acceptLanguage, locale);
+        }
+        return locale != NOT_RESOLVED ? locale : null;
+    }
+
+    /**
+     * Returns locale for the range with highest weight, earlier range wins on equal weights.
+     * Malformed ranges and ranges with zero weight are skipped.
+     */
+    private static Locale parse(String acceptLanguage, List<Locale> supported) {
+        Locale result = null;
+        int resultWeight = 0;
+        int start = 0;
+        while (start < acceptLanguage.length()) {
+            int end = acceptLanguage.indexOf(',', start);
+            if (end < 0) {
+                end = acceptLanguage.length();
+            }
+            String range = acceptLanguage.substring(start, end);
+            start = end + 1;
+
+            int weight = 1000;
+            int semicolon = range.indexOf(';');
+            if (semicolon >= 0) {
+                weight = parseWeight(range.substring(semicolon + 1));
+                range = range.substring(0, semicolon);
+            }
+            if (weight <= resultWeight) {
+                continue;
+            }
+
+            Locale locale = match(range.trim(), supported);
+            if (locale != null) {
+                result = locale;
+                resultWeight = weight;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns weight multiplied by 1000 or -1 when parameter is malformed. Parameters other than q are ignored.
+     */
+    private static int parseWeight(String parameters) {
+        for (String parameter : StringUtils.split(parameters, ';')) {
+            parameter = parameter.trim();
+            if (parameter.length() < 2 || Character.toLowerCase(parameter.charAt(0)) != 'q' || parameter.charAt(1) != '=') {
+                continue;
+            }
+
+            int weight = 0;
+            int scale = 1000;
+            boolean fraction = false;
+            for (int i = 2; i < parameter.length(); i++) {
+                char c = parameter.charAt(i);
+                if (c == '.' && !fraction) {
+                    fraction = true;
+                } else if (c >= '0' && c <= '9' && (!fraction || scale > 1)) {
+                    if (fraction) {
+                        scale /= 10;
+                        weight += (c - '0') * scale;
+                    } else if (i == 2) {
+                        weight = (c - '0') * 1000;
+                    } else {
+                        return -1;
+                    }
+                } else {
+                    return -1;
+                }
+            }
+            return weight <= 1000 ? weight : -1;
+        }
+        return 1000;
+    }
+
+    private static Locale match(String range, List<Locale> supported) {
+        if (range.isEmpty() || range.equals("*")) {
+            return null;
+        }
+        Locale requested = Locale.forLanguageTag(range.replace('_', '-'));
+        String language = requested.getLanguage();
+        if (language.isEmpty()) {
+            return null;
+        }
+
+        if (supported.isEmpty()) {
+            return new Locale(language);
+        }
+
+        Locale languageMatch = null;
+        for (Locale locale : supported) {
+            if (!locale.getLanguage().equals(language)) {
+                continue;
+            }
+            if (locale.getCountry().equals(requested.getCountry())) {
+                return locale;
+            }
+            if (languageMatch == null || languageMatch.getCountry().length() > locale.getCountry().length()) {
+                languageMatch = locale;
+            }
+        }
+        return languageMatch;
+    }
 }
@@ -1,22 +1,57 @@
 package com.gracelogic.platform.user.filter;
 
+import com.gracelogic.platform.user.exception.TokenExpiredException;
+import com.gracelogic.platform.user.exception.TokenNotFoundException;
 import com.gracelogic.platform.user.security.TokenBasedAuthentication;
+import net.jodah.expiringmap.ExpirationPolicy;
+import net.jodah.expiringmap.ExpiringMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.context.support.WebApplicationContextUtils;
 
 import javax.servlet.*;
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Authenticates requests by Token header. Malformed headers are rejected without a query and tokens that were not found
+ * or are inactive are remembered for a while, so floods of invalid tokens do not reach the database.
+ * Tokens are never activated again, so remembering an inactive token is safe.
+ * Failures are counted instead of logged one by one.
+ */
 public class TokenAuthFilter implements Filter {
+    private static final int INVALID_TOKENS_CACHE_SIZE = 100000;
+    private static final long INVALID_TOKENS_CACHE_PERIOD = 10;
+
+    private static Logger logger = LoggerFactory.getLogger(TokenAuthFilter.class);
 
     private FilterConfig filterConfig = null;
 
+    private volatile AuthenticationManager authenticationManager;
+
+    private final ExpiringMap<UUID, Boolean> invalidTokens = ExpiringMap.builder()
+            .maxSize(INVALID_TOKENS_CACHE_SIZE)
+            .expiration(INVALID_TOKENS_CACHE_PERIOD, TimeUnit.MINUTES)
+            .expirationPolicy(ExpirationPolicy.CREATED)
+            .build();
+
+    private final AtomicLong malformedTokens = new AtomicLong();
+    private final AtomicLong rejectedTokens = new AtomicLong();
+    private final AtomicLong failedAuthentications = new AtomicLong();
+
     @Override
     public void init(FilterConfig filterConfig) throws ServletException {
         this.filterConfig = filterConfig;
+        WebApplicationContext context = WebApplicationContextUtils.getWebApplicationContext(filterConfig.getServletContext());
+        if (context != null) {
+            authenticationManager = (AuthenticationManager) context.getBean("authenticationManager");
+        }
     }
 
     @Override
@@ -25,25 +60,7 @@ public class TokenAuthFilter implements Filter {
 
         String token = request.getHeader("Token");
         if (token != null) {
-            AuthenticationManager authenticationManager =
-                    (AuthenticationManager) WebApplicationContextUtils.
-                            getRequiredWebApplicationContext(filterConfig.getServletContext()).
-                            getBean("authenticationManager");
-
-            TokenBasedAuthentication tokenBasedAuthentication = new TokenBasedAuthentication(UUID.fromString(token));
-            tokenBasedAuthentication.setAuthenticated(false);
-            try {
-                TokenBasedAuthentication authentication = (TokenBasedAuthentication) authenticationManager.authenticate(
-                        tokenBasedAuthentication
-                );
-
-                if (authentication != null) {
-                    SecurityContextHolder.getContext().setAuthentication(authentication);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-
+            authenticate(token);
         }
         filterChain.doFilter(servletRequest, servletResponse);
     }
@@ -52,4 +69,90 @@ public class TokenAuthFilter implements Filter {
     public void destroy() {
 
     }
+
+    /**
+     * Number of Token headers that are not UUIDs.
+     */
+    public long getMalformedTokens() {
+        return malformedTokens.get();
+    }
+
+    /**
+     * Number of tokens that were not found or are inactive, including ones rejected from the cache.
+     */
+    public long getRejectedTokens() {
+        return rejectedTokens.get();
+    }
+
+    /**
+     * Number of authentications failed for other reasons.
+     */
+    public long getFailedAuthentications() {
+        return failedAuthentications.get();
+    }
+
+    private void authenticate(String token) {
+        if (!isUuid(token)) {
+            malformedTokens.incrementAndGet();
+            return;
+        }
+
+        UUID tokenId = UUID.fromString(token);
+        if (invalidTokens.containsKey(tokenId)) {
+            rejectedTokens.incrementAndGet();
+            return;
+        }
+
+        TokenBasedAuthentication tokenBasedAuthentication = new TokenBasedAuthentication(tokenId);
+        tokenBasedAuthentication.setAuthenticated(false);
+        try {
+            TokenBasedAuthentication authentication = (TokenBasedAuthentication) getAuthenticationManager().authenticate(
+                    tokenBasedAuthentication
+            );
+
+            if (authentication != null) {
+                SecurityContextHolder.getContext().setAuthentication(authentication);
+            }
+        } catch (TokenNotFoundException | TokenExpiredException e) {
+            invalidTokens.put(tokenId, Boolean.TRUE);
+            rejectedTokens.incrementAndGet();
+        } catch (Exception e) {
+            long count = failedAuthentications.incrementAndGet();
+            if (count == 1 || count % 1000 == 0) {
+                logger.warn("Token authentication failed, total failures: {}", count, e);
+            }
+        }
+    }
+
+    /**
+     * Context may be not refreshed yet when filter is initialized, then manager is resolved on first request.
+     */
+    private AuthenticationManager getAuthenticationManager() {
+        if (authenticationManager == null) {
+            authenticationManager = (AuthenticationManager) WebApplicationContextUtils.
+                    getRequiredWebApplicationContext(filterConfig.getServletContext()).
+                    getBean("authenticationManager");
+        }
+        return authenticationManager;
+    }
+
+    /**
+     * Checks canonical 8-4-4-4-12 form, so UUID.fromString never throws afterwards.
+     */
+    private static boolean isUuid(String value) {
+        if (value.length() != 36) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (Character.digit(c, 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
 }
@@ -9,7 +9,10 @@ import java.util.Date;
 import java.util.UUID;
 
 @Entity
-@Table(name = JPAProperties.TABLE_PREFIX + "IDENTIFIER")
+@Table(name = JPAProperties.TABLE_PREFIX + "IDENTIFIER", indexes = {
+        @Index(name = "IDX_" + JPAProperties.TABLE_PREFIX + "IDENTIFIER_VALUE", columnList = "VALUE"),
+        @Index(name = "IDX_" + JPAProperties.TABLE_PREFIX + "IDENTIFIER_USER", columnList = "USER_ID")
+})
 public class Identifier extends IdObject<UUID> {
     @Id
     @Column(name = ID)
@@ -9,7 +9,9 @@ import java.util.Date;
 import java.util.UUID;
 
 @Entity
-@Table(name = JPAProperties.TABLE_PREFIX + "INCORRECT_AUTH_ATTEMPT")
+@Table(name = JPAProperties.TABLE_PREFIX + "INCORRECT_AUTH_ATTEMPT", indexes = {
+        @Index(name = "IDX_" + JPAProperties.TABLE_PREFIX + "INCORRECT_AUTH_ATTEMPT_IDENTIFIER", columnList = "IDENTIFIER_ID, CREATED_DT")
+})
 public class IncorrectAuthAttempt extends IdObject<UUID> {
     @Id
     @Column(name = ID)
@@ -9,7 +9,9 @@ import java.util.Date;
 import java.util.UUID;
 
 @Entity
-@Table(name = JPAProperties.TABLE_PREFIX + "USER_SESSION")
+@Table(name = JPAProperties.TABLE_PREFIX + "USER_SESSION", indexes = {
+        @Index(name = "IDX_" + JPAProperties.TABLE_PREFIX + "USER_SESSION_SESSION_ID", columnList = "SESSION_ID", unique = true)
+})
 public class UserSession extends IdObject<UUID> {
     @Id
     @Column(name = ID)
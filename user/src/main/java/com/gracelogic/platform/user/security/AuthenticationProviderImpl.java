@@ -1,12 +1,15 @@
 package com.gracelogic.platform.user.security;
 
 import com.gracelogic.platform.db.service.IdObjectService;
+import com.gracelogic.platform.property.service.PropertyService;
 import com.gracelogic.platform.user.dto.AuthorizedUser;
 import com.gracelogic.platform.user.dto.IdentifierDTO;
 import com.gracelogic.platform.user.exception.TokenExpiredException;
 import com.gracelogic.platform.user.exception.TokenNotFoundException;
 import com.gracelogic.platform.user.model.*;
 import com.gracelogic.platform.user.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.BadCredentialsException;
@@ -26,6 +29,13 @@ public class AuthenticationProviderImpl implements AuthenticationProvider {
     @Autowired
     private IdObjectService idObjectService;
 
+    @Autowired
+    private PropertyService propertyService;
+
+    private static final long DEFAULT_TOKEN_TOUCH_INTERVAL = 60000L;
+
+    private static Logger logger = LoggerFactory.getLogger(AuthenticationProviderImpl.class);
+
     @Override
     public org.springframework.security.core.Authentication authenticate(org.springframework.security.core.Authentication authentication) throws AuthenticationException {
         if (authentication instanceof SessionBasedAuthentication) {
@@ -56,7 +66,7 @@ public class AuthenticationProviderImpl implements AuthenticationProvider {
                 throw new TokenExpiredException("Token is expired");
             }
 
-            //userService.updateTokenLastRequestDate(token);
+            touchToken(token);
 
             User user = token.getUser();
             AuthorizedUser authorizedUser = AuthorizedUser.prepare(user);
@@ -70,6 +80,25 @@ public class AuthenticationProviderImpl implements AuthenticationProvider {
         }
     }
 
+    /**
+     * Idle tokens are deactivated by last request date, it is written at most once per
+     * user:token_touch_interval ms (one minute by default) to keep token requests free of writes.
+     */
+    private void touchToken(Token token) {
+        Long interval = propertyService.getPropertyValueAsLong("user:token_touch_interval");
+        long touchInterval = interval != null && interval > 0 ? interval : DEFAULT_TOKEN_TOUCH_INTERVAL;
+        Date lastRequest = token.getLastRequest() != null ? token.getLastRequest() : token.getCreated();
+        if (lastRequest != null && System.currentTimeMillis() - lastRequest.getTime() < touchInterval) {
+            return;
+        }
+
+        try {
+            userService.updateTokenLastRequestDate(token);
+        } catch (Exception e) {
+            logger.warn("Failed to update token last request date", e);
+        }
+    }
+
     private Set<GrantedAuthority> fillAuthorities(User user, AuthorizedUser authorizedUser) {
         //Load roles & grants
         Map<String, Object> params = new HashMap<>();
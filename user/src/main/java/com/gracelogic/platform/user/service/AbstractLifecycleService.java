@@ -7,6 +7,8 @@ import com.gracelogic.platform.user.dto.UserDTO;
 import com.gracelogic.platform.user.exception.*;
 import com.gracelogic.platform.user.model.User;
 
+import java.util.Collection;
+
 public abstract class AbstractLifecycleService implements UserLifecycleService {
     protected abstract UserService getUserService();
 
@@ -15,6 +17,10 @@ public abstract class AbstractLifecycleService implements UserLifecycleService {
         return getUserService().processSignUp(signUpDTO);
     }
 
+    @Override
+    public void signUpImported(Collection<User> users) {
+    }
+
     @Override
     public void delete(User user) {
         getUserService().deleteUser(user);
@@ -0,0 +1,23 @@
+package com.gracelogic.platform.user.service;
+
+import java.util.Date;
+
+public interface AccountExpirationService {
+    int blockExpiredUsers();
+
+    int archiveExpiredPassphrases();
+
+    int expireTokens();
+
+    int deleteUnverifiedIdentifiers();
+
+    int blockExpiredUsers(Date currentTime, int limit);
+
+    int archiveExpiredPassphrases(Date currentTime, int limit);
+
+    int deactivateExpiredTokens(Date lastRequestBefore, Date currentTime, int limit);
+
+    int deleteInactiveTokens(Date changedBefore, int limit);
+
+    int deleteUnverifiedIdentifiers(Date createdBefore, int limit);
+}
@@ -0,0 +1,139 @@
+package com.gracelogic.platform.user.service;
+
+import com.gracelogic.platform.property.service.PropertyService;
+import com.gracelogic.platform.user.dao.UserDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+import java.util.function.IntSupplier;
+
+/**
+ * Account expiration jobs. Every job is a set-based statement repeated by chunks of user:expiration_batch_size rows,
+ * each chunk is committed in its own transaction so row locks are held only for the duration of one chunk.
+ */
+@Service
+public class AccountExpirationServiceImpl implements AccountExpirationService {
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private AccountExpirationService accountExpirationService;
+
+    @Autowired
+    private PropertyService propertyService;
+
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private static Logger logger = LoggerFactory.getLogger(AccountExpirationServiceImpl.class);
+
+    @Override
+    public int blockExpiredUsers() {
+        final Date currentTime = new Date();
+        final int limit = getBatchSize();
+        int total = repeat(() -> accountExpirationService.blockExpiredUsers(currentTime, limit), limit);
+        logger.info("Blocked expired users: {}", total);
+        return total;
+    }
+
+    /**
+     * Archives passphrases of types with lifetime, the same way as they are archived on access.
+     */
+    @Override
+    public int archiveExpiredPassphrases() {
+        final Date currentTime = new Date();
+        final int limit = getBatchSize();
+        int total = repeat(() -> accountExpirationService.archiveExpiredPassphrases(currentTime, limit), limit);
+        logger.info("Archived expired passphrases: {}", total);
+        return total;
+    }
+
+    /**
+     * Deactivates tokens without requests for user:token_lifetime milliseconds and deletes tokens that have been
+     * inactive for the same period. Does nothing when the property is not set.
+     */
+    @Override
+    public int expireTokens() {
+        Long tokenLifetime = propertyService.getPropertyValueAsLong("user:token_lifetime");
+        if (tokenLifetime == null || tokenLifetime <= 0) {
+            return 0;
+        }
+
+        final Date currentTime = new Date();
+        final Date before = new Date(currentTime.getTime() - tokenLifetime);
+        final int limit = getBatchSize();
+        int deactivated = repeat(() -> accountExpirationService.deactivateExpiredTokens(before, currentTime, limit), limit);
+        int deleted = repeat(() -> accountExpirationService.deleteInactiveTokens(before, limit), limit);
+        logger.info("Deactivated expired tokens: {}, deleted inactive tokens: {}", deactivated, deleted);
+        return deactivated + deleted;
+    }
+
+    /**
+     * Deletes secondary identifiers that were not verified within user:identifier_verification_period milliseconds.
+     * Does nothing when the property is not set.
+     */
+    @Override
+    public int deleteUnverifiedIdentifiers() {
+        Long verificationPeriod = propertyService.getPropertyValueAsLong("user:identifier_verification_period");
+        if (verificationPeriod == null || verificationPeriod <= 0) {
+            return 0;
+        }
+
+        final Date createdBefore = new Date(System.currentTimeMillis() - verificationPeriod);
+        final int limit = getBatchSize();
+        int total = repeat(() -> accountExpirationService.deleteUnverifiedIdentifiers(createdBefore, limit), limit);
+        logger.info("Deleted unverified identifiers: {}", total);
+        return total;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int blockExpiredUsers(Date currentTime, int limit) {
+        return userDao.blockExpiredUsers(currentTime, limit);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int archiveExpiredPassphrases(Date currentTime, int limit) {
+        return userDao.archiveExpiredPassphrases(currentTime, limit);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int deactivateExpiredTokens(Date lastRequestBefore, Date currentTime, int limit) {
+        return userDao.deactivateExpiredTokens(lastRequestBefore, currentTime, limit);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int deleteInactiveTokens(Date changedBefore, int limit) {
+        return userDao.deleteInactiveTokens(changedBefore, limit);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public int deleteUnverifiedIdentifiers(Date createdBefore, int limit) {
+        return userDao.deleteUnverifiedIdentifiers(createdBefore, limit);
+    }
+
+    /**
+     * Runs chunk until it affects fewer rows than the limit. Returns total number of affected rows.
+     */
+    private static int repeat(IntSupplier chunk, int limit) {
+        int total = 0;
+        int affected;
+        do {
+            affected = chunk.getAsInt();
+            total += affected;
+        } while (affected >= limit);
+        return total;
+    }
+
+    private int getBatchSize() {
+        Integer batchSize = propertyService.getPropertyValueAsInteger("user:expiration_batch_size");
+        return batchSize != null && batchSize > 0 ? batchSize : DEFAULT_BATCH_SIZE;
+    }
+}
@@ -0,0 +1,46 @@
+package com.gracelogic.platform.user.service;
+
+import com.gracelogic.platform.task.service.TaskExecutor;
+import com.gracelogic.platform.user.condition.OnTaskConditional;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Task executor for account expiration jobs, should be scheduled with service name accountExpirationTaskExecutor.
+ * Parameter is an optional comma separated list of jobs to run: users, passphrases, tokens, identifiers.
+ * All jobs are run when the parameter is empty.
+ */
+@Service("accountExpirationTaskExecutor")
+@Conditional(OnTaskConditional.class)
+public class AccountExpirationTaskExecutor implements TaskExecutor {
+    @Autowired
+    private AccountExpirationService accountExpirationService;
+
+    private static Logger logger = LoggerFactory.getLogger(AccountExpirationTaskExecutor.class);
+
+    @Override
+    public void execute(String parameter) {
+        Set<String> jobs = new HashSet<>();
+        if (!StringUtils.isBlank(parameter)) {
+            for (String job : Arrays.asList(StringUtils.split(parameter, ", "))) {
+                jobs.add(StringUtils.lowerCase(job));
+            }
+        }
+
+        long started = System.currentTimeMillis();
+        int users = jobs.isEmpty() || jobs.contains("users") ? accountExpirationService.blockExpiredUsers() : 0;
+        int passphrases = jobs.isEmpty() || jobs.contains("passphrases") ? accountExpirationService.archiveExpiredPassphrases() : 0;
+        int tokens = jobs.isEmpty() || jobs.contains("tokens") ? accountExpirationService.expireTokens() : 0;
+        int identifiers = jobs.isEmpty() || jobs.contains("identifiers") ? accountExpirationService.deleteUnverifiedIdentifiers() : 0;
+        logger.info("Account expiration completed in {} ms, affected rows: users={}, passphrases={}, tokens={}, identifiers={}",
+                System.currentTimeMillis() - started, users, passphrases, tokens, identifiers);
+    }
+}
@@ -0,0 +1,23 @@
+package com.gracelogic.platform.user.service;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Counts incorrect authentication attempts per identifier and per source address within a sliding window
+ * of user:block_period milliseconds. Default implementation keeps counters in memory of each node;
+ * a cluster-wide implementation backed by a shared store can replace it as a primary bean.
+ * Sign-in also checks lockouts stored in the database, so a restart or another node does not lift them.
+ */
+public interface AuthAttemptLimiter {
+    int getIdentifierAttempts(UUID identifierId);
+
+    int getAddressAttempts(String remoteAddress);
+
+    /**
+     * Counts incorrect attempt and returns number of attempts of the identifier within the window including this one.
+     */
+    int registerFailure(UUID identifierId, String remoteAddress);
+
+    void reset(Collection<UUID> identifierIds);
+}
@@ -0,0 +1,109 @@
+package com.gracelogic.platform.user.service;
+
+import com.gracelogic.platform.property.service.PropertyService;
+import net.jodah.expiringmap.ExpirationPolicy;
+import net.jodah.expiringmap.ExpiringMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class AuthAttemptLimiterImpl implements AuthAttemptLimiter {
+    @Autowired
+    private PropertyService propertyService;
+
+    //Counter is empty after two windows without failures, so it expires then
+    private final ExpiringMap<Object, SlidingWindowCounter> counters = ExpiringMap.builder()
+            .maxSize(200000)
+            .variableExpiration()
+            .expirationPolicy(ExpirationPolicy.CREATED)
+            .build();
+
+    @Override
+    public int getIdentifierAttempts(UUID identifierId) {
+        return getAttempts(identifierId);
+    }
+
+    @Override
+    public int getAddressAttempts(String remoteAddress) {
+        return remoteAddress != null ? getAttempts(remoteAddress) : 0;
+    }
+
+    @Override
+    public int registerFailure(UUID identifierId, String remoteAddress) {
+        long window = getWindow();
+        long now = System.currentTimeMillis();
+        if (remoteAddress != null) {
+            add(remoteAddress, now, window);
+        }
+        return add(identifierId, now, window);
+    }
+
+    @Override
+    public void reset(Collection<UUID> identifierIds) {
+        for (UUID identifierId : identifierIds) {
+            counters.remove(identifierId);
+        }
+    }
+
+    private int getAttempts(Object key) {
+        SlidingWindowCounter counter = counters.get(key);
+        return counter != null ? counter.get(System.currentTimeMillis(), getWindow()) : 0;
+    }
+
+    private int add(Object key, long now, long window) {
+        SlidingWindowCounter counter = counters.get(key);
+        if (counter == null) {
+            counter = new SlidingWindowCounter();
+            SlidingWindowCounter existing = counters.putIfAbsent(key, counter);
+            if (existing != null) {
+                counter = existing;
+            }
+        }
+        int attempts = counter.add(now, window);
+        counters.setExpiration(key, 2 * window, TimeUnit.MILLISECONDS);
+        return attempts;
+    }
+
+    private long getWindow() {
+        Integer blockPeriod = propertyService.getPropertyValueAsInteger("user:block_period");
+        return blockPeriod != null && blockPeriod > 0 ? blockPeriod : 1L;
+    }
+
+    /**
+     * Approximates sliding window by the current fixed window plus the previous one weighted by its overlap.
+     */
+    static class SlidingWindowCounter {
+        private long windowStart;
+        private int current;
+        private int previous;
+
+        synchronized int add(long now, long window) {
+            roll(now, window);
+            current++;
+            return estimate(now, window);
+        }
+
+        synchronized int get(long now, long window) {
+            roll(now, window);
+            return estimate(now, window);
+        }
+
+        private void roll(long now, long window) {
+            long start = now - now % window;
+            if (start != windowStart) {
+                previous = start - windowStart == window ? current : 0;
+                current = 0;
+                windowStart = start;
+            }
+        }
+
+        private int estimate(long now, long window) {
+            double overlap = 1.0 - (double) (now - windowStart) / window;
+            return (int) (previous * overlap) + current;
+        }
+    }
+}
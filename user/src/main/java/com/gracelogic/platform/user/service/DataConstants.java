@@ -5,7 +5,10 @@ import java.util.UUID;
 public class DataConstants {
     public enum PassphraseEncryptors {
         OPEN(UUID.fromString("54480ce1-00eb-4179-a2b6-f74daa6b9e71")),
-        SHA1_WITH_SALT(UUID.fromString("54480ce1-00eb-4179-a2b6-f74daa6b9e72"));
+        SHA1_WITH_SALT(UUID.fromString("54480ce1-00eb-4179-a2b6-f74daa6b9e72")),
+        PBKDF2(UUID.fromString("54480ce1-00eb-4179-a2b6-f74daa6b9e73")),
+        BCRYPT(UUID.fromString("54480ce1-00eb-4179-a2b6-f74daa6b9e74")),
+        ARGON2(UUID.fromString("54480ce1-00eb-4179-a2b6-f74daa6b9e75"));
         private UUID value;
 
         PassphraseEncryptors(UUID value) {
@@ -0,0 +1,116 @@
+package com.gracelogic.platform.user.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.StringTokenizer;
+
+/**
+ * Binary prefix trie of IPv4 subnets. Lookup walks at most 32 nodes regardless of the number of subnets.
+ * Instances are immutable after parsing and can be shared between threads.
+ */
+public class IpAddressTrie {
+    private static Logger logger = LoggerFactory.getLogger(IpAddressTrie.class);
+
+    private static final int ADDRESS_BITS = 32;
+
+    private final Node root = new Node();
+
+    private IpAddressTrie() {
+    }
+
+    /**
+     * Parses list of subnets in CIDR notation separated by spaces or commas, single address is treated as /32.
+     * Malformed entries are skipped.
+     */
+    public static IpAddressTrie parse(String addresses) {
+        IpAddressTrie trie = new IpAddressTrie();
+        StringTokenizer stringTokenizer = new StringTokenizer(addresses, " ,");
+        while (stringTokenizer.hasMoreTokens()) {
+            String token = stringTokenizer.nextToken();
+            int slash = token.indexOf('/');
+            long address = parseAddress(slash >= 0 ? token.substring(0, slash) : token);
+            int prefixLength = ADDRESS_BITS;
+            if (slash >= 0) {
+                try {
+                    prefixLength = Integer.parseInt(token.substring(slash + 1));
+                } catch (NumberFormatException e) {
+                    prefixLength = -1;
+                }
+            }
+            if (address < 0 || prefixLength < 0 || prefixLength > ADDRESS_BITS) {
+                logger.warn("Skipping malformed subnet: {}", token);
+                continue;
+            }
+            trie.add(address, prefixLength);
+        }
+        return trie;
+    }
+
+    public boolean contains(String address) {
+        long value = parseAddress(address);
+        if (value < 0) {
+            return false;
+        }
+
+        Node node = root;
+        for (int i = ADDRESS_BITS - 1; i >= 0; i--) {
+            if (node.terminal) {
+                return true;
+            }
+            node = node.children[(int) ((value >>> i) & 1)];
+            if (node == null) {
+                return false;
+            }
+        }
+        return node.terminal;
+    }
+
+    private void add(long address, int prefixLength) {
+        Node node = root;
+        for (int i = 0; i < prefixLength && !node.terminal; i++) {
+            int bit = (int) ((address >>> (ADDRESS_BITS - 1 - i)) & 1);
+            if (node.children[bit] == null) {
+                node.children[bit] = new Node();
+            }
+            node = node.children[bit];
+        }
+        node.terminal = true;
+    }
+
+    /**
+     * Returns address as unsigned 32-bit value or -1 when it is not a dotted IPv4 address.
+     */
+    private static long parseAddress(String address) {
+        if (address == null) {
+            return -1;
+        }
+        long result = 0;
+        int octets = 0;
+        int octet = -1;
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (c >= '0' && c <= '9') {
+                octet = (octet < 0 ? 0 : octet * 10) + (c - '0');
+                if (octet > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && octet >= 0 && octets < 3) {
+                result = (result << 8) | octet;
+                octets++;
+                octet = -1;
+            } else {
+                return -1;
+            }
+        }
+        if (octet < 0 || octets != 3) {
+            return -1;
+        }
+        return (result << 8) | octet;
+    }
+
+    private static class Node {
+        private final Node[] children = new Node[2];
+        private boolean terminal;
+    }
+}
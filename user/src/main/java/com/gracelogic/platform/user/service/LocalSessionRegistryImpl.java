@@ -0,0 +1,36 @@
+package com.gracelogic.platform.user.service;
+
+import com.gracelogic.platform.user.condition.OnLocalSessionRegistryConditional;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory registry for single node deployments, default on SQL Server which offers no push channel.
+ * Sessions registered on other nodes are not seen until restart.
+ */
+@Service
+@Conditional(OnLocalSessionRegistryConditional.class)
+public class LocalSessionRegistryImpl implements SessionRegistry {
+    private final Map<UUID, String> actualSessionIds = new ConcurrentHashMap<>();
+
+    @Override
+    public void registerSession(UUID userId, String sessionId) {
+        actualSessionIds.put(userId, sessionId);
+    }
+
+    @Override
+    public void restoreSession(UUID userId, String sessionId) {
+        actualSessionIds.put(userId, sessionId);
+    }
+
+    @Override
+    public boolean isLastSession(UUID userId, String sessionId) {
+        String actualSessionId = actualSessionIds.get(userId);
+        return actualSessionId != null && StringUtils.equalsIgnoreCase(sessionId, actualSessionId);
+    }
+}
@@ -0,0 +1,21 @@
+package com.gracelogic.platform.user.service;
+
+import java.util.UUID;
+
+/**
+ * Tracks the last session of every user for the single active session rule (user:one_session_per_user).
+ * isLastSession is called on every request and must be answered from memory.
+ */
+public interface SessionRegistry {
+    /**
+     * Makes the session the last one of the user on all nodes.
+     */
+    void registerSession(UUID userId, String sessionId);
+
+    /**
+     * Puts the session into local registry only, used to restore state from the database on startup.
+     */
+    void restoreSession(UUID userId, String sessionId);
+
+    boolean isLastSession(UUID userId, String sessionId);
+}
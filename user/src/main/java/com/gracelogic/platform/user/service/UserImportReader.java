@@ -0,0 +1,138 @@
+package com.gracelogic.platform.user.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.gracelogic.platform.user.dto.IdentifierDTO;
+import com.gracelogic.platform.user.dto.SignUpDTO;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming reader of users to import, rows are parsed one at a time so the input is never held in memory.
+ */
+public abstract class UserImportReader {
+    private static final ObjectMapper objectMapper = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * Returns next user or null at the end of input.
+     */
+    public abstract SignUpDTO next() throws IOException;
+
+    /**
+     * JSON array of sign up objects.
+     */
+    public static UserImportReader json(InputStream inputStream) throws IOException {
+        final JsonParser parser = objectMapper.getFactory().createParser(inputStream);
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IOException("JSON array expected");
+        }
+
+        return new UserImportReader() {
+            @Override
+            public SignUpDTO next() throws IOException {
+                JsonToken token = parser.nextToken();
+                if (token == null || token == JsonToken.END_ARRAY) {
+                    return null;
+                }
+                return objectMapper.readValue(parser, SignUpDTO.class);
+            }
+        };
+    }
+
+    /**
+     * UTF-8 CSV with a header row. Supported columns: password, locale, approved, blocked, fields.{key} and any number
+     * of columns starting with identifier, type of identifier is resolved by its value. Empty cells are skipped.
+     */
+    public static UserImportReader csv(InputStream inputStream) throws IOException {
+        final Reader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        final List<String> header = readRecord(reader);
+        if (header == null) {
+            throw new IOException("CSV header expected");
+        }
+        header.set(0, StringUtils.removeStart(header.get(0), "\uFEFF"));
+
+        return new UserImportReader() {
+            @Override
+            public SignUpDTO next() throws IOException {
+                List<String> record;
+                do {
+                    record = readRecord(reader);
+                    if (record == null) {
+                        return null;
+                    }
+                } while (record.size() == 1 && record.get(0).isEmpty());
+
+                SignUpDTO dto = new SignUpDTO();
+                for (int i = 0; i < header.size() && i < record.size(); i++) {
+                    String column = StringUtils.trim(header.get(i));
+                    String value = record.get(i);
+                    if (StringUtils.isEmpty(value)) {
+                        continue;
+                    }
+                    if (StringUtils.equalsIgnoreCase(column, "password")) {
+                        dto.setPassword(value);
+                    } else if (StringUtils.equalsIgnoreCase(column, "locale")) {
+                        dto.setLocale(value);
+                    } else if (StringUtils.equalsIgnoreCase(column, "approved")) {
+                        dto.setApproved(Boolean.valueOf(value));
+                    } else if (StringUtils.equalsIgnoreCase(column, "blocked")) {
+                        dto.setBlocked(Boolean.valueOf(value));
+                    } else if (StringUtils.startsWithIgnoreCase(column, "fields.")) {
+                        dto.getFields().put(column.substring("fields.".length()), value);
+                    } else if (StringUtils.startsWithIgnoreCase(column, "identifier")) {
+                        IdentifierDTO identifierDTO = new IdentifierDTO();
+                        identifierDTO.setValue(StringUtils.trim(value));
+                        dto.getIdentifiers().add(identifierDTO);
+                    }
+                }
+                return dto;
+            }
+        };
+    }
+
+    /**
+     * Reads one RFC 4180 record, quoted values may contain separators, line breaks and doubled quotes.
+     */
+    private static List<String> readRecord(Reader reader) throws IOException {
+        int c = reader.read();
+        if (c == -1) {
+            return null;
+        }
+
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new EOFException("Unterminated quoted value");
+                }
+                if (c == '"') {
+                    c = reader.read();
+                    if (c != '"') {
+                        quoted = false;
+                        continue;
+                    }
+                }
+                value.append((char) c);
+            } else if (c == '"' && value.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else if (c == '\n' || c == -1) {
+                values.add(value.toString());
+                return values;
+            } else if (c != '\r') {
+                value.append((char) c);
+            }
+            c = reader.read();
+        }
+    }
+}
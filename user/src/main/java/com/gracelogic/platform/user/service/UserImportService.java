@@ -0,0 +1,18 @@
+package com.gracelogic.platform.user.service;
+
+import com.gracelogic.platform.db.exception.ObjectNotFoundException;
+import com.gracelogic.platform.user.dto.UserImportResultDTO;
+import com.gracelogic.platform.user.model.Identifier;
+import com.gracelogic.platform.user.model.Passphrase;
+import com.gracelogic.platform.user.model.User;
+import com.gracelogic.platform.user.model.UserRole;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.UUID;
+
+public interface UserImportService {
+    UserImportResultDTO importUsers(UserImportReader reader, Collection<UUID> roleIds, boolean sendVerificationCodes) throws IOException, ObjectNotFoundException;
+
+    void saveUsers(Collection<User> users, Collection<Identifier> identifiers, Collection<Passphrase> passphrases, Collection<UserRole> userRoles);
+}
@@ -0,0 +1,439 @@
+package com.gracelogic.platform.user.service;
+
+import com.gracelogic.platform.db.GroupingUtils;
+import com.gracelogic.platform.db.JsonUtils;
+import com.gracelogic.platform.db.exception.ObjectNotFoundException;
+import com.gracelogic.platform.db.service.IdObjectService;
+import com.gracelogic.platform.dictionary.service.DictionaryService;
+import com.gracelogic.platform.localization.service.LocaleHolder;
+import com.gracelogic.platform.property.service.PropertyService;
+import com.gracelogic.platform.user.dao.UserDao;
+import com.gracelogic.platform.user.dto.IdentifierDTO;
+import com.gracelogic.platform.user.dto.SignUpDTO;
+import com.gracelogic.platform.user.dto.UserImportResultDTO;
+import com.gracelogic.platform.user.exception.InvalidPassphraseException;
+import com.gracelogic.platform.user.model.*;
+import org.apache.commons.lang3.LocaleUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Bulk user provisioning. Input is processed by chunks of user:import_batch_size rows: identifiers of a chunk are checked
+ * for uniqueness by one query, passphrases are hashed in parallel on user:import_threads threads outside of transaction
+ * and the chunk is inserted by JDBC batches in one short transaction. Verification codes are inserted with the chunk
+ * and queued by one bulk notification per method and locale after it is committed. A row that fails validation
+ * is reported and does not affect other rows.
+ * UserLifecycleService.signUp is not called for imported users, signUpImported is called for every committed chunk instead.
+ */
+@Service
+public class UserImportServiceImpl implements UserImportService {
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private UserLifecycleService userLifecycleService;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private IdObjectService idObjectService;
+
+    @Autowired
+    private DictionaryService ds;
+
+    @Autowired
+    private PropertyService propertyService;
+
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    //Keeps IN lists below the MSSQL limit of 2100 parameters
+    private static final int MAX_IN_VALUES = 1000;
+
+    private static Logger logger = LoggerFactory.getLogger(UserImportServiceImpl.class);
+
+    private ThreadPoolExecutor hashExecutor;
+
+    @PostConstruct
+    private void init() {
+        Integer importThreads = propertyService.getPropertyValueAsInteger("user:import_threads");
+        int threads = importThreads != null && importThreads > 0 ? importThreads : Runtime.getRuntime().availableProcessors();
+        hashExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        hashExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    private void destroy() {
+        hashExecutor.shutdownNow();
+    }
+
+    @Override
+    public UserImportResultDTO importUsers(UserImportReader reader, Collection<UUID> roleIds, boolean sendVerificationCodes) throws IOException, ObjectNotFoundException {
+        ImportContext context = new ImportContext();
+        context.roles = GroupingUtils.indexBy(idObjectService.getList(Role.class), Role::getId);
+        for (UUID roleId : roleIds) {
+            if (!context.roles.containsKey(roleId)) {
+                throw new ObjectNotFoundException();
+            }
+        }
+        context.roleIds = roleIds;
+        context.identifierTypes = idObjectService.getList(IdentifierType.class, null, null, null, "el.resolvePriority ASC", null, null);
+        context.approved = StringUtils.equalsIgnoreCase(propertyService.getPropertyValue("user:approve_method"), DataConstants.UserApproveMethods.AUTO.getValue());
+        context.sendVerificationCodes = sendVerificationCodes;
+        context.locale = LocaleHolder.getLocale();
+
+        Integer importBatchSize = propertyService.getPropertyValueAsInteger("user:import_batch_size");
+        int batchSize = importBatchSize != null && importBatchSize > 0 ? importBatchSize : DEFAULT_BATCH_SIZE;
+
+        long started = System.currentTimeMillis();
+        List<ImportRow> chunk = new ArrayList<>(batchSize);
+        int rowNumber = 0;
+        while (true) {
+            SignUpDTO dto;
+            try {
+                dto = reader.next();
+            } catch (IOException e) {
+                //Position in a malformed stream is unknown, so the rest of input is skipped
+                context.result.addError(rowNumber + 1, "Malformed input: " + e.getMessage());
+                break;
+            }
+            if (dto == null) {
+                break;
+            }
+            chunk.add(new ImportRow(++rowNumber, dto));
+            if (chunk.size() >= batchSize) {
+                importChunk(chunk, context);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            importChunk(chunk, context);
+        }
+
+        logger.info("Imported users: {}, failed: {}, elapsed: {} ms", context.result.getImported(), context.result.getFailed(), System.currentTimeMillis() - started);
+        return context.result;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void saveUsers(Collection<User> users, Collection<Identifier> identifiers, Collection<Passphrase> passphrases, Collection<UserRole> userRoles) {
+        userDao.insertUsers(users, identifiers, passphrases, userRoles);
+    }
+
+    private void importChunk(List<ImportRow> rows, ImportContext context) {
+        Date now = new Date();
+        for (ImportRow row : rows) {
+            row.error = prepareRow(row, context, now);
+        }
+
+        checkIdentifiers(rows);
+        hashPassphrases(rows, now, context.sendVerificationCodes);
+
+        List<ImportRow> validRows = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            if (row.error == null) {
+                validRows.add(row);
+            }
+        }
+
+        List<ImportRow> savedRows = Collections.emptyList();
+        if (!validRows.isEmpty()) {
+            try {
+                save(validRows);
+                savedRows = validRows;
+            } catch (Exception e) {
+                //Usually an identifier taken by a concurrent sign up or import, rows are saved one by one to find it
+                logger.warn("Failed to save imported users chunk, saving one by one", e);
+                savedRows = saveOneByOne(validRows);
+            }
+            context.result.addImported(savedRows.size());
+        }
+
+        for (ImportRow row : rows) {
+            if (row.error != null) {
+                context.result.addError(row.number, row.error);
+            }
+        }
+
+        if (!savedRows.isEmpty()) {
+            List<User> users = new ArrayList<>(savedRows.size());
+            for (ImportRow row : savedRows) {
+                users.add(row.user);
+            }
+            try {
+                userLifecycleService.signUpImported(users);
+            } catch (Exception e) {
+                logger.error("Failed to process imported users", e);
+            }
+        }
+
+        //Templates are chosen by locale: the imported user locale if set, otherwise the locale of the import caller
+        Map<Locale, Map<Identifier, Passphrase>> verificationCodes = new LinkedHashMap<>();
+        for (ImportRow row : savedRows) {
+            if (!row.verificationCodes.isEmpty()) {
+                Locale locale = getLocale(row.user.getLocale(), context.locale);
+                Map<Identifier, Passphrase> codes = verificationCodes.get(locale);
+                if (codes == null) {
+                    codes = new LinkedHashMap<>();
+                    verificationCodes.put(locale, codes);
+                }
+                codes.putAll(row.verificationCodes);
+            }
+        }
+        for (Map.Entry<Locale, Map<Identifier, Passphrase>> entry : verificationCodes.entrySet()) {
+            try {
+                userService.sendIdentifierVerificationCodes(entry.getValue(), entry.getKey());
+            } catch (Exception e) {
+                logger.error("Failed to send verification codes to imported users: {}", entry.getValue().size(), e);
+            }
+        }
+    }
+
+    private void save(List<ImportRow> rows) {
+        List<User> users = new ArrayList<>(rows.size());
+        List<Identifier> identifiers = new ArrayList<>();
+        List<Passphrase> passphrases = new ArrayList<>(rows.size());
+        List<UserRole> userRoles = new ArrayList<>();
+        for (ImportRow row : rows) {
+            users.add(row.user);
+            identifiers.addAll(row.identifiers);
+            passphrases.add(row.passphrase);
+            passphrases.addAll(row.verificationCodes.values());
+            userRoles.addAll(row.userRoles);
+        }
+        userImportService.saveUsers(users, identifiers, passphrases, userRoles);
+    }
+
+    /**
+     * Saves every row in its own transaction. A row whose identifier has been taken meanwhile is reported as duplicate.
+     */
+    private List<ImportRow> saveOneByOne(List<ImportRow> rows) {
+        List<ImportRow> savedRows = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            try {
+                save(Collections.singletonList(row));
+                savedRows.add(row);
+            } catch (Exception e) {
+                checkIdentifiers(Collections.singletonList(row));
+                if (row.error == null) {
+                    logger.error("Failed to save imported user from row {}", row.number, e);
+                    row.error = "Failed to save user";
+                }
+            }
+        }
+        return savedRows;
+    }
+
+    private static Locale getLocale(String userLocale, Locale defaultLocale) {
+        if (!StringUtils.isEmpty(userLocale)) {
+            try {
+                return LocaleUtils.toLocale(userLocale);
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+        return defaultLocale;
+    }
+
+    /**
+     * Builds user, identifiers and roles the same way as sign up does. Returns error message or null.
+     */
+    private String prepareRow(ImportRow row, ImportContext context, Date now) {
+        SignUpDTO dto = row.dto;
+        if (dto.getIdentifiers() == null || dto.getIdentifiers().isEmpty()) {
+            return "No identifiers";
+        }
+
+        User user = new User();
+        user.setId(UUID.randomUUID());
+        user.setCreated(now);
+        user.setChanged(now);
+        user.setApproved(dto.getApproved() != null ? dto.getApproved() : context.approved);
+        user.setBlocked(dto.getBlocked() != null ? dto.getBlocked() : false);
+        user.setFields(JsonUtils.mapToJson(dto.getFields()));
+        user.setLocale(dto.getLocale());
+        row.user = user;
+
+        for (IdentifierDTO identifierDTO : dto.getIdentifiers()) {
+            UUID identifierTypeId = identifierDTO.getIdentifierTypeId() != null ? identifierDTO.getIdentifierTypeId() : resolveIdentifierTypeId(context, identifierDTO.getValue());
+            if (identifierTypeId == null || !userService.isIdentifierValid(identifierTypeId, identifierDTO.getValue(), false)) {
+                return "Identifier value is not valid: " + identifierDTO.getValue();
+            }
+            row.identifiers.add(newIdentifier(user, identifierTypeId, identifierDTO.getValue(), identifierDTO.getVerified(), identifierDTO.getPrimary(), now));
+        }
+        //Identifier for processSignIn by userId
+        row.identifiers.add(newIdentifier(user, DataConstants.IdentifierTypes.USER_ID.getValue(), user.getId().toString(), null, false, now));
+
+        Set<UUID> roleIds = new HashSet<>(context.roleIds);
+        if (dto.getRoles() != null) {
+            roleIds.addAll(dto.getRoles());
+        }
+        for (UUID roleId : roleIds) {
+            Role role = context.roles.get(roleId);
+            if (role == null) {
+                return "Role not found: " + roleId;
+            }
+            UserRole userRole = new UserRole();
+            userRole.setId(UUID.randomUUID());
+            userRole.setCreated(now);
+            userRole.setChanged(now);
+            userRole.setUser(user);
+            userRole.setRole(role);
+            row.userRoles.add(userRole);
+        }
+        return null;
+    }
+
+    /**
+     * Rejects rows with identifiers repeated inside the chunk or already existing. Existing identifiers are
+     * fetched by one query per chunk.
+     */
+    private void checkIdentifiers(List<ImportRow> rows) {
+        Map<String, ImportRow> owners = new HashMap<>();
+        Set<String> values = new HashSet<>();
+        for (ImportRow row : rows) {
+            if (row.error != null) {
+                continue;
+            }
+            for (Identifier identifier : row.identifiers) {
+                if (identifier.getIdentifierType().getId().equals(DataConstants.IdentifierTypes.USER_ID.getValue())) {
+                    continue;
+                }
+                String key = getIdentifierKey(identifier.getIdentifierType().getId(), identifier.getValue());
+                ImportRow owner = owners.get(key);
+                if (owner != null && owner != row) {
+                    row.error = "Identifier is duplicated in row " + owner.number + ": " + identifier.getValue();
+                    break;
+                }
+                owners.put(key, row);
+                values.add(identifier.getValue());
+            }
+        }
+
+        List<String> valueList = new ArrayList<>(values);
+        for (int i = 0; i < valueList.size(); i += MAX_IN_VALUES) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("values", valueList.subList(i, Math.min(i + MAX_IN_VALUES, valueList.size())));
+            for (Identifier existing : idObjectService.getList(Identifier.class, null, "el.value in (:values)", params, null, null, null)) {
+                ImportRow owner = owners.get(getIdentifierKey(existing.getIdentifierType().getId(), existing.getValue()));
+                if (owner != null && owner.error == null) {
+                    owner.error = "Identifier is already used: " + existing.getValue();
+                }
+            }
+        }
+    }
+
+    /**
+     * Verification codes of unverified email and phone identifiers are generated here too, they may be hashed as well.
+     */
+    private void hashPassphrases(List<ImportRow> rows, final Date now, final boolean verificationCodes) {
+        List<Callable<Void>> tasks = new ArrayList<>(rows.size());
+        for (final ImportRow row : rows) {
+            if (row.error != null) {
+                continue;
+            }
+            tasks.add(() -> {
+                try {
+                    Passphrase passphrase = userService.preparePassphrase(row.user, DataConstants.PassphraseTypes.USER_PASSWORD.getValue(), row.dto.getPassword(), row.user.getId());
+                    passphrase.setId(UUID.randomUUID());
+                    passphrase.setCreated(now);
+                    passphrase.setChanged(now);
+                    row.passphrase = passphrase;
+                } catch (InvalidPassphraseException e) {
+                    row.error = "Passphrase is not valid";
+                    return null;
+                }
+
+                if (verificationCodes) {
+                    for (Identifier identifier : row.identifiers) {
+                        UUID identifierTypeId = identifier.getIdentifierType().getId();
+                        if (!identifier.getVerified() && (identifierTypeId.equals(DataConstants.IdentifierTypes.EMAIL.getValue()) || identifierTypeId.equals(DataConstants.IdentifierTypes.PHONE.getValue()))) {
+                            Passphrase code = userService.prepareVerificationCode(row.user, identifier.getId(), DataConstants.PassphraseTypes.IDENTIFIER_VERIFICATION_CODE.getValue());
+                            code.setId(UUID.randomUUID());
+                            code.setCreated(now);
+                            code.setChanged(now);
+                            row.verificationCodes.put(identifier, code);
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> future : hashExecutor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing passphrases", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        }
+    }
+
+    private UUID resolveIdentifierTypeId(ImportContext context, String value) {
+        for (IdentifierType identifierType : context.identifierTypes) {
+            if (userService.isIdentifierValid(identifierType.getId(), value, false)) {
+                return identifierType.getId();
+            }
+        }
+        return null;
+    }
+
+    private Identifier newIdentifier(User user, UUID identifierTypeId, String value, Boolean verified, Boolean primary, Date now) {
+        IdentifierType identifierType = ds.get(IdentifierType.class, identifierTypeId);
+        Identifier identifier = new Identifier();
+        identifier.setId(UUID.randomUUID());
+        identifier.setCreated(now);
+        identifier.setChanged(now);
+        identifier.setUser(user);
+        identifier.setIdentifierType(identifierType);
+        identifier.setValue(value);
+        identifier.setVerified(verified != null ? verified : identifierType.getAutomaticVerification());
+        identifier.setPrimary(primary != null ? primary : false);
+        return identifier;
+    }
+
+    private static String getIdentifierKey(UUID identifierTypeId, String value) {
+        return identifierTypeId + "|" + value;
+    }
+
+    private static class ImportContext {
+        private final UserImportResultDTO result = new UserImportResultDTO();
+        private Map<UUID, Role> roles;
+        private Collection<UUID> roleIds;
+        private List<IdentifierType> identifierTypes;
+        private boolean approved;
+        private boolean sendVerificationCodes;
+        private Locale locale;
+    }
+
+    private static class ImportRow {
+        private final int number;
+        private final SignUpDTO dto;
+        private final List<Identifier> identifiers = new ArrayList<>();
+        private final List<UserRole> userRoles = new ArrayList<>();
+        private final Map<Identifier, Passphrase> verificationCodes = new LinkedHashMap<>();
+        private User user;
+        private Passphrase passphrase;
+        //Written by hashing threads, Future.get after invokeAll makes it visible to the import thread
+        private String error;
+
+        private ImportRow(int number, SignUpDTO dto) {
+            this.number = number;
+            this.dto = dto;
+        }
+    }
+}
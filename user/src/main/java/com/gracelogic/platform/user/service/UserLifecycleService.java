@@ -7,9 +7,16 @@ import com.gracelogic.platform.user.dto.UserDTO;
 import com.gracelogic.platform.user.exception.*;
 import com.gracelogic.platform.user.model.User;
 
+import java.util.Collection;
+
 public interface UserLifecycleService {
     User signUp(SignUpDTO signUpDTO) throws InvalidIdentifierException, InvalidPassphraseException, CustomLocalizedException;
 
+    /**
+     * Called by bulk import instead of signUp, once for every committed chunk of imported users.
+     */
+    void signUpImported(Collection<User> users);
+
     void signIn(AuthorizedUser authorizedUser);
 
     User save(UserDTO userDTO, boolean mergeRoles, boolean mergeIdentifiers, AuthorizedUser executor) throws ObjectNotFoundException, InvalidIdentifierException, InvalidPassphraseException;
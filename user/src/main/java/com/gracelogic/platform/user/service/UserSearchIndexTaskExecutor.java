@@ -0,0 +1,27 @@
+package com.gracelogic.platform.user.service;
+
+import com.gracelogic.platform.task.service.TaskExecutor;
+import com.gracelogic.platform.user.condition.OnTaskConditional;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Migration task that prepares user search indexes, should be run once with service name userSearchIndexTaskExecutor.
+ * Parameter is a comma separated list of user field keys to index on MSSQL, it is not required on PostgreSQL.
+ */
+@Service("userSearchIndexTaskExecutor")
+@Conditional(OnTaskConditional.class)
+public class UserSearchIndexTaskExecutor implements TaskExecutor {
+    @Autowired
+    private UserService userService;
+
+    @Override
+    public void execute(String parameter) {
+        userService.createSearchIndexes(StringUtils.isBlank(parameter) ? Collections.<String>emptyList() : Arrays.asList(StringUtils.split(parameter, ", ")));
+    }
+}
@@ -16,6 +16,8 @@ public interface UserService {
 
     UserSession updateSessionInfo(HttpSession session, SessionBasedAuthentication sessionBasedAuthentication, String userAgent, boolean isDestroying);
 
+    void saveUserSessions(Collection<UserSessionDTO> sessions);
+
     void changePasswordViaVerificationCode(UUID identifierTypeId, String identifierValue, String verificationCode, String newPassword) throws ObjectNotFoundException, InvalidPassphraseException;
 
     UserSetting getUserSetting(UUID userId, String key);
@@ -68,12 +70,27 @@ public interface UserService {
 
     Passphrase updatePassphrase(User user, String value, UUID passphraseTypeId, UUID referenceObjectId, boolean archiveOtherPassphrases) throws InvalidPassphraseException;
 
+    /**
+     * Validates and hashes passphrase without saving it.
+     */
+    Passphrase preparePassphrase(User user, UUID passphraseTypeId, String value, UUID referenceObjectId) throws InvalidPassphraseException;
+
     Identifier processSignIn(UUID identifierTypeId, String identifierValue, String password, String remoteAddress, boolean trust) throws UserBlockedException, TooManyAttemptsException, NotAllowedIPException, UserNotApprovedException, InvalidIdentifierException;
 
     void sendIdentifierVerificationCode(UUID identifierId, Map<String, String> templateParams);
 
+    /**
+     * Queues stored verification codes of new identifiers with one bulk notification per method.
+     */
+    void sendIdentifierVerificationCodes(Map<Identifier, Passphrase> verificationCodes, Locale locale);
+
     Passphrase getActualVerificationCode(User user, UUID referenceObjectId, UUID passphraseTypeId, boolean createNewIfNotExist);
 
+    /**
+     * Generates verification code without saving it.
+     */
+    Passphrase prepareVerificationCode(User user, UUID referenceObjectId, UUID passphraseTypeId);
+
     User processSignUp(SignUpDTO signUpDTO) throws InvalidIdentifierException, InvalidPassphraseException;
 
     void sendVerificationCodeForPasswordChanging(UUID identifierTypeId, String identifierValue, Map<String, String> templateParams) throws ObjectNotFoundException, TooFastOperationException;
@@ -90,6 +107,8 @@ public interface UserService {
 
     void blockExpiredUsers();
 
+    void createSearchIndexes(Collection<String> fieldKeys);
+
     void archivePassphrase(Passphrase passphrase);
 
     EntityListResponse<PassphraseTypeDTO> getPassphraseTypePaged(String name, boolean enrich, boolean calculate, Integer count, Integer page, Integer start, String sortField, String sortDir);
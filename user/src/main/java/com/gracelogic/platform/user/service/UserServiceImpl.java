@@ -1,11 +1,13 @@
 package com.gracelogic.platform.user.service;
 
+import com.gracelogic.platform.db.GroupingUtils;
 import com.gracelogic.platform.db.JsonUtils;
 import com.gracelogic.platform.db.dto.EntityListResponse;
 import com.gracelogic.platform.db.exception.ObjectNotFoundException;
 import com.gracelogic.platform.db.service.IdObjectService;
 import com.gracelogic.platform.dictionary.service.DictionaryService;
 import com.gracelogic.platform.localization.service.LocaleHolder;
+import com.gracelogic.platform.notification.dto.BulkNotificationRecipient;
 import com.gracelogic.platform.notification.dto.Content;
 import com.gracelogic.platform.notification.service.NotificationService;
 import com.gracelogic.platform.property.service.PropertyService;
@@ -16,10 +18,12 @@ import com.gracelogic.platform.user.exception.*;
 import com.gracelogic.platform.user.filter.LocaleFilter;
 import com.gracelogic.platform.user.model.*;
 import com.gracelogic.platform.user.security.SessionBasedAuthentication;
+import com.gracelogic.platform.user.service.passphrase.PassphraseEncryptor;
+import net.jodah.expiringmap.ExpirationPolicy;
+import net.jodah.expiringmap.ExpiringMap;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.LocaleUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.net.util.SubnetUtils;
 import org.slf4j.Logger;
 import org.quartz.CronExpression;
 import org.slf4j.LoggerFactory;
@@ -29,10 +33,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -58,9 +65,57 @@ public class UserServiceImpl implements UserService {
     @Autowired
     private TemplateService templateService;
 
+    @Autowired
+    private SessionRegistry sessionRegistry;
+
+    @Autowired
+    private UserSessionWriter userSessionWriter;
+
+    @Autowired
+    private AuthAttemptLimiter authAttemptLimiter;
+
+    @Autowired
+    private AccountExpirationService accountExpirationService;
+
+    @Autowired
+    private List<PassphraseEncryptor> passphraseEncryptors;
+
+    private static final int DEFAULT_INCORRECT_AUTH_ATTEMPT_SAMPLING = 10;
+    private static final int DEFAULT_PASSPHRASE_QUEUE_SIZE = 1000;
+
+    //Adaptive hashing is CPU bound, so it is limited to a pool sized by cores instead of request threads
+    private ThreadPoolExecutor passphraseExecutor;
+
+    //Parsed sign-in restrictions and validation regexes keyed by their source string
+    private final Map<String, IpAddressTrie> allowedAddressesCache = ExpiringMap.builder()
+            .maxSize(10000)
+            .expirationPolicy(ExpirationPolicy.ACCESSED)
+            .expiration(1, TimeUnit.HOURS)
+            .entryLoader(key -> IpAddressTrie.parse((String) key))
+            .build();
+
+    private final Map<String, CronExpression> cronExpressionCache = ExpiringMap.builder()
+            .maxSize(10000)
+            .expirationPolicy(ExpirationPolicy.ACCESSED)
+            .expiration(1, TimeUnit.HOURS)
+            .build();
+
+    private final Map<String, Pattern> patternCache = ExpiringMap.builder()
+            .maxSize(1000)
+            .expirationPolicy(ExpirationPolicy.ACCESSED)
+            .expiration(1, TimeUnit.HOURS)
+            .entryLoader(key -> Pattern.compile((String) key))
+            .build();
 
     @PostConstruct
     private void init() {
+        Integer passphraseThreads = propertyService.getPropertyValueAsInteger("user:passphrase_threads");
+        Integer passphraseQueueSize = propertyService.getPropertyValueAsInteger("user:passphrase_queue_size");
+        int threads = passphraseThreads != null && passphraseThreads > 0 ? passphraseThreads : Runtime.getRuntime().availableProcessors();
+        passphraseExecutor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(passphraseQueueSize != null && passphraseQueueSize > 0 ? passphraseQueueSize : DEFAULT_PASSPHRASE_QUEUE_SIZE));
+        passphraseExecutor.allowCoreThreadTimeOut(true);
+
         //Load user name format
         String userNameFormat = propertyService.getPropertyValue("user:user_name_format");
         if (!StringUtils.isEmpty(userNameFormat)) {
@@ -75,7 +130,7 @@ public class UserServiceImpl implements UserService {
                 UUID userId = UUID.fromString((String) obj[0]);
                 String sessionId = (String) obj[1];
 
-                LastSessionHolder.updateLastSessionSessionId(userId, sessionId);
+                sessionRegistry.restoreSession(userId, sessionId);
             }
         }
 
@@ -88,6 +143,25 @@ public class UserServiceImpl implements UserService {
                 logger.error("Failed to override default locale", e);
             }
         }
+
+        //Load locales that can be chosen by Accept-Language header
+        String supportedLocales = propertyService.getPropertyValue("user:supported_locales");
+        if (!StringUtils.isEmpty(supportedLocales)) {
+            List<Locale> locales = new ArrayList<>();
+            for (String locale : StringUtils.split(supportedLocales, " ,")) {
+                try {
+                    locales.add(LocaleUtils.toLocale(locale));
+                } catch (Exception e) {
+                    logger.error("Failed to parse supported locale: " + locale, e);
+                }
+            }
+            LocaleFilter.setSupportedLocales(locales);
+        }
+    }
+
+    @PreDestroy
+    private void destroy() {
+        passphraseExecutor.shutdownNow();
     }
 
     @Transactional
@@ -100,6 +174,12 @@ public class UserServiceImpl implements UserService {
         params.put("userId", userId);
 
         idObjectService.delete(IncorrectAuthAttempt.class, "el.user.id=:userId", params);
+
+        List<UUID> identifierIds = new LinkedList<>();
+        for (Identifier identifier : idObjectService.getList(Identifier.class, null, "el.user.id=:userId", params, null, null, null)) {
+            identifierIds.add(identifier.getId());
+        }
+        authAttemptLimiter.reset(identifierIds);
     }
 
     private static String generatePasswordSalt() {
@@ -107,7 +187,10 @@ public class UserServiceImpl implements UserService {
         return DigestUtils.md5Hex(String.valueOf(random.nextLong()));
     }
 
-    @Transactional(rollbackFor = Exception.class)
+    /**
+     * Session state is queued to UserSessionWriter and stored asynchronously, so sign-out and session expiry
+     * never wait for the database. Returned session is not persisted yet, its id is derived from session id.
+     */
     @Override
     public UserSession updateSessionInfo(HttpSession session, SessionBasedAuthentication sessionBasedAuthentication, String userAgent, boolean isDestroying) {
         if (session != null && !StringUtils.isEmpty(session.getId())) {
@@ -123,42 +206,51 @@ public class UserServiceImpl implements UserService {
 
             if (authentication != null && authentication.getDetails() != null && authentication.getDetails() instanceof AuthorizedUser) {
                 AuthorizedUser authorizedUser = (AuthorizedUser) authentication.getDetails();
-                UserSession userSession = null;
-
-                Map<String, Object> params = new HashMap<>();
-                params.put("sessionId", session.getId());
-
-                List<UserSession> userSessions = idObjectService.getList(UserSession.class, null, "el.sessionId=:sessionId", params, "el.created DESC", null, 1);
-                if (userSessions != null && !userSessions.isEmpty()) {
-                    userSession = userSessions.iterator().next();
-                }
-
-                if (userSession == null) {
-                    userSession = new UserSession();
-                    userSession.setSessionId(session.getId());
-                    userSession.setUser(idObjectService.getObjectById(User.class, authorizedUser.getId()));
-                    userSession.setAuthIp(authentication.getRemoteAddress());
-                    if (authorizedUser.getSignInIdentifier() != null) {
-                        userSession.setIdentifier(idObjectService.getObjectById(Identifier.class, authorizedUser.getSignInIdentifier().getId()));
-                    }
-                    userSession.setUserAgent(userAgent);
+                Date now = new Date();
+
+                UserSessionDTO userSessionDTO = new UserSessionDTO();
+                userSessionDTO.setId(UUID.nameUUIDFromBytes(session.getId().getBytes(StandardCharsets.UTF_8)));
+                userSessionDTO.setCreated(now);
+                userSessionDTO.setChanged(now);
+                userSessionDTO.setSessionId(session.getId());
+                userSessionDTO.setUserId(authorizedUser.getId());
+                userSessionDTO.setAuthIp(authentication.getRemoteAddress());
+                if (authorizedUser.getSignInIdentifier() != null) {
+                    userSessionDTO.setIdentifierId(authorizedUser.getSignInIdentifier().getId());
                 }
-                userSession.setSessionCreatedDt(new Date(session.getCreationTime()));
-                userSession.setLastAccessDt(new Date(session.getLastAccessedTime()));
-                userSession.setMaxInactiveInterval((long) session.getMaxInactiveInterval());
-                userSession.setValid(!isDestroying);
+                userSessionDTO.setUserAgent(userAgent);
+                userSessionDTO.setSessionCreatedDt(new Date(session.getCreationTime()));
+                userSessionDTO.setLastAccessDt(new Date(session.getLastAccessedTime()));
+                userSessionDTO.setMaxInactiveInterval((long) session.getMaxInactiveInterval());
+                userSessionDTO.setValid(!isDestroying);
 
                 if (!isDestroying) {
-                    LastSessionHolder.updateLastSessionSessionId(authorizedUser.getId(), session.getId());
+                    sessionRegistry.registerSession(authorizedUser.getId(), session.getId());
                 }
 
-                return idObjectService.save(userSession);
-
+                userSessionWriter.enqueue(userSessionDTO);
+
+                UserSession userSession = new UserSession();
+                userSession.setId(userSessionDTO.getId());
+                userSession.setSessionId(userSessionDTO.getSessionId());
+                userSession.setAuthIp(userSessionDTO.getAuthIp());
+                userSession.setUserAgent(userSessionDTO.getUserAgent());
+                userSession.setSessionCreatedDt(userSessionDTO.getSessionCreatedDt());
+                userSession.setLastAccessDt(userSessionDTO.getLastAccessDt());
+                userSession.setMaxInactiveInterval(userSessionDTO.getMaxInactiveInterval());
+                userSession.setValid(userSessionDTO.getValid());
+                return userSession;
             }
         }
         return null;
     }
 
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void saveUserSessions(Collection<UserSessionDTO> sessions) {
+        userDao.upsertUserSessions(sessions);
+    }
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public void sendVerificationCodeForPasswordChanging(UUID identifierTypeId, String identifierValue, Map<String, String> templateParams) throws ObjectNotFoundException, TooFastOperationException {
@@ -344,18 +436,7 @@ public class UserServiceImpl implements UserService {
         }
 
         Passphrase passphrase = getActualVerificationCode(identifier.getUser(), identifierId, DataConstants.PassphraseTypes.IDENTIFIER_VERIFICATION_CODE.getValue(), true);
-        if (templateParams == null) {
-            templateParams = new HashMap<>();
-        }
-        templateParams.put("userId", identifier.getUser().getId().toString());
-        templateParams.put("identifierTypeId", identifier.getIdentifierType().getId().toString());
-        templateParams.put("identifierId", identifier.getId().toString());
-        templateParams.put("baseUrl", propertyService.getPropertyValue("web:base_url"));
-        templateParams.put("verificationCode", passphrase.getValue());
-        Map<String, String> fields = JsonUtils.jsonToMap(identifier.getUser().getFields());
-        for (String key : fields.keySet()) {
-            templateParams.put(key, fields.get(key));
-        }
+        templateParams = getVerificationTemplateParams(identifier, passphrase.getValue(), templateParams != null ? templateParams : new HashMap<>());
 
         if (identifier.getIdentifierType().getId().equals(DataConstants.IdentifierTypes.EMAIL.getValue())) {
             try {
@@ -380,6 +461,47 @@ public class UserServiceImpl implements UserService {
         }
     }
 
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void sendIdentifierVerificationCodes(Map<Identifier, Passphrase> verificationCodes, Locale locale) {
+        List<BulkNotificationRecipient> emailRecipients = new ArrayList<>();
+        List<BulkNotificationRecipient> smsRecipients = new ArrayList<>();
+        for (Map.Entry<Identifier, Passphrase> entry : verificationCodes.entrySet()) {
+            Identifier identifier = entry.getKey();
+            BulkNotificationRecipient recipient = new BulkNotificationRecipient(identifier.getValue(),
+                    getVerificationTemplateParams(identifier, entry.getValue().getValue(), new HashMap<>()), identifier.getUser().getId());
+            if (identifier.getIdentifierType().getId().equals(DataConstants.IdentifierTypes.EMAIL.getValue())) {
+                emailRecipients.add(recipient);
+            } else if (identifier.getIdentifierType().getId().equals(DataConstants.IdentifierTypes.PHONE.getValue())) {
+                smsRecipients.add(recipient);
+            }
+        }
+
+        if (!emailRecipients.isEmpty()) {
+            notificationService.sendBulk(DataConstants.TemplateTypes.EMAIL_VERIFICATION.getValue(), locale,
+                    com.gracelogic.platform.notification.service.DataConstants.NotificationMethods.EMAIL.getValue(),
+                    propertyService.getPropertyValue("notification:smtp_from"), 0, emailRecipients);
+        }
+        if (!smsRecipients.isEmpty()) {
+            notificationService.sendBulk(DataConstants.TemplateTypes.SMS_VERIFICATION.getValue(), locale,
+                    com.gracelogic.platform.notification.service.DataConstants.NotificationMethods.SMS.getValue(),
+                    propertyService.getPropertyValue("notification:sms_from"), 0, smsRecipients);
+        }
+    }
+
+    private Map<String, String> getVerificationTemplateParams(Identifier identifier, String verificationCode, Map<String, String> templateParams) {
+        templateParams.put("userId", identifier.getUser().getId().toString());
+        templateParams.put("identifierTypeId", identifier.getIdentifierType().getId().toString());
+        templateParams.put("identifierId", identifier.getId().toString());
+        templateParams.put("baseUrl", propertyService.getPropertyValue("web:base_url"));
+        templateParams.put("verificationCode", verificationCode);
+        Map<String, String> fields = JsonUtils.jsonToMap(identifier.getUser().getFields());
+        for (String key : fields.keySet()) {
+            templateParams.put(key, fields.get(key));
+        }
+        return templateParams;
+    }
+
     @Transactional(rollbackFor = Exception.class)
     @Override
     public void addRoleToUser(User user, Collection<UUID> roleIds) {
@@ -614,36 +736,29 @@ public class UserServiceImpl implements UserService {
         EntityListResponse<UserDTO> entityListResponse = new EntityListResponse<UserDTO>(totalCount, count, page, start);
 
         List<User> items = userDao.getUsers(identifierValue, approved, blocked, fields, sortField, sortDir, entityListResponse.getStartRecord(), count);
-        Set<UUID> userIds = new HashSet<>();
-        for (User user : items) {
-            userIds.add(user.getId());
-        }
-
-        List<UserRole> userRoles = Collections.emptyList();
-        List<Identifier> identifiers = Collections.emptyList();
 
+        Map<UUID, List<UserRole>> userRoles = Collections.emptyMap();
+        Map<UUID, List<Identifier>> identifiers = Collections.emptyMap();
 
-        Map<String, Object> params = new HashMap<>();
-        params.put("userIds", userIds);
         if (!items.isEmpty()) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("userIds", GroupingUtils.getIds(items));
             if (fetchRoles) {
-                userRoles = idObjectService.getList(UserRole.class, null, "el.user.id in (:userIds)", params, null, null, null);
+                userRoles = GroupingUtils.groupBy(idObjectService.getList(UserRole.class, null, "el.user.id in (:userIds)", params, null, null, null),
+                        ur -> ur.getUser().getId());
             }
-            identifiers = idObjectService.getList(Identifier.class, null, "el.user.id in (:userIds) ", params, null, null, null);
+            identifiers = GroupingUtils.groupBy(idObjectService.getList(Identifier.class, null, "el.user.id in (:userIds) ", params, null, null, null),
+                    identifier -> identifier.getUser().getId());
         }
 
         for (User user : items) {
             UserDTO el = UserDTO.prepare(user);
 
-            for (UserRole ur : userRoles) {
-                if (ur.getUser().getId().equals(user.getId())) {
-                    el.getRoles().add(ur.getRole().getId());
-                }
+            for (UserRole ur : GroupingUtils.getGroup(userRoles, user.getId())) {
+                el.getRoles().add(ur.getRole().getId());
             }
-            for (Identifier identifier : identifiers) {
-                if (identifier.getUser().getId().equals(user.getId())) {
-                    el.getIdentifiers().add(IdentifierDTO.prepare(identifier));
-                }
+            for (Identifier identifier : GroupingUtils.getGroup(identifiers, user.getId())) {
+                el.getIdentifiers().add(IdentifierDTO.prepare(identifier));
             }
 
             entityListResponse.addData(el);
@@ -871,7 +986,7 @@ public class UserServiceImpl implements UserService {
         } else {
             IdentifierType identifierType = ds.get(IdentifierType.class, identifierTypeId);
             if (!StringUtils.isEmpty(identifierType.getValidationRegex())) {
-                Pattern p = Pattern.compile(identifierType.getValidationRegex());
+                Pattern p = patternCache.get(identifierType.getValidationRegex());
                 Matcher m = p.matcher(identifierValue);
                 if (!m.matches()) {
                     return false;
@@ -913,12 +1028,76 @@ public class UserServiceImpl implements UserService {
         }
 
         PassphraseType passphraseType = ds.get(PassphraseType.class, passphrase.getPassphraseType().getId());
-        if (passphraseType.getPassphraseEncryption().getId().equals(DataConstants.PassphraseEncryptors.OPEN.getValue())) {
-            return StringUtils.equals(passphrase.getValue(), value);
-        } else if (passphraseType.getPassphraseEncryption().getId().equals(DataConstants.PassphraseEncryptors.SHA1_WITH_SALT.getValue())) {
-            return StringUtils.equals(DigestUtils.shaHex(value.concat(passphrase.getSalt())), passphrase.getValue());
+        final PassphraseEncryptor encryptor = getStoredPassphraseEncryptor(passphrase, getPassphraseEncryptor(passphraseType.getPassphraseEncryption().getId()));
+        if (encryptor == null || value == null) {
+            return false;
+        }
+        return executePassphraseTask(encryptor, () -> encryptor.matches(passphrase, value));
+    }
+
+    private PassphraseEncryptor getPassphraseEncryptor(UUID passphraseEncryptionId) {
+        for (PassphraseEncryptor encryptor : passphraseEncryptors) {
+            if (encryptor.supports(passphraseEncryptionId)) {
+                return encryptor;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns encryptor that produced the stored value, it differs from the configured one
+     * when the passphrase type was switched to another encryption after the passphrase was created.
+     */
+    private PassphraseEncryptor getStoredPassphraseEncryptor(Passphrase passphrase, PassphraseEncryptor configured) {
+        if (configured != null && configured.isEncoded(passphrase)) {
+            return configured;
+        }
+        for (PassphraseEncryptor encryptor : passphraseEncryptors) {
+            if (encryptor != configured && encryptor.isEncoded(passphrase)) {
+                return encryptor;
+            }
+        }
+        return configured;
+    }
+
+    /**
+     * Re-encrypts passphrase with the configured adaptive encryption and work factor after successful sign in.
+     */
+    private void upgradePassphrase(final Passphrase passphrase, final String value) {
+        PassphraseType passphraseType = ds.get(PassphraseType.class, passphrase.getPassphraseType().getId());
+        final PassphraseEncryptor configured = getPassphraseEncryptor(passphraseType.getPassphraseEncryption().getId());
+        if (configured == null || !configured.isAdaptive()) {
+            return;
+        }
+        if (getStoredPassphraseEncryptor(passphrase, configured) != configured || configured.needsUpgrade(passphrase)) {
+            executePassphraseTask(configured, () -> {
+                configured.encrypt(passphrase, value);
+                return true;
+            });
+            idObjectService.save(passphrase);
+        }
+    }
+
+    /**
+     * Runs adaptive hashing on the passphrase executor. When its queue is full RejectedExecutionException
+     * is thrown instead of queueing more work than the pool can handle.
+     */
+    private boolean executePassphraseTask(PassphraseEncryptor encryptor, Callable<Boolean> task) {
+        try {
+            if (!encryptor.isAdaptive()) {
+                return task.call();
+            }
+            return passphraseExecutor.submit(task).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing passphrase", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
         }
-        return false;
     }
 
     @Override
@@ -927,25 +1106,39 @@ public class UserServiceImpl implements UserService {
         Passphrase passphrase = getActualPassphrase(user.getId(), passphraseTypeId, referenceObjectId, true);
         if (passphrase == null && createNewIfNotExist) {
             PassphraseType passphraseType = ds.get(PassphraseType.class, passphraseTypeId);
-            String value = null;
-            if (passphraseType.getPassphraseGenerator() != null) {
-                if (passphraseType.getPassphraseGenerator().getId().equals(DataConstants.PassphraseGenerators.STATIC_FOUR_ZEROS.getValue())) {
-                    value = "0000";
-                }
-                else if (passphraseType.getPassphraseGenerator().getId().equals(DataConstants.PassphraseGenerators.RANDOM_FOUR_DIGITS.getValue())) {
-                    value = String.valueOf(generateCode(9999, 1000));
-                }
-                else if (passphraseType.getPassphraseGenerator().getId().equals(DataConstants.PassphraseGenerators.RANDOM_SIX_DIGITS.getValue())) {
-                    value = String.valueOf(generateCode(999999, 100000));
-                }
-            }
-
-            passphrase = createPassphrase(user, passphraseType, value, referenceObjectId);
+            passphrase = createPassphrase(user, passphraseType, generatePassphraseValue(passphraseType), referenceObjectId);
         }
 
         return passphrase;
     }
 
+    @Override
+    public Passphrase prepareVerificationCode(User user, UUID referenceObjectId, UUID passphraseTypeId) {
+        PassphraseType passphraseType = ds.get(PassphraseType.class, passphraseTypeId);
+        Passphrase passphrase = newPassphrase(user, passphraseType, referenceObjectId);
+        PassphraseEncryptor encryptor = getPassphraseEncryptor(passphraseType.getPassphraseEncryption().getId());
+        if (encryptor != null) {
+            encryptor.encrypt(passphrase, generatePassphraseValue(passphraseType));
+        }
+        return passphrase;
+    }
+
+    private static String generatePassphraseValue(PassphraseType passphraseType) {
+        String value = null;
+        if (passphraseType.getPassphraseGenerator() != null) {
+            if (passphraseType.getPassphraseGenerator().getId().equals(DataConstants.PassphraseGenerators.STATIC_FOUR_ZEROS.getValue())) {
+                value = "0000";
+            }
+            else if (passphraseType.getPassphraseGenerator().getId().equals(DataConstants.PassphraseGenerators.RANDOM_FOUR_DIGITS.getValue())) {
+                value = String.valueOf(generateCode(9999, 1000));
+            }
+            else if (passphraseType.getPassphraseGenerator().getId().equals(DataConstants.PassphraseGenerators.RANDOM_SIX_DIGITS.getValue())) {
+                value = String.valueOf(generateCode(999999, 100000));
+            }
+        }
+        return value;
+    }
+
     @Override
     public Passphrase getActualPassphrase(UUID userId, UUID passphraseTypeId, UUID referenceObjectId, boolean archiveExpiredPassphrase) {
         PassphraseType passphraseType = ds.get(PassphraseType.class, passphraseTypeId);
@@ -995,51 +1188,50 @@ public class UserServiceImpl implements UserService {
                 throw new UserBlockedException();
             }
             if (!StringUtils.isEmpty(user.getAllowedAddresses())) {
-                StringTokenizer stringTokenizer = new StringTokenizer(user.getAllowedAddresses(), " ,");
-                boolean inRange = false;
-                while (stringTokenizer.hasMoreTokens()) {
-                    String token = stringTokenizer.nextToken();
-                    if (new SubnetUtils(token).getInfo().isInRange(remoteAddress)) {
-                        inRange = true;
-                        break;
-                    }
-                }
-                if (!inRange) {
+                if (!allowedAddressesCache.get(user.getAllowedAddresses()).contains(remoteAddress)) {
                     throw new NotAllowedIPException();
                 }
             }
 
 
             if (!StringUtils.isEmpty(user.getAuthScheduleCronExpression())) {
-                try {
-                    CronExpression cronExpression = new CronExpression(user.getAuthScheduleCronExpression());
-                    if (!cronExpression.isSatisfiedBy(currentDate)) {
+                CronExpression cronExpression = getCronExpression(user.getAuthScheduleCronExpression());
+                if (cronExpression != null) {
+                    boolean satisfied;
+                    //CronExpression keeps mutable state while evaluating
+                    synchronized (cronExpression) {
+                        satisfied = cronExpression.isSatisfiedBy(currentDate);
+                    }
+                    if (!satisfied) {
                         throw new UserBlockedException("User is blocked or not allowed to sign in at this time");
                     }
-                } catch (ParseException ignored) {
                 }
             }
 
-            Date startDate = new Date(currentTimeMillis - propertyService.getPropertyValueAsInteger("user:block_period"));
-            Map<String, Object> params = new HashMap<>();
-            params.put("identifierId", identifier.getId());
-            params.put("startDate", startDate);
-            params.put("endDate", currentDate);
             Integer attemptsToBlock = identifierType.getMaxIncorrectAuthAttempts();
-            Integer checkIncorrectLoginAttempts = idObjectService.checkExist(IncorrectAuthAttempt.class, null, "el.identifier.id=:identifierId and el.created >= :startDate and el.created <= :endDate", params, attemptsToBlock);
+            Integer addressAttemptsToBlock = propertyService.getPropertyValueAsInteger("user:max_incorrect_auth_attempts_per_address");
+            boolean tooManyAttempts = (attemptsToBlock != null && authAttemptLimiter.getIdentifierAttempts(identifier.getId()) >= attemptsToBlock) ||
+                    (addressAttemptsToBlock != null && addressAttemptsToBlock > 0 && authAttemptLimiter.getAddressAttempts(remoteAddress) >= addressAttemptsToBlock) ||
+                    (attemptsToBlock != null && isLockedOut(identifier.getId()));
 
-            if (checkIncorrectLoginAttempts < attemptsToBlock) {
+            if (!tooManyAttempts) {
                 Passphrase passphrase = getActualPassphrase(user.getId(), DataConstants.PassphraseTypes.USER_PASSWORD.getValue(), user.getId(), true);
                 if (trust || isPassphraseValueValid(passphrase, password)) {
+                    if (!trust) {
+                        upgradePassphrase(passphrase, password);
+                    }
                     user.setLastVisitDt(new Date());
                     user.setLastVisitIP(remoteAddress);
                     user = idObjectService.save(user);
                     return identifier;
                 } else {
-                    IncorrectAuthAttempt incorrectAuthAttempt = new IncorrectAuthAttempt();
-                    incorrectAuthAttempt.setIdentifier(identifier);
-                    incorrectAuthAttempt.setUser(identifier.getUser());
-                    idObjectService.save(incorrectAuthAttempt);
+                    int attempts = authAttemptLimiter.registerFailure(identifier.getId(), remoteAddress);
+                    if (isAuditedAuthAttempt(attempts, attemptsToBlock)) {
+                        IncorrectAuthAttempt incorrectAuthAttempt = new IncorrectAuthAttempt();
+                        incorrectAuthAttempt.setIdentifier(identifier);
+                        incorrectAuthAttempt.setUser(identifier.getUser());
+                        idObjectService.save(incorrectAuthAttempt);
+                    }
 
                     throw new InvalidPassphraseException();
                 }
@@ -1051,27 +1243,92 @@ public class UserServiceImpl implements UserService {
         return null;
     }
 
+    /**
+     * Attempts are counted in memory, only the attempt that locks identifier out and every
+     * user:incorrect_auth_attempt_sampling-th one (10 by default) after it are stored for audit.
+     * When identifier type has no limit every sampled attempt is stored.
+     */
+    private boolean isAuditedAuthAttempt(int attempts, Integer attemptsToBlock) {
+        if (attemptsToBlock != null && attempts <= attemptsToBlock) {
+            return attempts == attemptsToBlock;
+        }
+        Integer sampling = propertyService.getPropertyValueAsInteger("user:incorrect_auth_attempt_sampling");
+        return attempts % (sampling != null && sampling > 0 ? sampling : DEFAULT_INCORRECT_AUTH_ATTEMPT_SAMPLING) == 0;
+    }
+
+    /**
+     * In-memory counters are empty after restart and see only attempts made on this node, so identifier is also
+     * locked out when any node stored its lockout attempt within user:block_period.
+     */
+    private boolean isLockedOut(UUID identifierId) {
+        Integer blockPeriod = propertyService.getPropertyValueAsInteger("user:block_period");
+        if (blockPeriod == null || blockPeriod <= 0) {
+            return false;
+        }
+
+        Map<String, Object> params = new HashMap<>();
+        params.put("identifierId", identifierId);
+        params.put("since", new Date(System.currentTimeMillis() - blockPeriod));
+        return idObjectService.getCount(IncorrectAuthAttempt.class, null, null, "el.identifier.id=:identifierId and el.created>=:since", params) > 0;
+    }
+
+    /**
+     * Returns compiled expression or null when it is not valid.
+     */
+    private CronExpression getCronExpression(String expression) {
+        CronExpression cronExpression = cronExpressionCache.get(expression);
+        if (cronExpression == null) {
+            try {
+                cronExpression = new CronExpression(expression);
+                cronExpressionCache.put(expression, cronExpression);
+            } catch (ParseException ignored) {
+            }
+        }
+        return cronExpression;
+    }
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public Passphrase updatePassphrase(User user, String value, UUID passphraseTypeId, UUID referenceObjectId, boolean archiveOtherPassphrases) throws InvalidPassphraseException {
         PassphraseType passphraseType = idObjectService.getObjectById(PassphraseType.class, passphraseTypeId);
+        checkPassphraseValue(passphraseType, value);
+
+        if (archiveOtherPassphrases) {
+            archiveActualPassphrases(user.getId(), passphraseTypeId, referenceObjectId);
+        }
+
+        return createPassphrase(user, passphraseType, value, referenceObjectId);
+    }
+
+    /**
+     * Hashes in the calling thread instead of the passphrase executor, so bulk callers can use their own pool
+     * without competing with sign-in requests.
+     */
+    @Override
+    public Passphrase preparePassphrase(User user, UUID passphraseTypeId, String value, UUID referenceObjectId) throws InvalidPassphraseException {
+        PassphraseType passphraseType = ds.get(PassphraseType.class, passphraseTypeId);
+        checkPassphraseValue(passphraseType, value);
+
+        Passphrase passphrase = newPassphrase(user, passphraseType, referenceObjectId);
+        PassphraseEncryptor encryptor = getPassphraseEncryptor(passphraseType.getPassphraseEncryption().getId());
+        if (encryptor != null) {
+            encryptor.encrypt(passphrase, value);
+        }
+        return passphrase;
+    }
+
+    private void checkPassphraseValue(PassphraseType passphraseType, String value) throws InvalidPassphraseException {
         if (StringUtils.isEmpty(value)) {
             throw new InvalidPassphraseException();
         } else {
             if (!StringUtils.isEmpty(passphraseType.getValidationRegex())) {
-                Pattern p = Pattern.compile(passphraseType.getValidationRegex());
+                Pattern p = patternCache.get(passphraseType.getValidationRegex());
                 Matcher m = p.matcher(value);
                 if (!m.matches()) {
                     throw new InvalidPassphraseException();
                 }
             }
         }
-
-        if (archiveOtherPassphrases) {
-            archiveActualPassphrases(user.getId(), passphraseTypeId, referenceObjectId);
-        }
-
-        return createPassphrase(user, passphraseType, value, referenceObjectId);
     }
 
     @Override
@@ -1099,23 +1356,24 @@ public class UserServiceImpl implements UserService {
     }
 
     private Passphrase createPassphrase(User user, PassphraseType passphraseType, String value, UUID referenceObjectId) {
+        Passphrase passphrase = newPassphrase(user, passphraseType, referenceObjectId);
+        final PassphraseEncryptor encryptor = getPassphraseEncryptor(passphraseType.getPassphraseEncryption().getId());
+        if (encryptor != null) {
+            executePassphraseTask(encryptor, () -> {
+                encryptor.encrypt(passphrase, value);
+                return true;
+            });
+        }
+        return idObjectService.save(passphrase);
+    }
+
+    private Passphrase newPassphrase(User user, PassphraseType passphraseType, UUID referenceObjectId) {
         Passphrase passphrase = new Passphrase();
         passphrase.setUser(user);
         passphrase.setPassphraseState(ds.get(PassphraseState.class, DataConstants.PassphraseStates.ACTUAL.getValue()));
         passphrase.setPassphraseType(passphraseType);
         passphrase.setReferenceObjectId(referenceObjectId);
-        if (passphraseType.getPassphraseEncryption().getId().equals(DataConstants.PassphraseEncryptors.OPEN.getValue())) {
-            passphrase.setValue(value);
-        } else if (passphraseType.getPassphraseEncryption().getId().equals(DataConstants.PassphraseEncryptors.SHA1_WITH_SALT.getValue())) {
-            passphrase.setSalt(UserServiceImpl.generateCryptographicSalt());
-            passphrase.setValue(DigestUtils.shaHex(value.concat(passphrase.getSalt())));
-        }
-        return idObjectService.save(passphrase);
-    }
-
-    private static String generateCryptographicSalt() {
-        Random random = new Random(System.currentTimeMillis());
-        return DigestUtils.md5Hex(String.valueOf(random.nextLong()));
+        return passphrase;
     }
 
     @Override
@@ -1172,18 +1430,14 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    @Transactional
     public void blockExpiredUsers() {
-        Date currentTime = new Date();
+        accountExpirationService.blockExpiredUsers();
+    }
 
-        Map<String, Object> param = new HashMap<>();
-        param.put("currentTime", currentTime);
-        List<User> users = idObjectService.getList(User.class, null, "el.blocked=false and el.blockAfterDt <= :currentTime", param, null, null, null);
-        for (User user : users) {
-            user.setBlocked(true);
-            user.setBlockedDt(currentTime);
-            idObjectService.save(user);
-        }
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public void createSearchIndexes(Collection<String> fieldKeys) {
+        userDao.createSearchIndexes(fieldKeys);
     }
 
     @Override
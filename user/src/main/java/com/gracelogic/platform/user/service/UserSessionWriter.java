@@ -0,0 +1,161 @@
+package com.gracelogic.platform.user.service;
+
+import com.gracelogic.platform.property.service.PropertyService;
+import com.gracelogic.platform.user.dto.UserSessionDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stores session state changes in the background. Changes are taken from a bounded queue, collapsed by session id
+ * and upserted in batches. Enqueue never blocks: when the queue (user:session_queue_size) is full the change is dropped.
+ * When a batch fails its sessions are saved one by one and only the failing ones are dropped.
+ */
+@Service
+public class UserSessionWriter {
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private PropertyService propertyService;
+
+    private static final int DEFAULT_QUEUE_SIZE = 10000;
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final long FLUSH_INTERVAL = 1000L;
+    private static final long SHUTDOWN_TIMEOUT = 10000L;
+
+    private static Logger logger = LoggerFactory.getLogger(UserSessionWriter.class);
+
+    private BlockingQueue<UserSessionDTO> queue;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean running = false;
+
+    private Thread writerThread;
+
+    @PostConstruct
+    private void init() {
+        Integer queueSize = propertyService.getPropertyValueAsInteger("user:session_queue_size");
+        queue = new ArrayBlockingQueue<>(queueSize != null && queueSize > 0 ? queueSize : DEFAULT_QUEUE_SIZE);
+
+        running = true;
+        writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "user-session-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Remaining changes are flushed before shutdown.
+     */
+    @PreDestroy
+    private void destroy() {
+        running = false;
+        try {
+            writerThread.join(SHUTDOWN_TIMEOUT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void enqueue(UserSessionDTO userSession) {
+        if (!queue.offer(userSession)) {
+            long count = dropped.incrementAndGet();
+            if (count == 1 || count % 1000 == 0) {
+                logger.warn("User session queue is full, dropped session updates: {}", count);
+            }
+        }
+    }
+
+    private void write() {
+        while (running || !queue.isEmpty()) {
+            try {
+                UserSessionDTO first = queue.poll(FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<UserSessionDTO> batch = new ArrayList<>(MAX_BATCH_SIZE);
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    private void flush(List<UserSessionDTO> batch) {
+        Map<String, UserSessionDTO> sessions = new LinkedHashMap<>();
+        for (UserSessionDTO userSession : batch) {
+            UserSessionDTO previous = sessions.get(userSession.getSessionId());
+            if (previous != null) {
+                merge(previous, userSession);
+            }
+            sessions.put(userSession.getSessionId(), userSession);
+        }
+
+        try {
+            userService.saveUserSessions(sessions.values());
+        } catch (Exception e) {
+            logger.warn("Failed to save user sessions batch of {}, saving one by one", sessions.size(), e);
+            saveOneByOne(sessions.values());
+        }
+    }
+
+    /**
+     * Each session is saved in its own transaction, so only failing ones are dropped.
+     */
+    private void saveOneByOne(Collection<UserSessionDTO> sessions) {
+        int failed = 0;
+        for (UserSessionDTO userSession : sessions) {
+            try {
+                userService.saveUserSessions(Collections.singletonList(userSession));
+            } catch (Exception e) {
+                failed++;
+                logger.debug("Failed to save user session: {}", userSession.getSessionId(), e);
+            }
+        }
+        if (failed > 0) {
+            logger.error("Failed to save user sessions, dropped: {} of {}", failed, sessions.size());
+        }
+    }
+
+    /**
+     * Later change keeps the fields that are written only on insert from the earlier one.
+     */
+    private static void merge(UserSessionDTO previous, UserSessionDTO userSession) {
+        userSession.setCreated(previous.getCreated());
+        if (userSession.getUserId() == null) {
+            userSession.setUserId(previous.getUserId());
+        }
+        if (userSession.getIdentifierId() == null) {
+            userSession.setIdentifierId(previous.getIdentifierId());
+        }
+        if (userSession.getAuthIp() == null) {
+            userSession.setAuthIp(previous.getAuthIp());
+        }
+        if (userSession.getUserAgent() == null) {
+            userSession.setUserAgent(previous.getUserAgent());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.gracelogic.platform.user.service.passphrase;
+
+import com.gracelogic.platform.property.service.PropertyService;
+import com.gracelogic.platform.user.model.Passphrase;
+import com.gracelogic.platform.user.service.DataConstants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.crypto.bcrypt.BCrypt;
+import org.springframework.stereotype.Service;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * BCrypt with cost from user:bcrypt_cost. Only the first 72 bytes of the passphrase are significant.
+ */
+@Service
+public class BCryptPassphraseEncryptor implements PassphraseEncryptor {
+    @Autowired
+    private PropertyService propertyService;
+
+    private static final Pattern BCRYPT = Pattern.compile("\\$2[aby]?\\$(\\d\\d)\\$[./0-9A-Za-z]{53}");
+    private static final int DEFAULT_COST = 12;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    @Override
+    public boolean supports(UUID passphraseEncryptionId) {
+        return DataConstants.PassphraseEncryptors.BCRYPT.getValue().equals(passphraseEncryptionId);
+    }
+
+    @Override
+    public boolean isEncoded(Passphrase passphrase) {
+        return passphrase.getValue() != null && BCRYPT.matcher(passphrase.getValue()).matches();
+    }
+
+    @Override
+    public void encrypt(Passphrase passphrase, String value) {
+        passphrase.setSalt(null);
+        passphrase.setValue(BCrypt.hashpw(value, BCrypt.gensalt(getCost(), secureRandom)));
+    }
+
+    @Override
+    public boolean matches(Passphrase passphrase, String value) {
+        return isEncoded(passphrase) && BCrypt.checkpw(value, passphrase.getValue());
+    }
+
+    @Override
+    public boolean needsUpgrade(Passphrase passphrase) {
+        if (passphrase.getValue() == null) {
+            return false;
+        }
+        Matcher matcher = BCRYPT.matcher(passphrase.getValue());
+        return matcher.matches() && Integer.parseInt(matcher.group(1)) < getCost();
+    }
+
+    @Override
+    public boolean isAdaptive() {
+        return true;
+    }
+
+    private int getCost() {
+        Integer cost = propertyService.getPropertyValueAsInteger("user:bcrypt_cost");
+        return cost != null && cost >= 4 && cost <= 31 ? cost : DEFAULT_COST;
+    }
+}
@@ -0,0 +1,45 @@
+package com.gracelogic.platform.user.service.passphrase;
+
+import com.gracelogic.platform.user.model.Passphrase;
+import com.gracelogic.platform.user.service.DataConstants;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+
+import java.util.UUID;
+
+@Service
+public class OpenPassphraseEncryptor implements PassphraseEncryptor {
+    @Override
+    public boolean supports(UUID passphraseEncryptionId) {
+        return DataConstants.PassphraseEncryptors.OPEN.getValue().equals(passphraseEncryptionId);
+    }
+
+    /**
+     * Plain value can not be told apart from anything else.
+     */
+    @Override
+    public boolean isEncoded(Passphrase passphrase) {
+        return false;
+    }
+
+    @Override
+    public void encrypt(Passphrase passphrase, String value) {
+        passphrase.setSalt(null);
+        passphrase.setValue(value);
+    }
+
+    @Override
+    public boolean matches(Passphrase passphrase, String value) {
+        return StringUtils.equals(passphrase.getValue(), value);
+    }
+
+    @Override
+    public boolean needsUpgrade(Passphrase passphrase) {
+        return false;
+    }
+
+    @Override
+    public boolean isAdaptive() {
+        return false;
+    }
+}
@@ -0,0 +1,36 @@
+package com.gracelogic.platform.user.service.passphrase;
+
+import com.gracelogic.platform.user.model.Passphrase;
+
+import java.util.UUID;
+
+/**
+ * Hashing strategy for one PassphraseEncryption. Encoded values of adaptive encryptors carry their own
+ * parameters, so a passphrase is verified by the encryptor that produced it even after the type is switched
+ * to another encryption or work factor.
+ */
+public interface PassphraseEncryptor {
+    boolean supports(UUID passphraseEncryptionId);
+
+    /**
+     * Returns true when stored value is recognized as produced by this encryptor.
+     */
+    boolean isEncoded(Passphrase passphrase);
+
+    /**
+     * Sets value and salt of the passphrase.
+     */
+    void encrypt(Passphrase passphrase, String value);
+
+    boolean matches(Passphrase passphrase, String value);
+
+    /**
+     * Returns true when stored value was produced with a lower work factor than configured now.
+     */
+    boolean needsUpgrade(Passphrase passphrase);
+
+    /**
+     * Adaptive encryptors are deliberately slow and are executed on the bounded passphrase executor.
+     */
+    boolean isAdaptive();
+}
@@ -0,0 +1,104 @@
+package com.gracelogic.platform.user.service.passphrase;
+
+import com.gracelogic.platform.property.service.PropertyService;
+import com.gracelogic.platform.user.model.Passphrase;
+import com.gracelogic.platform.user.service.DataConstants;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * PBKDF2 with HMAC-SHA256. Value is stored as $pbkdf2-sha256$&lt;iterations&gt;$&lt;salt&gt;$&lt;hash&gt;,
+ * iterations are taken from user:pbkdf2_iterations.
+ */
+@Service
+public class Pbkdf2PassphraseEncryptor implements PassphraseEncryptor {
+    @Autowired
+    private PropertyService propertyService;
+
+    private static final String PREFIX = "$pbkdf2-sha256$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int DEFAULT_ITERATIONS = 310000;
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 32;
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    @Override
+    public boolean supports(UUID passphraseEncryptionId) {
+        return DataConstants.PassphraseEncryptors.PBKDF2.getValue().equals(passphraseEncryptionId);
+    }
+
+    @Override
+    public boolean isEncoded(Passphrase passphrase) {
+        return passphrase.getValue() != null && passphrase.getValue().startsWith(PREFIX);
+    }
+
+    @Override
+    public void encrypt(Passphrase passphrase, String value) {
+        int iterations = getIterations();
+        byte[] salt = new byte[SALT_LENGTH];
+        secureRandom.nextBytes(salt);
+
+        Base64.Encoder encoder = Base64.getEncoder().withoutPadding();
+        passphrase.setSalt(null);
+        passphrase.setValue(PREFIX + iterations + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash(value, salt, iterations, HASH_LENGTH)));
+    }
+
+    @Override
+    public boolean matches(Passphrase passphrase, String value) {
+        String[] parts = split(passphrase);
+        if (parts == null) {
+            return false;
+        }
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] expected = decoder.decode(parts[2]);
+        byte[] actual = hash(value, decoder.decode(parts[1]), Integer.parseInt(parts[0]), expected.length);
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    @Override
+    public boolean needsUpgrade(Passphrase passphrase) {
+        String[] parts = split(passphrase);
+        return parts != null && Integer.parseInt(parts[0]) < getIterations();
+    }
+
+    @Override
+    public boolean isAdaptive() {
+        return true;
+    }
+
+    /**
+     * Returns iterations, salt and hash or null when value is malformed.
+     */
+    private static String[] split(Passphrase passphrase) {
+        if (passphrase.getValue() == null || !passphrase.getValue().startsWith(PREFIX)) {
+            return null;
+        }
+        String[] parts = passphrase.getValue().substring(PREFIX.length()).split("\\$");
+        return parts.length == 3 && parts[0].matches("\\d{1,9}") ? parts : null;
+    }
+
+    private static byte[] hash(String value, byte[] salt, int iterations, int length) {
+        PBEKeySpec spec = new PBEKeySpec(value.toCharArray(), salt, iterations, length * 8);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to hash passphrase", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private int getIterations() {
+        Integer iterations = propertyService.getPropertyValueAsInteger("user:pbkdf2_iterations");
+        return iterations != null && iterations > 0 ? iterations : DEFAULT_ITERATIONS;
+    }
+}
@@ -0,0 +1,55 @@
+package com.gracelogic.platform.user.service.passphrase;
+
+import com.gracelogic.platform.user.model.Passphrase;
+import com.gracelogic.platform.user.service.DataConstants;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+
+import java.util.Random;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Legacy salted SHA-1, kept to verify existing passphrases until they are upgraded on sign in.
+ */
+@Service
+public class Sha1PassphraseEncryptor implements PassphraseEncryptor {
+    private static final Pattern SHA1_HEX = Pattern.compile("[0-9a-fA-F]{40}");
+
+    @Override
+    public boolean supports(UUID passphraseEncryptionId) {
+        return DataConstants.PassphraseEncryptors.SHA1_WITH_SALT.getValue().equals(passphraseEncryptionId);
+    }
+
+    @Override
+    public boolean isEncoded(Passphrase passphrase) {
+        return passphrase.getSalt() != null && passphrase.getValue() != null && SHA1_HEX.matcher(passphrase.getValue()).matches();
+    }
+
+    @Override
+    public void encrypt(Passphrase passphrase, String value) {
+        passphrase.setSalt(generateSalt());
+        passphrase.setValue(DigestUtils.shaHex(value.concat(passphrase.getSalt())));
+    }
+
+    @Override
+    public boolean matches(Passphrase passphrase, String value) {
+        return passphrase.getSalt() != null && StringUtils.equals(DigestUtils.shaHex(value.concat(passphrase.getSalt())), passphrase.getValue());
+    }
+
+    @Override
+    public boolean needsUpgrade(Passphrase passphrase) {
+        return false;
+    }
+
+    @Override
+    public boolean isAdaptive() {
+        return false;
+    }
+
+    private static String generateSalt() {
+        Random random = new Random(System.currentTimeMillis());
+        return DigestUtils.md5Hex(String.valueOf(random.nextLong()));
+    }
+}
@@ -0,0 +1,131 @@
+package com.gracelogic.platform.user.service.postgres;
+
+import com.gracelogic.platform.db.service.DatabaseChannel;
+import com.gracelogic.platform.db.service.DatabaseChannelListener;
+import com.gracelogic.platform.property.service.PropertyService;
+import com.gracelogic.platform.user.condition.OnPostgreSQLSessionRegistryConditional;
+import com.gracelogic.platform.user.dao.UserDao;
+import com.gracelogic.platform.user.service.SessionRegistry;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cluster registry: every node keeps a near-cache of last sessions which is updated by PostgreSQL LISTEN/NOTIFY
+ * messages, so requests are checked without a query. NOTIFY is transactional and reaches other nodes after commit.
+ * Cache is reloaded from the database every time the listener connects since messages may have been missed.
+ * Session rows are written asynchronously, so on reload every user keeps the more recently registered of the cached
+ * and the stored session.
+ */
+@Service
+@Conditional(OnPostgreSQLSessionRegistryConditional.class)
+public class SessionRegistryImpl implements SessionRegistry {
+    private static final String CHANNEL = "cmn_user_session";
+
+    private static Logger logger = LoggerFactory.getLogger(SessionRegistryImpl.class);
+
+    @Autowired
+    private DatabaseChannel databaseChannel;
+
+    @Autowired
+    private UserDao userDao;
+
+    @Autowired
+    private PropertyService propertyService;
+
+    private final Map<UUID, LastSession> actualSessions = new ConcurrentHashMap<>();
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private volatile boolean enabled = false;
+
+    @PostConstruct
+    private void init() {
+        Boolean oneSessionPerUser = propertyService.getPropertyValueAsBoolean("user:one_session_per_user");
+        if (oneSessionPerUser == null || !oneSessionPerUser) {
+            return;
+        }
+
+        enabled = true;
+        databaseChannel.listen(CHANNEL, new DatabaseChannelListener() {
+            @Override
+            public void onConnected() {
+                reload();
+            }
+
+            @Override
+            public void onMessage(String payload) {
+                handle(payload);
+            }
+        });
+    }
+
+    @Override
+    public void registerSession(UUID userId, String sessionId) {
+        LastSession actualSession = actualSessions.get(userId);
+        if (actualSession != null && StringUtils.equals(actualSession.sessionId, sessionId)) {
+            return;
+        }
+
+        long registered = System.currentTimeMillis();
+        put(userId, new LastSession(sessionId, registered));
+        if (enabled) {
+            databaseChannel.publish(CHANNEL, nodeId + "|" + userId + "|" + registered + "|" + sessionId);
+        }
+    }
+
+    @Override
+    public void restoreSession(UUID userId, String sessionId) {
+        put(userId, new LastSession(sessionId, 0L));
+    }
+
+    @Override
+    public boolean isLastSession(UUID userId, String sessionId) {
+        LastSession actualSession = actualSessions.get(userId);
+        return actualSession != null && StringUtils.equalsIgnoreCase(sessionId, actualSession.sessionId);
+    }
+
+    private void put(UUID userId, LastSession session) {
+        actualSessions.merge(userId, session, (current, candidate) -> candidate.registered >= current.registered ? candidate : current);
+    }
+
+    private void reload() {
+        List<Object[]> lastActiveUsersSessions = userDao.getLastActiveUsersSessions();
+        for (Object[] obj : lastActiveUsersSessions) {
+            put(UUID.fromString((String) obj[0]), new LastSession((String) obj[1], ((Date) obj[2]).getTime()));
+        }
+        logger.info("Reloaded last users sessions: {}", lastActiveUsersSessions.size());
+    }
+
+    private void handle(String payload) {
+        try {
+            String[] parts = payload.split("\\|", 4);
+            if (parts.length < 4 || nodeId.equals(parts[0])) {
+                return;
+            }
+            put(UUID.fromString(parts[1]), new LastSession(parts[3], Long.parseLong(parts[2])));
+        } catch (Exception e) {
+            logger.warn("Failed to handle user session event: {}", payload, e);
+        }
+    }
+
+    private static class LastSession {
+        private final String sessionId;
+        private final long registered;
+
+        private LastSession(String sessionId, long registered) {
+            this.sessionId = sessionId;
+            this.registered = registered;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.gracelogic.platform.user.filter;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class LocaleFilterTest {
+    @After
+    public void tearDown() {
+        LocaleFilter.setSupportedLocales(null);
+    }
+
+    @Test
+    public void highestWeightWins() {
+        assertEquals(new Locale("ru"), LocaleFilter.resolve("en;q=0.5, ru;q=0.8, de;q=0.3"));
+        assertEquals(new Locale("fr"), LocaleFilter.resolve("en;q=0.9,fr"));
+    }
+
+    @Test
+    public void earlierRangeWinsOnEqualWeights() {
+        assertEquals(new Locale("en"), LocaleFilter.resolve("en,ru"));
+        assertEquals(new Locale("de"), LocaleFilter.resolve("de;q=0.7,en;q=0.7"));
+    }
+
+    @Test
+    public void zeroWeightAndMalformedRangesAreSkipped() {
+        assertEquals(new Locale("ru"), LocaleFilter.resolve("en;q=0,ru;q=0.1"));
+        assertEquals(new Locale("fr"), LocaleFilter.resolve("en;q=abc,de;q=1.5,es;q=0.1234,fr;q=0.2"));
+        assertNull(LocaleFilter.resolve("en;q=0"));
+        assertNull(LocaleFilter.resolve("*"));
+        assertNull(LocaleFilter.resolve(""));
+        assertNull(LocaleFilter.resolve(null));
+    }
+
+    @Test
+    public void matchesSupportedLocales() {
+        LocaleFilter.setSupportedLocales(Arrays.asList(new Locale("en", "US"), new Locale("ru", "RU"), new Locale("ru")));
+        assertEquals(new Locale("ru", "RU"), LocaleFilter.resolve("ru-RU"));
+        assertEquals(new Locale("ru"), LocaleFilter.resolve("ru_KZ"));
+        assertEquals(new Locale("en", "US"), LocaleFilter.resolve("en-GB"));
+        assertEquals(new Locale("ru", "RU"), LocaleFilter.resolve("de,ru-RU;q=0.5"));
+        assertNull(LocaleFilter.resolve("de"));
+    }
+
+    @Test
+    public void supportedLocalesChangeClearsCache() {
+        assertEquals(new Locale("de"), LocaleFilter.resolve("de"));
+        LocaleFilter.setSupportedLocales(Arrays.asList(new Locale("en")));
+        assertNull(LocaleFilter.resolve("de"));
+    }
+}
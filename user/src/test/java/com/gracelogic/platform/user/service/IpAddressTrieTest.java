@@ -0,0 +1,56 @@
+package com.gracelogic.platform.user.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IpAddressTrieTest {
+    @Test
+    public void singleAddressMatchesOnlyItself() {
+        IpAddressTrie trie = IpAddressTrie.parse("192.168.1.10");
+        assertTrue(trie.contains("192.168.1.10"));
+        assertFalse(trie.contains("192.168.1.11"));
+    }
+
+    @Test
+    public void subnetMatchesAddressesInside() {
+        IpAddressTrie trie = IpAddressTrie.parse("10.0.0.0/8, 172.16.0.0/12");
+        assertTrue(trie.contains("10.255.255.255"));
+        assertTrue(trie.contains("172.31.0.1"));
+        assertFalse(trie.contains("172.32.0.1"));
+        assertFalse(trie.contains("11.0.0.1"));
+    }
+
+    @Test
+    public void zeroPrefixMatchesEverything() {
+        IpAddressTrie trie = IpAddressTrie.parse("0.0.0.0/0");
+        assertTrue(trie.contains("8.8.8.8"));
+        assertTrue(trie.contains("255.255.255.255"));
+    }
+
+    @Test
+    public void shorterPrefixCoversLongerOne() {
+        IpAddressTrie trie = IpAddressTrie.parse("192.168.1.0/24 192.168.0.0/16");
+        assertTrue(trie.contains("192.168.200.1"));
+        assertTrue(trie.contains("192.168.1.1"));
+    }
+
+    @Test
+    public void malformedEntriesAreSkipped() {
+        IpAddressTrie trie = IpAddressTrie.parse("300.1.1.1, 10.0.0.0/33, 10.0.0.0/x, 1.2.3, 127.0.0.1");
+        assertTrue(trie.contains("127.0.0.1"));
+        assertFalse(trie.contains("10.0.0.1"));
+        assertFalse(trie.contains("1.2.3.0"));
+    }
+
+    @Test
+    public void malformedAddressIsNotContained() {
+        IpAddressTrie trie = IpAddressTrie.parse("0.0.0.0/0");
+        assertFalse(trie.contains(null));
+        assertFalse(trie.contains(""));
+        assertFalse(trie.contains("1.2.3"));
+        assertFalse(trie.contains("1.2.3.4.5"));
+        assertFalse(trie.contains("1.2.3.256"));
+        assertFalse(trie.contains("::1"));
+    }
+}
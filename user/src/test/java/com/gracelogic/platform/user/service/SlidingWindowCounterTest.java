@@ -0,0 +1,45 @@
+package com.gracelogic.platform.user.service;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SlidingWindowCounterTest {
+    private static final long WINDOW = 1000L;
+
+    @Test
+    public void countsAttemptsInCurrentWindow() {
+        AuthAttemptLimiterImpl.SlidingWindowCounter counter = new AuthAttemptLimiterImpl.SlidingWindowCounter();
+        assertEquals(1, counter.add(10000L, WINDOW));
+        assertEquals(2, counter.add(10100L, WINDOW));
+        assertEquals(3, counter.add(10999L, WINDOW));
+        assertEquals(3, counter.get(10999L, WINDOW));
+    }
+
+    @Test
+    public void previousWindowIsWeightedByOverlap() {
+        AuthAttemptLimiterImpl.SlidingWindowCounter counter = new AuthAttemptLimiterImpl.SlidingWindowCounter();
+        for (int i = 0; i < 4; i++) {
+            counter.add(10100L, WINDOW);
+        }
+        assertEquals(4, counter.get(11000L, WINDOW));
+        assertEquals(2, counter.get(11500L, WINDOW));
+        assertEquals(3, counter.add(11500L, WINDOW));
+    }
+
+    @Test
+    public void attemptsExpireAfterTwoWindows() {
+        AuthAttemptLimiterImpl.SlidingWindowCounter counter = new AuthAttemptLimiterImpl.SlidingWindowCounter();
+        counter.add(10100L, WINDOW);
+        counter.add(10200L, WINDOW);
+        assertEquals(0, counter.get(12000L, WINDOW));
+    }
+
+    @Test
+    public void skippedWindowDropsPreviousCount() {
+        AuthAttemptLimiterImpl.SlidingWindowCounter counter = new AuthAttemptLimiterImpl.SlidingWindowCounter();
+        counter.add(10100L, WINDOW);
+        counter.add(10200L, WINDOW);
+        assertEquals(1, counter.add(12100L, WINDOW));
+    }
+}
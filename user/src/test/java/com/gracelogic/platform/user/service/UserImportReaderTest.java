@@ -0,0 +1,85 @@
+package com.gracelogic.platform.user.service;
+
+import com.gracelogic.platform.user.dto.SignUpDTO;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class UserImportReaderTest {
+    private static UserImportReader csv(String content) throws IOException {
+        return UserImportReader.csv(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void readsQuotedValues() throws IOException {
+        UserImportReader reader = csv("identifier,password,fields.note\n" +
+                "user@example.com,\"pa,ss\",\"say \"\"hi\"\"\"\n" +
+                "\"+79990000000\",,\"line1\nline2\"\n");
+
+        SignUpDTO first = reader.next();
+        assertEquals("user@example.com", first.getIdentifiers().get(0).getValue());
+        assertEquals("pa,ss", first.getPassword());
+        assertEquals("say \"hi\"", first.getFields().get("note"));
+
+        SignUpDTO second = reader.next();
+        assertEquals("+79990000000", second.getIdentifiers().get(0).getValue());
+        assertNull(second.getPassword());
+        assertEquals("line1\nline2", second.getFields().get("note"));
+
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void readsCrlfAndSkipsBlankLines() throws IOException {
+        UserImportReader reader = csv("identifier,locale,approved\r\n" +
+                "a@example.com,ru_RU,true\r\n" +
+                "\r\n" +
+                "b@example.com,,false\r\n");
+
+        SignUpDTO first = reader.next();
+        assertEquals("a@example.com", first.getIdentifiers().get(0).getValue());
+        assertEquals("ru_RU", first.getLocale());
+        assertEquals(Boolean.TRUE, first.getApproved());
+
+        SignUpDTO second = reader.next();
+        assertEquals("b@example.com", second.getIdentifiers().get(0).getValue());
+        assertNull(second.getLocale());
+        assertEquals(Boolean.FALSE, second.getApproved());
+
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void stripsByteOrderMarkFromHeader() throws IOException {
+        UserImportReader reader = csv("\uFEFFpassword,identifier\nsecret,a@example.com");
+
+        SignUpDTO dto = reader.next();
+        assertEquals("secret", dto.getPassword());
+        assertEquals("a@example.com", dto.getIdentifiers().get(0).getValue());
+        assertNull(reader.next());
+    }
+
+    @Test
+    public void readsSeveralIdentifierColumns() throws IOException {
+        UserImportReader reader = csv("identifier,identifier2\na@example.com, +79990000000 \n");
+
+        SignUpDTO dto = reader.next();
+        assertEquals(2, dto.getIdentifiers().size());
+        assertEquals("+79990000000", dto.getIdentifiers().get(1).getValue());
+    }
+
+    @Test(expected = EOFException.class)
+    public void failsOnUnterminatedQuote() throws IOException {
+        csv("identifier,password\na@example.com,\"secret\n").next();
+    }
+
+    @Test(expected = IOException.class)
+    public void failsWithoutHeader() throws IOException {
+        csv("");
+    }
+}
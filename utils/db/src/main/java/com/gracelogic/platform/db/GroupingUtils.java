@@ -0,0 +1,62 @@
+package com.gracelogic.platform.db;
+
+import com.gracelogic.platform.db.model.IdObject;
+
+import java.util.*;
+
+/**
+ * Attaches child rows to a page of parents in a single pass: children fetched by one query with the page's ids are
+ * grouped by parent id and looked up by hash instead of scanning all children for every parent.
+ */
+public class GroupingUtils {
+    public interface KeyExtractor<K, V> {
+        K getKey(V value);
+    }
+
+    public static <K extends Comparable> Set<K> getIds(Collection<? extends IdObject<K>> objects) {
+        Set<K> ids = new HashSet<>();
+        for (IdObject<K> object : objects) {
+            ids.add(object.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Groups values by key keeping their order inside every group. Values with null key are skipped.
+     */
+    public static <K, V> Map<K, List<V>> groupBy(Collection<V> values, KeyExtractor<K, V> keyExtractor) {
+        Map<K, List<V>> groups = new HashMap<>();
+        for (V value : values) {
+            K key = keyExtractor.getKey(value);
+            if (key == null) {
+                continue;
+            }
+            List<V> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+            }
+            group.add(value);
+        }
+        return groups;
+    }
+
+    /**
+     * Indexes values by unique key, the last value wins for a duplicate key. Values with null key are skipped.
+     */
+    public static <K, V> Map<K, V> indexBy(Collection<V> values, KeyExtractor<K, V> keyExtractor) {
+        Map<K, V> index = new HashMap<>();
+        for (V value : values) {
+            K key = keyExtractor.getKey(value);
+            if (key != null) {
+                index.put(key, value);
+            }
+        }
+        return index;
+    }
+
+    public static <K, V> List<V> getGroup(Map<K, List<V>> groups, K key) {
+        List<V> group = groups.get(key);
+        return group != null ? group : Collections.<V>emptyList();
+    }
+}
@@ -1,6 +1,10 @@
 package com.gracelogic.platform.db.dao;
 
 import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Session;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
@@ -9,13 +13,21 @@ import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 public abstract class BaseDao {
     @PersistenceContext
     private EntityManager entityManager;
 
+    private volatile Boolean postgreSQL = null;
+
     public <T> List<T> getList(Class<T> clazz) {
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
         CriteriaQuery<T> criteriaQuery = cb.createQuery(clazz);
@@ -87,4 +99,61 @@ public abstract class BaseDao {
         }
     }
 
+    /**
+     * Returns mapped table name of entity, with schema if it is set.
+     */
+    protected String getTableName(Class<?> entityClass) {
+        return ((AbstractEntityPersister) getSessionFactory().getMetamodel().entityPersister(entityClass)).getTableName();
+    }
+
+    /**
+     * Helpers below bind parameters of plain JDBC statements the same way UUIDCustomType and StringJsonUserType do:
+     * native uuid and json on PostgreSQL, strings on MSSQL.
+     */
+    protected void setUuid(PreparedStatement ps, int index, UUID value) throws SQLException {
+        if (isPostgreSQL()) {
+            if (value != null) {
+                ps.setObject(index, value);
+            } else {
+                ps.setNull(index, Types.OTHER);
+            }
+        } else {
+            if (value != null) {
+                ps.setString(index, value.toString());
+            } else {
+                ps.setNull(index, Types.VARCHAR);
+            }
+        }
+    }
+
+    protected void setJson(PreparedStatement ps, int index, String value) throws SQLException {
+        if (isPostgreSQL()) {
+            if (value != null) {
+                ps.setObject(index, value, Types.OTHER);
+            } else {
+                ps.setNull(index, Types.OTHER);
+            }
+        } else {
+            ps.setString(index, value);
+        }
+    }
+
+    protected static void setDate(PreparedStatement ps, int index, Date value) throws SQLException {
+        if (value != null) {
+            ps.setTimestamp(index, new Timestamp(value.getTime()));
+        } else {
+            ps.setNull(index, Types.TIMESTAMP);
+        }
+    }
+
+    private boolean isPostgreSQL() {
+        if (postgreSQL == null) {
+            postgreSQL = getSessionFactory().getJdbcServices().getDialect() instanceof PostgreSQL81Dialect;
+        }
+        return postgreSQL;
+    }
+
+    private SessionFactoryImplementor getSessionFactory() {
+        return (SessionFactoryImplementor) entityManager.unwrap(Session.class).getSessionFactory();
+    }
 }
@@ -0,0 +1,14 @@
+package com.gracelogic.platform.db.service;
+
+/**
+ * Messaging between nodes over the database. Messages are published within the current transaction
+ * and reach listeners on all nodes, including the publishing one, only after commit.
+ */
+public interface DatabaseChannel {
+    void publish(String channel, String payload);
+
+    /**
+     * Listener is called from a single listener thread, so it must return quickly.
+     */
+    void listen(String channel, DatabaseChannelListener listener);
+}
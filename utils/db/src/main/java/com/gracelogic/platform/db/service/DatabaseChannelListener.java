@@ -0,0 +1,11 @@
+package com.gracelogic.platform.db.service;
+
+public interface DatabaseChannelListener {
+    /**
+     * Called once the channel is listened and after every reconnect. Messages published while not connected are lost,
+     * so listeners should reload their state here.
+     */
+    void onConnected();
+
+    void onMessage(String payload);
+}
@@ -0,0 +1,182 @@
+package com.gracelogic.platform.db.service.postgres;
+
+import com.gracelogic.platform.db.condition.OnPostgreSQLConditional;
+import com.gracelogic.platform.db.service.DatabaseChannel;
+import com.gracelogic.platform.db.service.DatabaseChannelListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Channel over PostgreSQL LISTEN/NOTIFY. All channels of a node share one pooled connection and one listener thread,
+ * which is started on the first listen call. pgjdbc is accessed reflectively to keep the driver a runtime-only dependency.
+ */
+@Service
+@Conditional(OnPostgreSQLConditional.class)
+public class DatabaseChannelImpl implements DatabaseChannel {
+    private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]*");
+    private static final int POLL_TIMEOUT = 1000;
+    private static final long RECONNECT_DELAY = 5000L;
+
+    private static Logger logger = LoggerFactory.getLogger(DatabaseChannelImpl.class);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    private final Queue<Subscription> pendingSubscriptions = new ConcurrentLinkedQueue<>();
+
+    //Accessed by listener thread only
+    private final Map<String, List<DatabaseChannelListener>> listeners = new LinkedHashMap<>();
+
+    private volatile boolean running = false;
+
+    private Thread listenerThread;
+
+    @PreDestroy
+    private synchronized void destroy() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    @Override
+    public void publish(String channel, String payload) {
+        //pg_notify returns void which has no JDBC mapping, so it is wrapped into count
+        entityManager.createNativeQuery("SELECT count(*) FROM (SELECT pg_notify(:channel, :payload)) n")
+                .setParameter("channel", channel)
+                .setParameter("payload", payload)
+                .getSingleResult();
+    }
+
+    @Override
+    public synchronized void listen(String channel, DatabaseChannelListener listener) {
+        if (!CHANNEL_NAME.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Invalid channel name: " + channel);
+        }
+        pendingSubscriptions.add(new Subscription(channel, listener));
+
+        if (listenerThread == null) {
+            running = true;
+            listenerThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    process();
+                }
+            }, "database-channel-listener");
+            listenerThread.setDaemon(true);
+            listenerThread.start();
+        }
+    }
+
+    private void process() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                connection.setAutoCommit(true);
+                Class<?> pgConnectionClass = Class.forName("org.postgresql.PGConnection");
+                Object pgConnection = connection.unwrap(pgConnectionClass);
+                Method getNotifications = pgConnectionClass.getMethod("getNotifications", int.class);
+                Class<?> pgNotificationClass = Class.forName("org.postgresql.PGNotification");
+                Method getName = pgNotificationClass.getMethod("getName");
+                Method getParameter = pgNotificationClass.getMethod("getParameter");
+
+                if (!listeners.isEmpty()) {
+                    for (String channel : listeners.keySet()) {
+                        statement.execute("LISTEN " + channel);
+                    }
+                    logger.info("Listening for database events on channels {}", listeners.keySet());
+                    for (List<DatabaseChannelListener> channelListeners : listeners.values()) {
+                        for (DatabaseChannelListener listener : channelListeners) {
+                            connected(listener);
+                        }
+                    }
+                }
+
+                while (running) {
+                    Subscription subscription;
+                    while ((subscription = pendingSubscriptions.poll()) != null) {
+                        List<DatabaseChannelListener> channelListeners = listeners.get(subscription.channel);
+                        boolean newChannel = channelListeners == null;
+                        if (newChannel) {
+                            channelListeners = new ArrayList<>();
+                            listeners.put(subscription.channel, channelListeners);
+                        }
+                        channelListeners.add(subscription.listener);
+                        if (newChannel) {
+                            statement.execute("LISTEN " + subscription.channel);
+                            logger.info("Listening for database events on channel {}", subscription.channel);
+                        }
+                        connected(subscription.listener);
+                    }
+
+                    Object[] events = (Object[]) getNotifications.invoke(pgConnection, POLL_TIMEOUT);
+                    if (events == null) {
+                        continue;
+                    }
+                    for (Object event : events) {
+                        dispatch((String) getName.invoke(event), (String) getParameter.invoke(event));
+                    }
+                }
+            } catch (Exception e) {
+                if (!running) {
+                    break;
+                }
+                logger.warn("Database channel listener failed, reconnecting: {}", e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    private void connected(DatabaseChannelListener listener) {
+        try {
+            listener.onConnected();
+        } catch (Exception e) {
+            logger.warn("Failed to handle database channel connect", e);
+        }
+    }
+
+    private void dispatch(String channel, String payload) {
+        List<DatabaseChannelListener> channelListeners = listeners.get(channel);
+        if (channelListeners == null) {
+            return;
+        }
+        for (DatabaseChannelListener listener : channelListeners) {
+            try {
+                listener.onMessage(payload);
+            } catch (Exception e) {
+                logger.warn("Failed to handle database event on channel {}: {}", channel, payload, e);
+            }
+        }
+    }
+
+    private static class Subscription {
+        private final String channel;
+        private final DatabaseChannelListener listener;
+
+        private Subscription(String channel, DatabaseChannelListener listener) {
+            this.channel = channel;
+            this.listener = listener;
+        }
+    }
+}
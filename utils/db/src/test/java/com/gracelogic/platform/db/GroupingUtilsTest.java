@@ -0,0 +1,53 @@
+package com.gracelogic.platform.db;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class GroupingUtilsTest {
+    private static final GroupingUtils.KeyExtractor<String, String> PREFIX = new GroupingUtils.KeyExtractor<String, String>() {
+        @Override
+        public String getKey(String value) {
+            int separator = value.indexOf(':');
+            return separator > 0 ? value.substring(0, separator) : null;
+        }
+    };
+
+    @Test
+    public void groupByKeepsOrderInsideGroups() {
+        Map<String, List<String>> groups = GroupingUtils.groupBy(Arrays.asList("a:1", "b:1", "a:2", "a:3", "b:2"), PREFIX);
+
+        assertEquals(2, groups.size());
+        assertEquals(Arrays.asList("a:1", "a:2", "a:3"), groups.get("a"));
+        assertEquals(Arrays.asList("b:1", "b:2"), groups.get("b"));
+    }
+
+    @Test
+    public void groupBySkipsNullKeys() {
+        Map<String, List<String>> groups = GroupingUtils.groupBy(Arrays.asList("a:1", "orphan", ":2"), PREFIX);
+
+        assertEquals(1, groups.size());
+        assertEquals(Arrays.asList("a:1"), groups.get("a"));
+    }
+
+    @Test
+    public void indexByKeepsLastValue() {
+        Map<String, String> index = GroupingUtils.indexBy(Arrays.asList("a:1", "b:1", "a:2", "orphan"), PREFIX);
+
+        assertEquals(2, index.size());
+        assertEquals("a:2", index.get("a"));
+        assertEquals("b:1", index.get("b"));
+    }
+
+    @Test
+    public void getGroupReturnsEmptyListForMissingKey() {
+        Map<String, List<String>> groups = GroupingUtils.groupBy(Arrays.asList("a:1"), PREFIX);
+
+        assertEquals(Arrays.asList("a:1"), GroupingUtils.getGroup(groups, "a"));
+        assertTrue(GroupingUtils.getGroup(groups, "c").isEmpty());
+    }
+}